@@ -0,0 +1,95 @@
+package org.imagetextapp.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * Test data shared by the benchmarks. Everything is generated from fixed seeds or read from the recorded
+ * responses in src/jmh/resources, so every run measures the same input.
+ */
+final class BenchmarkData {
+
+    private static final String WORDS = "The quick brown fox jumps over the lazy dog. Lorem ipsum dolor sit amet, " +
+            "consectetur adipiscing elit.\r\nSed do eiusmod tempor incididunt ut labore et dolore magna aliqua.\n" +
+            "Åäö ñ ü – \"quoted\" & <tags> 100% ";
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @param name of a recorded response in src/jmh/resources/responses.
+     * @return the response as a string.
+     */
+    static String readResponse(String name) {
+        try (InputStream inputStream = BenchmarkData.class.getResourceAsStream("/responses/" + name)) {
+            if (inputStream == null) {
+                throw new IllegalStateException("Missing recorded response " + name);
+            }
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param length number of characters.
+     * @return OCR-like text with line breaks, punctuation and non-ASCII characters.
+     */
+    static String text(int length) {
+        StringBuilder text = new StringBuilder(length + WORDS.length());
+        while (text.length() < length) {
+            text.append(WORDS);
+        }
+        text.setLength(length);
+        return text.toString();
+    }
+
+    /**
+     * @param length number of bytes.
+     * @return random bytes from a fixed seed.
+     */
+    static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Subscribes to the body publisher and reads the whole body, like HttpClient does when it sends a request.
+     * @return the number of bytes published.
+     */
+    static long drain(HttpRequest.BodyPublisher publisher) {
+        CompletableFuture<Long> done = new CompletableFuture<>();
+        publisher.subscribe(new Flow.Subscriber<>() {
+            private long bytes = 0;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                bytes += item.remaining();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(bytes);
+            }
+        });
+        return done.join();
+    }
+}
@@ -0,0 +1,84 @@
+package org.imagetextapp.benchmark;
+
+import org.imagetextapp.apis.detectlanguage.DetectLanguageObject;
+import org.imagetextapp.apis.ocr.OCRObject;
+import org.imagetextapp.apis.translate.TranslateObject;
+import org.imagetextapp.utility.JsonParser;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JsonParser on recorded OCR, Detect Language and Translate responses. The OCR response is measured as recorded
+ * and with its ParsedText blown up to the size of a multi-page PDF. The org.json benchmark reads the same fields
+ * from a full JSONObject tree, as a baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonParserBenchmark {
+
+    /**
+     * Number of characters of ParsedText; 0 keeps the recorded text.
+     */
+    @Param({"0", "1000000"})
+    private int parsedTextLength;
+
+    private final JsonParser jsonParser = new JsonParser();
+
+    private String ocrResponse;
+    private byte[] ocrBytes;
+    private byte[] detectBytes;
+    private byte[] translateBytes;
+
+    @Setup(Level.Trial)
+    public void readResponses() {
+        ocrResponse = BenchmarkData.readResponse("ocr.json");
+        if (parsedTextLength > 0) {
+            JSONObject ocrJson = new JSONObject(ocrResponse);
+            ocrJson.getJSONArray("ParsedResults").getJSONObject(0).put("ParsedText", BenchmarkData.text(parsedTextLength));
+            ocrResponse = ocrJson.toString();
+        }
+        ocrBytes = ocrResponse.getBytes(StandardCharsets.UTF_8);
+        detectBytes = BenchmarkData.readResponse("detect.json").getBytes(StandardCharsets.UTF_8);
+        translateBytes = BenchmarkData.readResponse("translate.json").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public OCRObject parseOCRResponse() {
+        return jsonParser.parseOCRResponse(new ByteArrayInputStream(ocrBytes));
+    }
+
+    @Benchmark
+    public String parseOCRResponseWithJsonTree() {
+        JSONObject parsedResObject = new JSONObject(new String(ocrBytes, StandardCharsets.UTF_8));
+        return parsedResObject.getJSONArray("ParsedResults").getJSONObject(0).getString("ParsedText");
+    }
+
+    @Benchmark
+    public DetectLanguageObject parseDetectLanguageResponse() {
+        return jsonParser.parseDetectLanguageResponse(new ByteArrayInputStream(detectBytes));
+    }
+
+    @Benchmark
+    public TranslateObject parseTranslateResponse() {
+        return jsonParser.parseTranslateResponse(new ByteArrayInputStream(translateBytes));
+    }
+}
@@ -0,0 +1,46 @@
+package org.imagetextapp.benchmark;
+
+import org.imagetextapp.apis.detectlanguage.DetectLanguageObject;
+import org.imagetextapp.apis.detectlanguage.TrigramLanguageIdentifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local language identification of OCR texts, from a short line to a full page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LanguageIdentifierBenchmark {
+
+    @Param({"100", "3000"})
+    private int textLength;
+
+    private final TrigramLanguageIdentifier languageIdentifier = new TrigramLanguageIdentifier();
+    private String text;
+
+    @Setup(Level.Trial)
+    public void createText() {
+        text = BenchmarkData.text(textLength);
+    }
+
+    @Benchmark
+    public DetectLanguageObject identifyLocally() {
+        return languageIdentifier.identifyLocally(text);
+    }
+}
@@ -0,0 +1,50 @@
+package org.imagetextapp.benchmark;
+
+import org.imagetextapp.utility.StringManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StringManager operations on large OCR texts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StringManagerBenchmark {
+
+    @Param({"10000", "1000000"})
+    private int textLength;
+
+    private final StringManager stringManager = new StringManager();
+    private String text;
+
+    @Setup(Level.Trial)
+    public void createText() {
+        text = BenchmarkData.text(textLength);
+    }
+
+    @Benchmark
+    public String getCleanString() {
+        return stringManager.getCleanString(text);
+    }
+
+    @Benchmark
+    public String getTextURLEncoded() {
+        return stringManager.getTextURLEncoded(text);
+    }
+}
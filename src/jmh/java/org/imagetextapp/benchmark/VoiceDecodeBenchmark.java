@@ -0,0 +1,61 @@
+package org.imagetextapp.benchmark;
+
+import org.imagetextapp.apis.voicerss.VoiceHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of the Base64 audio that Voice RSS returns, for short and long texts, from a String and as a stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VoiceDecodeBenchmark {
+
+    // 8 kHz, 16 bit, mono: the default format of Voice RSS.
+    private static final int BYTES_PER_SECOND = 16_000;
+
+    @Param({"5", "60", "300"})
+    private int seconds;
+
+    private final VoiceHandler voiceHandler = new VoiceHandler();
+    private String responseBody;
+    private byte[] responseBytes;
+
+    @Setup(Level.Trial)
+    public void createResponse() {
+        byte[] audio = BenchmarkData.bytes(seconds * BYTES_PER_SECOND);
+        responseBody = "data:audio/wav;base64," + Base64.getEncoder().encodeToString(audio);
+        responseBytes = responseBody.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    public byte[] decodeVoice() {
+        return voiceHandler.decodeVoice(responseBody);
+    }
+
+    @Benchmark
+    public long decodeVoiceStream() throws IOException {
+        return voiceHandler.decodeVoice(new ByteArrayInputStream(responseBytes), OutputStream.nullOutputStream());
+    }
+}
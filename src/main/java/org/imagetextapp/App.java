@@ -1,5 +1,7 @@
 package org.imagetextapp;
 
+import org.imagetextapp.batch.BatchRunner;
+import org.imagetextapp.batch.OcrEngineComparison;
 import org.imagetextapp.gui.Controller;
 import org.imagetextapp.gui.Model;
 import org.imagetextapp.gui.View;
@@ -10,6 +12,18 @@ public class App {
 
 
     public static void main( String[] args )  {
+        // Compare the OCR engines on a set of images.
+        if (args.length > 0 && args[0].equals("--compare-ocr-engines")) {
+            OcrEngineComparison.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        // Run headless batch processing when input and output are given on the command line.
+        if (args.length > 0) {
+            BatchRunner.main(args);
+            return;
+        }
+
         // Invoke thread for the program
         SwingUtilities.invokeLater(() -> {
         Model model = new Model();
@@ -0,0 +1,160 @@
+package org.imagetextapp.apis.detectlanguage;
+
+import org.imagetextapp.utility.PropertiesReader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces texts that are identified at about the same time into a single Detect Language request.
+ *
+ * The first text of a batch starts a short window (DETECT_LANGUAGE_BATCH_WINDOW_MS, default 20). All texts
+ * submitted within the window are sent together when it ends, or as soon as the batch is full
+ * (DETECT_LANGUAGE_BATCH_SIZE, default 50). A window of 0 sends every text on its own.
+ */
+public class DetectLanguageBatcher implements LanguageIdentifier {
+
+    private static final DetectLanguageBatcher INSTANCE = new DetectLanguageBatcher(
+            PropertiesReader.getLongProperty("DETECT_LANGUAGE_BATCH_WINDOW_MS", 20),
+            (int) PropertiesReader.getLongProperty("DETECT_LANGUAGE_BATCH_SIZE", 50));
+
+    private final long windowMillis;
+    private final int maxBatchSize;
+
+    private List<Pending> pending = new ArrayList<>();
+    // Identifies the current batch, so that the timer of a batch that was already sent because it was full is ignored.
+    private long batchNumber = 0;
+
+    private final AtomicLong texts = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * @param windowMillis how long the first text of a batch waits for others.
+     * @param maxBatchSize number of texts after which a batch is sent without waiting for the window to end.
+     */
+    public DetectLanguageBatcher(long windowMillis, int maxBatchSize) {
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+    }
+
+    public static DetectLanguageBatcher getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Adds a text to the current batch.
+     * @param parsedText text to be identified for the language it's written in.
+     * @return future that completes with the object representation of the detection of this text.
+     */
+    public CompletableFuture<DetectLanguageObject> submit(String parsedText) {
+        CompletableFuture<DetectLanguageObject> future = new CompletableFuture<>();
+        texts.incrementAndGet();
+
+        List<Pending> full = null;
+        long scheduleBatch = -1;
+        synchronized (this) {
+            pending.add(new Pending(parsedText, future));
+            if (pending.size() >= maxBatchSize || windowMillis <= 0) {
+                full = takePending();
+            } else if (pending.size() == 1) {
+                scheduleBatch = batchNumber;
+            }
+        }
+
+        if (full != null) {
+            send(full);
+        } else if (scheduleBatch >= 0) {
+            long batch = scheduleBatch;
+            CompletableFuture.delayedExecutor(windowMillis, TimeUnit.MILLISECONDS).execute(() -> sendAfterWindow(batch));
+        }
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<DetectLanguageObject> identifyLanguageAsync(String text) {
+        return submit(text);
+    }
+
+    private void sendAfterWindow(long batch) {
+        List<Pending> toSend;
+        synchronized (this) {
+            if (batch != batchNumber || pending.isEmpty()) {
+                return;
+            }
+            toSend = takePending();
+        }
+        send(toSend);
+    }
+
+    private List<Pending> takePending() {
+        List<Pending> taken = pending;
+        pending = new ArrayList<>();
+        batchNumber++;
+        return taken;
+    }
+
+    private void send(List<Pending> batch) {
+        requests.incrementAndGet();
+
+        List<String> parsedTexts = new ArrayList<>(batch.size());
+        for (Pending p : batch) {
+            parsedTexts.add(p.parsedText);
+        }
+
+        DetectLanguageHandler detectLanguageHandler = new DetectLanguageHandler();
+        detectLanguageHandler.identifyLanguagesAsync(parsedTexts).whenComplete((detectLanguageObjects, throwable) -> {
+            for (int i = 0; i < batch.size(); i++) {
+                if (throwable == null && i < detectLanguageObjects.size()) {
+                    batch.get(i).future.complete(detectLanguageObjects.get(i));
+                } else {
+                    DetectLanguageObject failed = new DetectLanguageObject();
+                    failed.setErrorOnProcessing(true);
+                    batch.get(i).future.complete(failed);
+                }
+            }
+        });
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * @return number of texts submitted.
+     */
+    public long getTexts() {
+        return texts.get();
+    }
+
+    /**
+     * @return number of batches sent, i.e. requests to the Detect Language API.
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    @Override
+    public String toString() {
+        return "DetectLanguageBatcher{" +
+                "texts=" + texts +
+                ", requests=" + requests +
+                '}';
+    }
+
+    private static class Pending {
+        private final String parsedText;
+        private final CompletableFuture<DetectLanguageObject> future;
+
+        Pending(String parsedText, CompletableFuture<DetectLanguageObject> future) {
+            this.parsedText = parsedText;
+            this.future = future;
+        }
+    }
+}
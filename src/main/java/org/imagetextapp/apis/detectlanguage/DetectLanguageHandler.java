@@ -1,32 +1,101 @@
 package org.imagetextapp.apis.detectlanguage;
 
 import org.imagetextapp.utility.ConnectionManager;
+import org.imagetextapp.utility.ExecutionManager;
 import org.imagetextapp.utility.JsonParser;
+import org.imagetextapp.utility.PropertiesReader;
 import org.imagetextapp.utility.StringManager;
 
+import java.io.InputStream;
 import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Identifies the language of a string with the help of the Detect Language API:
  * https://detectlanguage.com/documentation
+ *
+ * Single texts are coalesced with other texts that are identified at about the same time (see
+ * DetectLanguageBatcher), and many texts are sent DETECT_LANGUAGE_BATCH_SIZE (default 50) per request.
+ * Single texts can also be identified locally instead, see LanguageIdentifier.fromProperties.
  */
 public class DetectLanguageHandler {
 
+    private static final int MAX_BATCH_SIZE = (int) PropertiesReader.getLongProperty("DETECT_LANGUAGE_BATCH_SIZE", 50);
+
+    private static final LanguageIdentifier LANGUAGE_IDENTIFIER =
+            LanguageIdentifier.fromProperties(DetectLanguageBatcher.getInstance());
+
     /**
      *
      * @param parsedText text to be identified for the language it's written in.
      * @return Object representation of JSON response from Detect Language API.
      */
     public DetectLanguageObject identifyLanguage(String parsedText) {
-        StringManager stringManager = new StringManager();
-        String query = stringManager.getTextURLEncoded(parsedText);
+        return identifyLanguageAsync(parsedText).join();
+    }
 
-        // Make the DetectLanguage request.
-        ConnectionManager connectionManager = new ConnectionManager();
-        HttpResponse<String> response = connectionManager.makeDetectLanguageRequest(query);
+    /**
+     * Non-blocking version of identifyLanguage.
+     * @param parsedText text to be identified for the language it's written in.
+     * @return future that completes with the object representation of the response.
+     */
+    public CompletableFuture<DetectLanguageObject> identifyLanguageAsync(String parsedText) {
+        return LANGUAGE_IDENTIFIER.identifyLanguageAsync(parsedText);
+    }
+
+    /**
+     * Sends the texts to the Detect Language API.
+     * @param parsedTexts texts to be identified for the language they're written in.
+     * @return one object per text, in the same order.
+     */
+    public List<DetectLanguageObject> identifyLanguages(List<String> parsedTexts) {
+        return identifyLanguagesAsync(parsedTexts).join();
+    }
+
+    /**
+     * Non-blocking version of identifyLanguages.
+     * @param parsedTexts texts to be identified for the language they're written in.
+     * @return future that completes with one object per text, in the same order.
+     */
+    public CompletableFuture<List<DetectLanguageObject>> identifyLanguagesAsync(List<String> parsedTexts) {
+        List<CompletableFuture<List<DetectLanguageObject>>> batches = new ArrayList<>();
+        for (int from = 0; from < parsedTexts.size(); from += MAX_BATCH_SIZE) {
+            batches.add(identifyBatchAsync(parsedTexts.subList(from, Math.min(parsedTexts.size(), from + MAX_BATCH_SIZE))));
+        }
+
+        return CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            List<DetectLanguageObject> detectLanguageObjects = new ArrayList<>(parsedTexts.size());
+            for (CompletableFuture<List<DetectLanguageObject>> batch : batches) {
+                detectLanguageObjects.addAll(batch.join());
+            }
+            return detectLanguageObjects;
+        });
+    }
 
-        // Parse response to object.
+    /**
+     * Makes a single request for at most MAX_BATCH_SIZE texts.
+     */
+    private CompletableFuture<List<DetectLanguageObject>> identifyBatchAsync(List<String> parsedTexts) {
+        StringManager stringManager = new StringManager();
+        ConnectionManager connectionManager = new ConnectionManager();
         JsonParser jsonParser = new JsonParser();
-        return jsonParser.parseDetectLanguageResponse(response);
+
+        // A single text is sent with the simple request.
+        if (parsedTexts.size() == 1) {
+            String query = stringManager.getTextURLEncoded(parsedTexts.get(0));
+            return connectionManager.makeDetectLanguageRequestAsync(query)
+                    .thenApplyAsync(response -> List.of(jsonParser.parseDetectLanguageResponse(response)),
+                            ExecutionManager.getInstance().getExecutor());
+        }
+
+        List<String> queries = new ArrayList<>(parsedTexts.size());
+        for (String parsedText : parsedTexts) {
+            queries.add(stringManager.getTextURLEncoded(parsedText));
+        }
+        CompletableFuture<HttpResponse<InputStream>> response = connectionManager.makeDetectLanguageRequestAsync(queries);
+        return response.thenApplyAsync(r -> jsonParser.parseDetectLanguageResponses(r, parsedTexts.size()),
+                ExecutionManager.getInstance().getExecutor());
     }
 }
@@ -31,6 +31,10 @@ public class DetectLanguageObject {
         return "Low.";
     }
 
+    public boolean isReliable() {
+        return isReliable;
+    }
+
     public void setReliable(boolean reliable) {
         isReliable = reliable;
     }
@@ -0,0 +1,42 @@
+package org.imagetextapp.apis.detectlanguage;
+
+import org.imagetextapp.utility.PropertiesReader;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Identifies the language that a text is written in. Languages are reported with the codes of the Detect Language API.
+ */
+public interface LanguageIdentifier {
+
+    /**
+     * @param text text to be identified for the language it's written in.
+     * @return future that completes with the identified language, or with an object that reports an error.
+     */
+    CompletableFuture<DetectLanguageObject> identifyLanguageAsync(String text);
+
+    /**
+     * Blocking version of identifyLanguageAsync.
+     */
+    default DetectLanguageObject identifyLanguage(String text) {
+        return identifyLanguageAsync(text).join();
+    }
+
+    /**
+     * Chooses the identifier through LANGUAGE_IDENTIFIER:
+     *
+     *      - remote (default): the Detect Language API.
+     *      - local: TrigramLanguageIdentifier only, without network calls.
+     *      - local-fallback: TrigramLanguageIdentifier, and the Detect Language API when it is not confident.
+     *
+     * @param remote identifier that calls the Detect Language API.
+     * @return the configured identifier.
+     */
+    static LanguageIdentifier fromProperties(LanguageIdentifier remote) {
+        return switch (PropertiesReader.getProperty("LANGUAGE_IDENTIFIER", "remote")) {
+            case "local" -> new TrigramLanguageIdentifier();
+            case "local-fallback" -> new TrigramLanguageIdentifier(remote);
+            default -> remote;
+        };
+    }
+}
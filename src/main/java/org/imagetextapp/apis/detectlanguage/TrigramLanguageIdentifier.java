@@ -0,0 +1,206 @@
+package org.imagetextapp.apis.detectlanguage;
+
+import org.imagetextapp.utility.LanguageRegistry;
+import org.imagetextapp.utility.PropertiesReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Identifies the language of a text locally, from the character trigrams of its words, for the 16 languages
+ * that the application supports.
+ *
+ * The profiles are built once from the sample texts in the profiles resource directory. All trigrams of all
+ * languages are kept in a single sorted array, with one row of log probabilities per trigram, so identifying
+ * a text is one binary search per trigram and needs no allocation per trigram.
+ *
+ * The confidence is the log-likelihood ratio between the best and the second best language, so it grows
+ * with the length of the text. Below LOCAL_LANGUAGE_MIN_CONFIDENCE (default 5) the result is not reliable,
+ * and the text is handed to the fallback identifier if there is one.
+ */
+public class TrigramLanguageIdentifier implements LanguageIdentifier {
+
+    // Detect Language API codes of the supported languages.
+    private static final String[] LANGUAGES = LanguageRegistry.getInstance().getLanguages().stream()
+            .map(LanguageRegistry.Language::getDetectCode)
+            .toArray(String[]::new);
+
+    // Only the start of long texts is looked at.
+    private static final int MAX_CHARS = 20_000;
+
+    private static final long[] TRIGRAMS;
+    // LANGUAGES.length log probabilities per trigram.
+    private static final float[] WEIGHTS;
+    // Log probability of a trigram that was not seen in the sample text of a language.
+    private static final float[] UNSEEN_WEIGHTS;
+
+    static {
+        Map<Long, int[]> counts = new HashMap<>();
+        int[] totals = new int[LANGUAGES.length];
+        for (int language = 0; language < LANGUAGES.length; language++) {
+            String sample = readSample(LANGUAGES[language]);
+            int current = language;
+            totals[language] = forEachTrigram(sample, trigram ->
+                    counts.computeIfAbsent(trigram, key -> new int[LANGUAGES.length])[current]++);
+        }
+
+        TRIGRAMS = new long[counts.size()];
+        int index = 0;
+        for (long trigram : counts.keySet()) {
+            TRIGRAMS[index++] = trigram;
+        }
+        Arrays.sort(TRIGRAMS);
+
+        // Additive smoothing, so that a single missing trigram does not rule a language out.
+        double smoothing = 0.5;
+        WEIGHTS = new float[TRIGRAMS.length * LANGUAGES.length];
+        UNSEEN_WEIGHTS = new float[LANGUAGES.length];
+        for (int language = 0; language < LANGUAGES.length; language++) {
+            double denominator = totals[language] + smoothing * TRIGRAMS.length;
+            UNSEEN_WEIGHTS[language] = (float) Math.log(smoothing / denominator);
+            for (int i = 0; i < TRIGRAMS.length; i++) {
+                int count = counts.get(TRIGRAMS[i])[language];
+                WEIGHTS[i * LANGUAGES.length + language] = (float) Math.log((count + smoothing) / denominator);
+            }
+        }
+    }
+
+    private final LanguageIdentifier fallback;
+    private final double minConfidence;
+
+    public TrigramLanguageIdentifier() {
+        this(null);
+    }
+
+    /**
+     * @param fallback identifier for texts that cannot be identified reliably, or null to always answer locally.
+     */
+    public TrigramLanguageIdentifier(LanguageIdentifier fallback) {
+        this(fallback, PropertiesReader.getLongProperty("LOCAL_LANGUAGE_MIN_CONFIDENCE", 5));
+    }
+
+    /**
+     * @param fallback identifier for texts that cannot be identified reliably, or null to always answer locally.
+     * @param minConfidence confidence from which a result is reliable.
+     */
+    public TrigramLanguageIdentifier(LanguageIdentifier fallback, double minConfidence) {
+        this.fallback = fallback;
+        this.minConfidence = minConfidence;
+    }
+
+    @Override
+    public DetectLanguageObject identifyLanguage(String text) {
+        DetectLanguageObject detectLanguageObject = identifyLocally(text);
+        if (fallback == null || detectLanguageObject.isReliable()) {
+            return detectLanguageObject;
+        }
+
+        DetectLanguageObject remote = fallback.identifyLanguage(text);
+        return remote.isErrorOnProcessing() ? detectLanguageObject : remote;
+    }
+
+    @Override
+    public CompletableFuture<DetectLanguageObject> identifyLanguageAsync(String text) {
+        DetectLanguageObject detectLanguageObject = identifyLocally(text);
+        if (fallback == null || detectLanguageObject.isReliable()) {
+            return CompletableFuture.completedFuture(detectLanguageObject);
+        }
+
+        return fallback.identifyLanguageAsync(text)
+                .thenApply(remote -> remote.isErrorOnProcessing() ? detectLanguageObject : remote);
+    }
+
+    /**
+     * Identifies the language without the fallback.
+     * @param text text to be identified for the language it's written in.
+     * @return the most likely language, or an object that reports an error if the text has no letters.
+     */
+    public DetectLanguageObject identifyLocally(String text) {
+        double[] scores = new double[LANGUAGES.length];
+        int trigrams = forEachTrigram(text, trigram -> {
+            int index = Arrays.binarySearch(TRIGRAMS, trigram);
+            if (index >= 0) {
+                int row = index * LANGUAGES.length;
+                for (int language = 0; language < LANGUAGES.length; language++) {
+                    scores[language] += WEIGHTS[row + language];
+                }
+            } else {
+                for (int language = 0; language < LANGUAGES.length; language++) {
+                    scores[language] += UNSEEN_WEIGHTS[language];
+                }
+            }
+        });
+
+        DetectLanguageObject detectLanguageObject = new DetectLanguageObject();
+        if (trigrams == 0) {
+            detectLanguageObject.setErrorOnProcessing(true);
+            return detectLanguageObject;
+        }
+
+        int best = 0;
+        int second = -1;
+        for (int language = 1; language < LANGUAGES.length; language++) {
+            if (scores[language] > scores[best]) {
+                second = best;
+                best = language;
+            } else if (second < 0 || scores[language] > scores[second]) {
+                second = language;
+            }
+        }
+
+        float confidence = (float) (scores[best] - scores[second]);
+        detectLanguageObject.setLanguage(LANGUAGES[best]);
+        detectLanguageObject.setConfidence(confidence);
+        detectLanguageObject.setReliable(confidence >= minConfidence);
+        return detectLanguageObject;
+    }
+
+    /**
+     * Passes every trigram of the lower case words of a text, padded with a space on each side, to the consumer.
+     * Trigrams are encoded as three 16-bit chars in a long.
+     * @return number of trigrams.
+     */
+    private static int forEachTrigram(String text, TrigramConsumer consumer) {
+        int trigrams = 0;
+        char previous2 = 0;
+        char previous1 = ' ';
+        int length = Math.min(text.length(), MAX_CHARS);
+
+        for (int i = 0; i <= length; i++) {
+            char c = i < length && Character.isLetter(text.charAt(i)) ? Character.toLowerCase(text.charAt(i)) : ' ';
+            if (c == ' ' && previous1 == ' ') {
+                continue;
+            }
+            if (previous2 != 0) {
+                consumer.accept(((long) previous2 << 32) | ((long) previous1 << 16) | c);
+                trigrams++;
+            }
+            previous2 = previous1;
+            previous1 = c;
+        }
+        return trigrams;
+    }
+
+    private static String readSample(String language) {
+        try (InputStream inputStream = TrigramLanguageIdentifier.class.getResourceAsStream("profiles/" + language + ".txt")) {
+            if (inputStream == null) {
+                System.out.println("The language profile for " + language + " is missing.");
+                return "";
+            }
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.out.println("The language profile for " + language + " could not be read.");
+            e.printStackTrace();
+            return "";
+        }
+    }
+
+    private interface TrigramConsumer {
+        void accept(long trigram);
+    }
+}
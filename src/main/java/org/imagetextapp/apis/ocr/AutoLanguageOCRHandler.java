@@ -0,0 +1,152 @@
+package org.imagetextapp.apis.ocr;
+
+import org.imagetextapp.apis.detectlanguage.DetectLanguageHandler;
+import org.imagetextapp.apis.detectlanguage.DetectLanguageObject;
+import org.imagetextapp.apis.detectlanguage.LanguageIdentifier;
+import org.imagetextapp.utility.ExecutionManager;
+import org.imagetextapp.utility.LanguageRegistry;
+import org.imagetextapp.utility.PropertiesReader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * Generates text without knowing the language of the image in advance, in two passes:
+ *
+ *      1. A downscaled thumbnail is sent to the OCR API with the language-independent engine (OCREngine=2),
+ *         and the language of the resulting text is identified (see DetectLanguageHandler).
+ *      2. The full-resolution image is sent with the OCR language code of the identified language.
+ *
+ * The full-resolution image is preprocessed while the first pass is running, so the second pass can start
+ * as soon as the language is known. If no language can be identified, the fallback language is used.
+ *
+ * The size of the thumbnail can be changed with OCR_AUTO_THUMBNAIL_DIMENSION (default 1000 pixels).
+ */
+public class AutoLanguageOCRHandler {
+
+    /**
+     * Value of the OCR language that selects this handler, e.g. in the language drop-down or with --ocr-language.
+     */
+    public static final String AUTO_LANGUAGE = "auto";
+
+    private final LanguageIdentifier languageIdentifier;
+    private final int thumbnailDimension;
+
+    public AutoLanguageOCRHandler() {
+        this(text -> new DetectLanguageHandler().identifyLanguageAsync(text));
+    }
+
+    /**
+     * @param languageIdentifier identifies the language of the text of the first pass.
+     */
+    public AutoLanguageOCRHandler(LanguageIdentifier languageIdentifier) {
+        this.languageIdentifier = languageIdentifier;
+        this.thumbnailDimension = (int) PropertiesReader.getLongProperty("OCR_AUTO_THUMBNAIL_DIMENSION", 1000);
+    }
+
+    /**
+     * @param localFile Path to a local file (image).
+     * @param fallbackLanguage OCR API code of the language to use if the language cannot be identified.
+     * @param progress receives status messages while the passes run, or null.
+     * @return the generated text together with the language it was generated with.
+     * @throws IOException if the image could not be preprocessed.
+     */
+    public AutoLanguageResult uploadLocalImage(Path localFile, String fallbackLanguage, Consumer<String> progress)
+            throws IOException {
+        try {
+            return uploadLocalImageAsync(localFile, fallbackLanguage, progress).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Non-blocking version of uploadLocalImage.
+     * @param localFile Path to a local file (image).
+     * @param fallbackLanguage OCR API code of the language to use if the language cannot be identified.
+     * @param progress receives status messages while the passes run, or null.
+     * @return future that completes with the result, or exceptionally with the IOException of the preprocessing.
+     */
+    public CompletableFuture<AutoLanguageResult> uploadLocalImageAsync(Path localFile, String fallbackLanguage,
+                                                                      Consumer<String> progress) {
+        long start = System.nanoTime();
+        ExecutorService executor = ExecutionManager.getInstance().getExecutor();
+        OCRHandler ocrHandler = new OCRHandler();
+
+        // First pass: thumbnail -> language-independent OCR -> language identification.
+        CompletableFuture<PreprocessResult> thumbnail = CompletableFuture.supplyAsync(() ->
+                preprocess(new ImagePreprocessor(thumbnailDimension, Long.MAX_VALUE), localFile), executor);
+        CompletableFuture<DetectLanguageObject> identified = thumbnail
+                .thenCompose(preprocessResult -> {
+                    report(progress, "Identifying the language of the text...");
+                    return ocrHandler.uploadLocalImageAsync(preprocessResult.getFile(), fallbackLanguage, true)
+                            .whenComplete((ocrObject, throwable) -> preprocessResult.deleteProcessedFile());
+                })
+                .thenCompose(ocrObject -> {
+                    if (ocrObject.isErrorOnProcessing() || ocrObject.getParsedTextClean().isBlank()) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    return languageIdentifier.identifyLanguageAsync(ocrObject.getParsedTextClean());
+                });
+
+        // Runs at the same time as the first pass.
+        CompletableFuture<PreprocessResult> fullResolution = CompletableFuture.supplyAsync(() ->
+                preprocess(new ImagePreprocessor(), localFile), executor);
+
+        // Second pass: full resolution with the identified language.
+        return identified.thenCombine(fullResolution, (detectLanguageObject, preprocessResult) -> {
+            String ocrLanguage = getOcrLanguage(detectLanguageObject);
+            boolean languageIdentified = ocrLanguage != null;
+            if (!languageIdentified) {
+                ocrLanguage = fallbackLanguage;
+            }
+            report(progress, languageIdentified
+                    ? "Identified the language as " + detectLanguageObject.getLanguage(true) + ". Processing the file..."
+                    : "The language could not be identified. Processing the file...");
+
+            String language = ocrLanguage;
+            return ocrHandler.uploadLocalImageAsync(preprocessResult.getFile(), language, false)
+                    .whenComplete((ocrObject, throwable) -> preprocessResult.deleteProcessedFile())
+                    .thenApply(ocrObject -> new AutoLanguageResult(ocrObject, detectLanguageObject, language,
+                            languageIdentified, (System.nanoTime() - start) / 1_000_000));
+        }).thenCompose(secondPass -> secondPass)
+                .whenComplete((result, throwable) -> {
+                    // Clean up the image of a pass that was not used because the other one failed.
+                    if (throwable != null) {
+                        fullResolution.thenAccept(PreprocessResult::deleteProcessedFile);
+                    }
+                });
+    }
+
+    /**
+     * @return OCR API code of the identified language, or null if it is unknown or not supported.
+     */
+    private String getOcrLanguage(DetectLanguageObject detectLanguageObject) {
+        if (detectLanguageObject == null || detectLanguageObject.isErrorOnProcessing()) {
+            return null;
+        }
+        LanguageRegistry.Language language = LanguageRegistry.getInstance().fromDetectCode(detectLanguageObject.getLanguage(false));
+        return language == null ? null : language.getOcrCode();
+    }
+
+    private PreprocessResult preprocess(ImagePreprocessor imagePreprocessor, Path localFile) {
+        try {
+            return imagePreprocessor.preprocess(localFile);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private void report(Consumer<String> progress, String message) {
+        if (progress != null) {
+            progress.accept(message);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.imagetextapp.apis.ocr;
+
+import org.imagetextapp.apis.detectlanguage.DetectLanguageObject;
+
+/**
+ * Result of text generation with automatic language selection.
+ */
+public class AutoLanguageResult {
+
+    private final OCRObject ocrObject;
+    private final DetectLanguageObject detectLanguageObject;
+    private final String ocrLanguage;
+    private final boolean languageIdentified;
+    private final long elapsedMillis;
+
+    public AutoLanguageResult(OCRObject ocrObject, DetectLanguageObject detectLanguageObject, String ocrLanguage,
+                              boolean languageIdentified, long elapsedMillis) {
+        this.ocrObject = ocrObject;
+        this.detectLanguageObject = detectLanguageObject;
+        this.ocrLanguage = ocrLanguage;
+        this.languageIdentified = languageIdentified;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @return the text generated at full resolution.
+     */
+    public OCRObject getOcrObject() {
+        return ocrObject;
+    }
+
+    /**
+     * @return the language identified from the first pass, or null if the first pass produced no text.
+     */
+    public DetectLanguageObject getDetectLanguageObject() {
+        return detectLanguageObject;
+    }
+
+    /**
+     * @return OCR API code of the language that the full-resolution text was generated with.
+     */
+    public String getOcrLanguage() {
+        return ocrLanguage;
+    }
+
+    /**
+     * @return true if the language was identified, false if the fallback language was used.
+     */
+    public boolean isLanguageIdentified() {
+        return languageIdentified;
+    }
+
+    /**
+     * @return time for both passes, including the preprocessing of the image.
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "AutoLanguageResult{" +
+                "ocrLanguage='" + ocrLanguage + '\'' +
+                ", languageIdentified=" + languageIdentified +
+                ", elapsedMillis=" + elapsedMillis +
+                '}';
+    }
+}
@@ -0,0 +1,151 @@
+package org.imagetextapp.apis.ocr;
+
+import org.imagetextapp.utility.PropertiesReader;
+import org.imgscalr.Scalr;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Shrinks images before they are uploaded for text generation, so that large photos (e.g. from a phone)
+ * stay within the file size limit of the OCR API and take less time to upload.
+ *
+ * Images that are larger than the allowed file size or resolution are scaled down to an OCR-friendly
+ * resolution with imgscalr, converted to grayscale and re-encoded as JPEG. Smaller images and PDF files
+ * are uploaded as they are. If an image is still too large at the lowest JPEG quality, its resolution is
+ * lowered further, but not below MIN_DIMENSION pixels, since the text would not be readable anymore.
+ *
+ * The limits can be changed with OCR_PREPROCESS_MAX_DIMENSION (default 2000 pixels) and
+ * OCR_PREPROCESS_MAX_BYTES (default 1 MB, the limit of the free OCR API).
+ */
+public class ImagePreprocessor {
+
+    private static final float START_QUALITY = 0.85f;
+    private static final float MIN_QUALITY = 0.5f;
+    static final int MIN_DIMENSION = 500;
+
+    private final int maxDimension;
+    private final long maxBytes;
+
+    public ImagePreprocessor() {
+        this((int) PropertiesReader.getLongProperty("OCR_PREPROCESS_MAX_DIMENSION", 2000),
+                PropertiesReader.getLongProperty("OCR_PREPROCESS_MAX_BYTES", 1024L * 1024));
+    }
+
+    /**
+     * @param maxDimension maximum width and height of the uploaded image, in pixels.
+     * @param maxBytes maximum file size of the uploaded image.
+     */
+    public ImagePreprocessor(int maxDimension, long maxBytes) {
+        this.maxDimension = maxDimension;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param image Path to a local file (image).
+     * @return the file to upload, together with the bytes saved and the time spent.
+     * @throws IOException if the image could not be read or the processed image could not be written.
+     */
+    public PreprocessResult preprocess(Path image) throws IOException {
+        long start = System.nanoTime();
+        long originalBytes = Files.size(image);
+
+        BufferedImage bufferedImage = ImageIO.read(image.toFile());
+
+        // PDFs and formats that ImageIO cannot read are uploaded unchanged.
+        if (bufferedImage == null || !needsProcessing(bufferedImage, originalBytes)) {
+            return new PreprocessResult(image, image, originalBytes, originalBytes, elapsedMillis(start));
+        }
+
+        BufferedImage scaled = bufferedImage;
+        if (Math.max(bufferedImage.getWidth(), bufferedImage.getHeight()) > maxDimension) {
+            scaled = Scalr.resize(bufferedImage, Scalr.Method.QUALITY, Scalr.Mode.AUTOMATIC, maxDimension);
+        }
+        BufferedImage gray = toGrayscale(scaled);
+
+        // Lower the JPEG quality first, and the resolution only if that is not enough.
+        byte[] encoded = encodeJpeg(gray, START_QUALITY);
+        float quality = START_QUALITY;
+        while (encoded.length > maxBytes) {
+            if (quality > MIN_QUALITY) {
+                quality = lowerQuality(quality);
+            } else {
+                int dimension = (int) (Math.max(gray.getWidth(), gray.getHeight()) * 0.75);
+                if (dimension < MIN_DIMENSION) {
+                    // Upload the smallest readable result.
+                    break;
+                }
+                gray = Scalr.resize(gray, Scalr.Method.QUALITY, Scalr.Mode.AUTOMATIC, dimension);
+            }
+            encoded = encodeJpeg(gray, quality);
+        }
+
+        // Never upload something larger than the original.
+        if (encoded.length >= originalBytes) {
+            return new PreprocessResult(image, image, originalBytes, originalBytes, elapsedMillis(start));
+        }
+
+        Path processed = Files.createTempFile("ocr-upload-", ".jpg");
+        processed.toFile().deleteOnExit();
+        Files.write(processed, encoded);
+
+        return new PreprocessResult(image, processed, originalBytes, encoded.length, elapsedMillis(start));
+    }
+
+    private boolean needsProcessing(BufferedImage image, long bytes) {
+        return bytes > maxBytes || Math.max(image.getWidth(), image.getHeight()) > maxDimension;
+    }
+
+    /**
+     * @return the next JPEG quality to try, never below MIN_QUALITY.
+     */
+    static float lowerQuality(float quality) {
+        return Math.max(MIN_QUALITY, quality - 0.1f);
+    }
+
+    /**
+     * Draws the image onto a new grayscale image. Transparent parts become white, like the paper they usually
+     * stand for, instead of the black of an empty grayscale image.
+     * @param image any image.
+     * @return a new TYPE_BYTE_GRAY image of the same size.
+     */
+    static BufferedImage toGrayscale(BufferedImage image) {
+        BufferedImage gray = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = gray.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, gray.getWidth(), gray.getHeight());
+        graphics.drawImage(image, 0, 0, null);
+        graphics.dispose();
+        return gray;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOutputStream = ImageIO.createImageOutputStream(outputStream)) {
+            writer.setOutput(imageOutputStream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return outputStream.toByteArray();
+    }
+
+    private long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,293 @@
+package org.imagetextapp.apis.ocr;
+
+import org.imagetextapp.utility.PropertiesReader;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-addressed cache of OCR results, so that the same image is never sent to the OCR API twice.
+ *
+ * Results are keyed by a SHA-256 hash of the image bytes together with the OCR parameters (language,
+ * OCR engine and orientation detection). There are two tiers:
+ *
+ *      - An in-memory LRU tier, bounded by the approximate size of the cached texts (OCR_CACHE_MAX_BYTES).
+ *      - An optional on-disk tier that survives restarts, enabled by setting OCR_CACHE_DIR to a directory.
+ */
+public class OCRCache {
+
+    private static final OCRCache INSTANCE = new OCRCache(
+            PropertiesReader.getLongProperty("OCR_CACHE_MAX_BYTES", 32L * 1024 * 1024),
+            PropertiesReader.getProperty("OCR_CACHE_DIR", null));
+
+    private final long maxBytes;
+    private final Path directory;
+    private final LinkedHashMap<String, OCRObject> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes = 0;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxBytes approximate upper bound for the memory used by the in-memory tier.
+     * @param directory directory of the on-disk tier, or null to keep results in memory only.
+     */
+    public OCRCache(long maxBytes, String directory) {
+        this.maxBytes = maxBytes;
+        this.directory = directory == null ? null : Path.of(directory);
+
+        if (this.directory != null) {
+            try {
+                Files.createDirectories(this.directory);
+            } catch (IOException e) {
+                System.out.println("Could not create the OCR cache directory: " + directory);
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public static OCRCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Creates the cache key of an OCR request for a local image.
+     * @param image Path to a local file (image).
+     * @param language The language of the text of the image.
+     * @param ocrEngine OCR engine that is used.
+     * @param detectOrientation If the orientation of the image is detected.
+     * @return hex string that identifies the image and parameters.
+     * @throws IOException if the image could not be read.
+     */
+    public String createKey(Path image, String language, String ocrEngine, boolean detectOrientation) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream inputStream = Files.newInputStream(image)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = inputStream.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return createKey(digest, language, ocrEngine, detectOrientation);
+    }
+
+    /**
+     * Creates the cache key of an OCR request for image bytes that are already in memory.
+     * @param image bytes of the image.
+     * @param language The language of the text of the image.
+     * @param ocrEngine OCR engine that is used.
+     * @param detectOrientation If the orientation of the image is detected.
+     * @return hex string that identifies the image and parameters.
+     */
+    public String createKey(byte[] image, String language, String ocrEngine, boolean detectOrientation) {
+        MessageDigest digest = newDigest();
+        digest.update(image);
+        return createKey(digest, language, ocrEngine, detectOrientation);
+    }
+
+    private String createKey(MessageDigest digest, String language, String ocrEngine, boolean detectOrientation) {
+        String parameters = "|" + language + "|" + ocrEngine + "|" + detectOrientation;
+        digest.update(parameters.getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b));
+        }
+        return key.toString();
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+
+    /**
+     * @param key created by createKey.
+     * @return cached result, or null if the image has not been processed before.
+     */
+    public OCRObject get(String key) {
+        synchronized (memory) {
+            OCRObject cached = memory.get(key);
+            if (cached != null) {
+                memoryHits.incrementAndGet();
+                return cached;
+            }
+        }
+
+        OCRObject stored = readFromDisk(key);
+        if (stored != null) {
+            diskHits.incrementAndGet();
+            putInMemory(key, stored);
+            return stored;
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores a result. Failed OCR requests are not cached.
+     * @param key created by createKey.
+     * @param ocrObject result of the OCR request.
+     */
+    public void put(String key, OCRObject ocrObject) {
+        if (ocrObject == null || ocrObject.isErrorOnProcessing()) {
+            return;
+        }
+        putInMemory(key, ocrObject);
+        writeToDisk(key, ocrObject);
+    }
+
+    private void putInMemory(String key, OCRObject ocrObject) {
+        synchronized (memory) {
+            OCRObject previous = memory.put(key, ocrObject);
+            if (previous != null) {
+                memoryBytes -= estimateSize(key, previous);
+            }
+            memoryBytes += estimateSize(key, ocrObject);
+
+            // Evict the least recently used results until the memory tier is within its bounds again.
+            Iterator<Map.Entry<String, OCRObject>> iterator = memory.entrySet().iterator();
+            while (memoryBytes > maxBytes && iterator.hasNext()) {
+                Map.Entry<String, OCRObject> eldest = iterator.next();
+                memoryBytes -= estimateSize(eldest.getKey(), eldest.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    private long estimateSize(String key, OCRObject ocrObject) {
+        long characters = key.length() + ocrObject.getParsedText().length() + ocrObject.getParsedTextClean().length()
+                + ocrObject.getErrorMessage().length() + ocrObject.getErrorDetails().length();
+        return 2 * characters + 128;
+    }
+
+    private OCRObject readFromDisk(String key) {
+        if (directory == null) {
+            return null;
+        }
+        Path file = directory.resolve(key + ".json");
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        try {
+            JSONObject json = new JSONObject(Files.readString(file, StandardCharsets.UTF_8));
+            OCRObject ocrObject = new OCRObject();
+            // Entries written before pages were stored have none; the text of the result is still restored below.
+            JSONArray jsonPages = json.optJSONArray("pages");
+            if (jsonPages != null) {
+                List<OCRPage> pages = new ArrayList<>();
+                for (int i = 0; i < jsonPages.length(); i++) {
+                    JSONObject jsonPage = jsonPages.getJSONObject(i);
+                    OCRPage page = new OCRPage();
+                    page.setPageNumber(jsonPage.getInt("pageNumber"));
+                    page.setTextOrientation(jsonPage.getInt("textOrientation"));
+                    page.setFileParseExitCode(jsonPage.getInt("fileParseExitCode"));
+                    page.setParsedText(jsonPage.getString("parsedText"));
+                    page.setParsedTextClean(jsonPage.getString("parsedTextClean"));
+                    page.setErrorMessage(jsonPage.getString("errorMessage"));
+                    page.setErrorDetails(jsonPage.getString("errorDetails"));
+                    pages.add(page);
+                }
+                ocrObject.setPages(pages);
+            }
+            ocrObject.setTextOrientation(json.getInt("textOrientation"));
+            ocrObject.setFileParseExitCode(json.getInt("fileParseExitCode"));
+            ocrObject.setParsedText(json.getString("parsedText"));
+            ocrObject.setParsedTextClean(json.getString("parsedTextClean"));
+            ocrObject.setErrorMessage(json.getString("errorMessage"));
+            ocrObject.setErrorDetails(json.getString("errorDetails"));
+            ocrObject.setOcrExitCode(json.getInt("ocrExitCode"));
+            ocrObject.setProcessingTime(json.getInt("processingTime"));
+            return ocrObject;
+        } catch (IOException | JSONException e) {
+            System.out.println("Ignoring unreadable OCR cache entry: " + file);
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, OCRObject ocrObject) {
+        if (directory == null) {
+            return;
+        }
+        JSONObject json = new JSONObject();
+        json.put("textOrientation", ocrObject.getTextOrientation());
+        json.put("fileParseExitCode", ocrObject.getFileParseExitCode());
+        json.put("parsedText", ocrObject.getParsedText());
+        json.put("parsedTextClean", ocrObject.getParsedTextClean());
+        json.put("errorMessage", ocrObject.getErrorMessage());
+        json.put("errorDetails", ocrObject.getErrorDetails());
+        json.put("ocrExitCode", ocrObject.getOcrExitCode());
+        json.put("processingTime", ocrObject.getProcessingTime());
+
+        JSONArray pages = new JSONArray();
+        for (OCRPage page : ocrObject.getPages()) {
+            JSONObject jsonPage = new JSONObject();
+            jsonPage.put("pageNumber", page.getPageNumber());
+            jsonPage.put("textOrientation", page.getTextOrientation());
+            jsonPage.put("fileParseExitCode", page.getFileParseExitCode());
+            jsonPage.put("parsedText", page.getParsedText());
+            jsonPage.put("parsedTextClean", page.getParsedTextClean());
+            jsonPage.put("errorMessage", page.getErrorMessage());
+            jsonPage.put("errorDetails", page.getErrorDetails());
+            pages.put(jsonPage);
+        }
+        json.put("pages", pages);
+
+        // Write to a temporary file first, so that a crash never leaves a half-written entry behind.
+        try {
+            Path temporary = Files.createTempFile(directory, key, ".tmp");
+            Files.writeString(temporary, json.toString(), StandardCharsets.UTF_8);
+            Files.move(temporary, directory.resolve(key + ".json"),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Could not write OCR cache entry for " + key);
+            e.printStackTrace();
+        }
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        synchronized (memory) {
+            return "OCRCache{" +
+                    "entries=" + memory.size() +
+                    ", memoryBytes=" + memoryBytes +
+                    ", memoryHits=" + memoryHits +
+                    ", diskHits=" + diskHits +
+                    ", misses=" + misses +
+                    '}';
+        }
+    }
+}
@@ -2,14 +2,29 @@ package org.imagetextapp.apis.ocr;
 
 import org.imagetextapp.utility.*;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.http.HttpResponse;
 import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Generates any text that exists in the source image. Uses the OCR Api:
  * https://ocr.space/ocrapi
+ *
+ * This is the built-in OcrEngine, named "ocrspace".
  */
-public class OCRHandler {
+public class OCRHandler implements OcrEngine {
+
+    @Override
+    public String getName() {
+        return OcrEngines.DEFAULT_ENGINE;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
 
     /**
      *
@@ -17,32 +32,59 @@ public class OCRHandler {
      * @param language The language of the text of the local file (image).
      * @param identifyLanguage If the server should try to identify the language to generate text.
      */
+    @Override
     public OCRObject uploadLocalImage(Path localFile, String language, boolean identifyLanguage) {
-        MultiPartBody multiPartBody;
-
-        if (identifyLanguage) {
-            multiPartBody = new MultiPartBody()
-                    .addPart("file", localFile)
-                    .addPart("language", language)
-                    .addPart("detectOrientation", "true")
-                    .addPart("scale", "true")
-                    .addPart("OCREngine", "2");
-
-        } else {
-            multiPartBody = new MultiPartBody()
-                    .addPart("file", localFile)
-                    .addPart("language", language)
-                    .addPart("detectOrientation", "true")
-                    .addPart("scale", "true");
+        // Return the result of an earlier request for the same image and parameters, if there is one.
+        String cacheKey = createCacheKey(localFile, language, identifyLanguage);
+        OCRObject cached = cacheKey != null ? OCRCache.getInstance().get(cacheKey) : null;
+        if (cached != null) {
+            return cached;
         }
 
+        MultiPartBody multiPartBody = addOptionParts(new MultiPartBody().addPart("file", localFile), language, identifyLanguage);
+
         // Make the OCR request.
         ConnectionManager connectionManager = new ConnectionManager();
-        HttpResponse<String> response = connectionManager.makeOCRRequest(multiPartBody);
+        HttpResponse<InputStream> response = connectionManager.makeOCRRequest(multiPartBody);
 
         // Parse response to object.
         JsonParser jsonParser = new JsonParser();
-        return jsonParser.parseOCRResponse(response);
+        OCRObject ocrObject = jsonParser.parseOCRResponse(response);
+
+        if (cacheKey != null) {
+            OCRCache.getInstance().put(cacheKey, ocrObject);
+        }
+        return ocrObject;
+    }
+
+    /**
+     * Non-blocking version of uploadLocalImage.
+     * @param localFile Path to a local file (image).
+     * @param language The language of the text of the local file (image).
+     * @param identifyLanguage If the server should try to identify the language to generate text.
+     * @return future that completes with the object representation of the response.
+     */
+    @Override
+    public CompletableFuture<OCRObject> uploadLocalImageAsync(Path localFile, String language, boolean identifyLanguage) {
+        String cacheKey = createCacheKey(localFile, language, identifyLanguage);
+        OCRObject cached = cacheKey != null ? OCRCache.getInstance().get(cacheKey) : null;
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        MultiPartBody multiPartBody = addOptionParts(new MultiPartBody().addPart("file", localFile), language, identifyLanguage);
+
+        ConnectionManager connectionManager = new ConnectionManager();
+        JsonParser jsonParser = new JsonParser();
+        // The response body is read on the shared executor, never on a thread of the HTTP client.
+        return connectionManager.makeOCRRequestAsync(multiPartBody)
+                .thenApplyAsync(jsonParser::parseOCRResponse, ExecutionManager.getInstance().getExecutor())
+                .thenApply(ocrObject -> {
+                    if (cacheKey != null) {
+                        OCRCache.getInstance().put(cacheKey, ocrObject);
+                    }
+                    return ocrObject;
+                });
     }
 
     /**
@@ -52,30 +94,61 @@ public class OCRHandler {
      * @param identifyLanguage If the server should try to identify the language to generate text.
      */
     public OCRObject uploadURLImage(String urlFile, String language, boolean identifyLanguage) {
-        MultiPartBody multiPartBody;
-
-        if (identifyLanguage) {
-            multiPartBody = new MultiPartBody()
-                    .addPart("url", urlFile)
-                    .addPart("language", language)
-                    .addPart("detectOrientation", "true")
-                    .addPart("scale", "true")
-                    .addPart("OCREngine", "2");
-
-        } else {
-            multiPartBody = new MultiPartBody()
-                    .addPart("url", urlFile)
-                    .addPart("language", language)
-                    .addPart("detectOrientation", "true")
-                    .addPart("scale", "true");
-        }
+        MultiPartBody multiPartBody = addOptionParts(new MultiPartBody().addPart("url", urlFile), language, identifyLanguage);
 
         // Make the OCR request.
         ConnectionManager connectionManager = new ConnectionManager();
-        HttpResponse<String> response = connectionManager.makeOCRRequest(multiPartBody);
+        HttpResponse<InputStream> response = connectionManager.makeOCRRequest(multiPartBody);
 
         // Parse response to object.
         JsonParser jsonParser = new JsonParser();
         return jsonParser.parseOCRResponse(response);
     }
+
+    /**
+     * Non-blocking version of uploadURLImage.
+     * @param urlFile URL to a file (image).
+     * @param language The language of the text of the file (image).
+     * @param identifyLanguage If the server should try to identify the language to generate text.
+     * @return future that completes with the object representation of the response.
+     */
+    public CompletableFuture<OCRObject> uploadURLImageAsync(String urlFile, String language, boolean identifyLanguage) {
+        MultiPartBody multiPartBody = addOptionParts(new MultiPartBody().addPart("url", urlFile), language, identifyLanguage);
+
+        ConnectionManager connectionManager = new ConnectionManager();
+        JsonParser jsonParser = new JsonParser();
+        return connectionManager.makeOCRRequestAsync(multiPartBody)
+                .thenApplyAsync(jsonParser::parseOCRResponse, ExecutionManager.getInstance().getExecutor());
+    }
+
+    /**
+     * Adds the OCR options to the multipart/form-data body of an OCR request.
+     * @param multiPartBody body that already holds the image part ("file" or "url").
+     * @param language The language of the text of the image.
+     * @param identifyLanguage If the server should try to identify the language to generate text.
+     */
+    private MultiPartBody addOptionParts(MultiPartBody multiPartBody, String language, boolean identifyLanguage) {
+        multiPartBody.addPart("language", language)
+                .addPart("detectOrientation", "true")
+                .addPart("scale", "true");
+
+        if (identifyLanguage) {
+            multiPartBody.addPart("OCREngine", "2");
+        }
+        return multiPartBody;
+    }
+
+    /**
+     * @param localFile Path to a local file (image).
+     * @param language The language of the text of the image.
+     * @param identifyLanguage If the server should try to identify the language to generate text.
+     * @return key of the request in OCRCache, or null if the file could not be read.
+     */
+    private String createCacheKey(Path localFile, String language, boolean identifyLanguage) {
+        try {
+            return OCRCache.getInstance().createKey(localFile, language, identifyLanguage ? "2" : "1", true);
+        } catch (IOException e) {
+            return null;
+        }
+    }
 }
@@ -1,7 +1,13 @@
 package org.imagetextapp.apis.ocr;
 
+import org.imagetextapp.utility.StringManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Object representation of the JSON response from the OCR API.
+ * The text of every page is kept in the pages, and parsedText holds the text of all pages one after another.
  */
 public class OCRObject {
 
@@ -16,6 +22,8 @@ public class OCRObject {
     private boolean errorOnProcessing = false;
     private int processingTime = 0;
 
+    private List<OCRPage> pages = new ArrayList<>();
+
     public int getTextOrientation() {
         return textOrientation;
     }
@@ -88,6 +96,49 @@ public class OCRObject {
         this.processingTime = processingTime;
     }
 
+    public List<OCRPage> getPages() {
+        return pages;
+    }
+
+    /**
+     * Sets the pages, together with the text of all pages and the orientation and exit code of the first page.
+     * The clean text is joined from the clean texts of the pages, which are only computed if a page has none.
+     * @param pages pages in the order of the file.
+     */
+    public void setPages(List<OCRPage> pages) {
+        this.pages = pages;
+
+        StringManager stringManager = new StringManager();
+        StringBuilder text = new StringBuilder();
+        StringBuilder textClean = new StringBuilder();
+        for (OCRPage page : pages) {
+            if (text.length() > 0 && text.charAt(text.length() - 1) != '\n') {
+                // The line break between the pages is cleaned like the one within a page, including "\r\n".
+                if (text.charAt(text.length() - 1) == '\r') {
+                    textClean.setLength(textClean.length() - 1);
+                }
+                text.append('\n');
+                textClean.append(' ');
+            }
+            if (page.getParsedTextClean().isEmpty() && !page.getParsedText().isEmpty()) {
+                page.setParsedTextClean(stringManager.getCleanString(page.getParsedText()));
+            }
+            text.append(page.getParsedText());
+            textClean.append(page.getParsedTextClean());
+        }
+        parsedText = text.toString();
+        parsedTextClean = textClean.toString();
+
+        if (!pages.isEmpty()) {
+            textOrientation = pages.get(0).getTextOrientation();
+            fileParseExitCode = pages.get(0).getFileParseExitCode();
+        }
+    }
+
+    public int getPageCount() {
+        return pages.size();
+    }
+
     @Override
     public String toString() {
         return "OCRObject{" +
@@ -99,7 +150,8 @@ public class OCRObject {
                 ", errorDetails='" + errorDetails + '\n' +
                 ", ocrExitCode=" + ocrExitCode + '\n' +
                 ", errorOnProcessing=" + errorOnProcessing + '\n' +
-                ", processingTime=" + processingTime +
+                ", processingTime=" + processingTime + '\n' +
+                ", pageCount=" + pages.size() +
                 '}';
     }
 }
@@ -0,0 +1,86 @@
+package org.imagetextapp.apis.ocr;
+
+/**
+ * Text of one page of a response from the OCR API. A PDF file results in one page per page of the file,
+ * an image in a single page.
+ */
+public class OCRPage {
+
+    private int pageNumber = 1;
+    private int textOrientation = 0;
+    private int fileParseExitCode = 1;
+    private String parsedText = "";
+    private String parsedTextClean = "";
+    private String errorMessage = "";
+    private String errorDetails = "";
+
+    /**
+     * @return number of the page within the file, starting at 1.
+     */
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    public void setPageNumber(int pageNumber) {
+        this.pageNumber = pageNumber;
+    }
+
+    public int getTextOrientation() {
+        return textOrientation;
+    }
+
+    public void setTextOrientation(int textOrientation) {
+        this.textOrientation = textOrientation;
+    }
+
+    public int getFileParseExitCode() {
+        return fileParseExitCode;
+    }
+
+    public void setFileParseExitCode(int fileParseExitCode) {
+        this.fileParseExitCode = fileParseExitCode;
+    }
+
+    public String getParsedText() {
+        return parsedText;
+    }
+
+    public void setParsedText(String parsedText) {
+        this.parsedText = parsedText;
+    }
+
+    public String getParsedTextClean() {
+        return parsedTextClean;
+    }
+
+    public void setParsedTextClean(String parsedTextClean) {
+        this.parsedTextClean = parsedTextClean;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public String getErrorDetails() {
+        return errorDetails;
+    }
+
+    public void setErrorDetails(String errorDetails) {
+        this.errorDetails = errorDetails;
+    }
+
+    @Override
+    public String toString() {
+        return "OCRPage{" +
+                "pageNumber=" + pageNumber +
+                ", textOrientation=" + textOrientation +
+                ", fileParseExitCode=" + fileParseExitCode +
+                ", parsedText='" + parsedText + '\'' +
+                ", errorMessage='" + errorMessage + '\'' +
+                '}';
+    }
+}
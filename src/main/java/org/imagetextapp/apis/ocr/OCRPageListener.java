@@ -0,0 +1,14 @@
+package org.imagetextapp.apis.ocr;
+
+/**
+ * Receives the pages of a file as soon as their text has been generated, which may be out of order.
+ */
+@FunctionalInterface
+public interface OCRPageListener {
+
+    /**
+     * @param page page whose text has been generated.
+     * @param pageCount number of pages of the file.
+     */
+    void pageCompleted(OCRPage page, int pageCount);
+}
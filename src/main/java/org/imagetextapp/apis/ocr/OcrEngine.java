@@ -0,0 +1,46 @@
+package org.imagetextapp.apis.ocr;
+
+import org.imagetextapp.utility.ExecutionManager;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Service provider interface of the engines that generate the text of an image.
+ *
+ * OCRHandler (the OCR.space API) is built in. Other engines are discovered with ServiceLoader, by listing
+ * them in META-INF/services/org.imagetextapp.apis.ocr.OcrEngine, and need a public constructor without
+ * arguments. See OcrEngines for how an engine is selected.
+ */
+public interface OcrEngine {
+
+    /**
+     * @return short name that selects the engine, e.g. with OCR_ENGINE.
+     */
+    String getName();
+
+    /**
+     * @return false if the engine cannot run here, e.g. because a native library or its data is missing.
+     */
+    boolean isAvailable();
+
+    /**
+     * @param localFile Path to a local file (image).
+     * @param language OCR.space code of the language of the text, e.g. "ger".
+     * @param identifyLanguage If the engine should try to identify the language itself.
+     * @return object representation of the result. Failures are reported through isErrorOnProcessing.
+     */
+    OCRObject uploadLocalImage(Path localFile, String language, boolean identifyLanguage);
+
+    /**
+     * Non-blocking version of uploadLocalImage, which runs it on the shared executor by default.
+     * @param localFile Path to a local file (image).
+     * @param language OCR.space code of the language of the text, e.g. "ger".
+     * @param identifyLanguage If the engine should try to identify the language itself.
+     * @return future that completes with the object representation of the result.
+     */
+    default CompletableFuture<OCRObject> uploadLocalImageAsync(Path localFile, String language, boolean identifyLanguage) {
+        return CompletableFuture.supplyAsync(() -> uploadLocalImage(localFile, language, identifyLanguage),
+                ExecutionManager.getInstance().getExecutor());
+    }
+}
@@ -0,0 +1,93 @@
+package org.imagetextapp.apis.ocr;
+
+import org.imagetextapp.utility.PropertiesReader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * The OCR engines that are available to the application: the built-in OCR.space engine (OCRHandler) and every
+ * engine found on the class path with ServiceLoader.
+ *
+ * Images are read with the engine named by OCR_ENGINE (default "ocrspace"). If that engine is not found or
+ * cannot run here, OCR.space is used instead.
+ */
+public class OcrEngines {
+
+    public static final String DEFAULT_ENGINE = "ocrspace";
+
+    private static final OcrEngines INSTANCE = new OcrEngines(ServiceLoader.load(OcrEngine.class));
+
+    // Name -> engine, in the order they were found.
+    private final Map<String, OcrEngine> engines = new LinkedHashMap<>();
+    private final String selected;
+
+    /**
+     * @param providers engines to offer besides OCR.space.
+     */
+    public OcrEngines(Iterable<OcrEngine> providers) {
+        OCRHandler ocrSpace = new OCRHandler();
+        engines.put(ocrSpace.getName(), ocrSpace);
+
+        Iterator<OcrEngine> iterator = providers.iterator();
+        while (true) {
+            try {
+                if (!iterator.hasNext()) {
+                    break;
+                }
+                OcrEngine engine = iterator.next();
+                engines.putIfAbsent(engine.getName(), engine);
+            } catch (ServiceConfigurationError | LinkageError e) {
+                // An engine whose libraries are missing is left out, the others can still be used.
+                System.out.println("Could not load an OCR engine: " + e);
+            }
+        }
+        this.selected = PropertiesReader.getProperty("OCR_ENGINE", DEFAULT_ENGINE);
+    }
+
+    public static OcrEngines getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param name of the engine.
+     * @return the engine, or null if there is no engine with that name.
+     */
+    public OcrEngine get(String name) {
+        return engines.get(name);
+    }
+
+    /**
+     * @return the engine selected with OCR_ENGINE, or OCR.space if it is not found or cannot run here.
+     */
+    public OcrEngine getDefault() {
+        OcrEngine engine = engines.get(selected);
+        if (engine == null || !engine.isAvailable()) {
+            if (!DEFAULT_ENGINE.equals(selected)) {
+                System.out.println("OCR engine " + selected + " is not available, using " + DEFAULT_ENGINE + ".");
+            }
+            return engines.get(DEFAULT_ENGINE);
+        }
+        return engine;
+    }
+
+    /**
+     * @return every engine, available or not.
+     */
+    public List<OcrEngine> getAll() {
+        return Collections.unmodifiableList(new ArrayList<>(engines.values()));
+    }
+
+    /**
+     * @return names of the engines, e.g. for a usage message.
+     */
+    public List<String> getNames() {
+        return new ArrayList<>(engines.keySet());
+    }
+}
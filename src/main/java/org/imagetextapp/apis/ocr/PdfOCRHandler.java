@@ -0,0 +1,302 @@
+package org.imagetextapp.apis.ocr;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.multipdf.Splitter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.encryption.InvalidPasswordException;
+import org.imagetextapp.utility.ExecutionManager;
+import org.imagetextapp.utility.PropertiesReader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Generates the text of every page of a PDF file.
+ *
+ * Large files are split locally (with PDFBox) into ranges of pages, which are sent to the OCR API at the same
+ * time, within the concurrency limit of the service. This keeps every request within the page and size limits
+ * of the API, and a long document takes about as long as its slowest range instead of all pages in a row.
+ * The pages of each range are handed to an OCRPageListener as soon as the range completes, and the result holds
+ * all pages in the order of the file.
+ *
+ * If some ranges fail, the result holds the text of the others, with OCR exit code 2 (partially parsed), and the
+ * pages of the failed ranges carry the error message. Only if every range fails is the result an error.
+ *
+ * The size of the ranges can be changed with OCR_PDF_PAGES_PER_REQUEST (default 3, the limit of the free OCR API).
+ * A range that is larger than OCR_PREPROCESS_MAX_BYTES (default 1 MB) is sent page by page, and a single page that
+ * is still too large is not sent at all, but reported as a failed page.
+ */
+public class PdfOCRHandler {
+
+    private final int pagesPerRequest;
+    private final long maxBytes;
+
+    public PdfOCRHandler() {
+        this((int) PropertiesReader.getLongProperty("OCR_PDF_PAGES_PER_REQUEST", 3),
+                PropertiesReader.getLongProperty("OCR_PREPROCESS_MAX_BYTES", 1024L * 1024));
+    }
+
+    /**
+     * @param pagesPerRequest maximum number of pages that are sent in one request.
+     * @param maxBytes maximum file size that is sent in one request.
+     */
+    public PdfOCRHandler(int pagesPerRequest, long maxBytes) {
+        this.pagesPerRequest = Math.max(1, pagesPerRequest);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param pdfFile Path to a local PDF file.
+     * @param language The language of the text of the file.
+     * @param identifyLanguage If the server should try to identify the language to generate text.
+     * @param listener receives every page as soon as its text has been generated, or null.
+     * @return object representation of the responses, with one page per page of the file.
+     * @throws IOException if the file could not be split.
+     */
+    public OCRObject uploadPdf(Path pdfFile, String language, boolean identifyLanguage, OCRPageListener listener)
+            throws IOException {
+        try {
+            return uploadPdfAsync(pdfFile, language, identifyLanguage, listener).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Non-blocking version of uploadPdf.
+     * @param pdfFile Path to a local PDF file.
+     * @param language The language of the text of the file.
+     * @param identifyLanguage If the server should try to identify the language to generate text.
+     * @param listener receives every page as soon as its text has been generated, or null.
+     * @return future that completes with the result, or exceptionally with the IOException of the splitting.
+     */
+    public CompletableFuture<OCRObject> uploadPdfAsync(Path pdfFile, String language, boolean identifyLanguage,
+                                                      OCRPageListener listener) {
+        long start = System.nanoTime();
+        ExecutorService executor = ExecutionManager.getInstance().getExecutor();
+
+        return CompletableFuture.supplyAsync(() -> split(pdfFile), executor).thenCompose(ranges -> {
+            int pageCount = ranges.stream().mapToInt(range -> range.pageCount).sum();
+
+            List<CompletableFuture<OCRObject>> futures = new ArrayList<>();
+            for (PageRange range : ranges) {
+                futures.add(CompletableFuture.supplyAsync(() -> range.tooLarge ? tooLarge()
+                                : new OCRHandler().uploadLocalImage(range.file, language, identifyLanguage), executor)
+                        .handle((ocrObject, throwable) -> toPages(range, ocrObject, throwable))
+                        .thenApply(ocrObject -> {
+                            range.deleteFile();
+                            if (listener != null) {
+                                for (OCRPage page : ocrObject.getPages()) {
+                                    listener.pageCompleted(page, Math.max(pageCount, page.getPageNumber()));
+                                }
+                            }
+                            return ocrObject;
+                        }));
+            }
+
+            return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                    .thenApply(ignored -> merge(ranges, futures, (System.nanoTime() - start) / 1_000_000));
+        });
+    }
+
+    /**
+     * Splits the file into ranges of at most pagesPerRequest pages, each saved to a temporary file.
+     * A file that is small enough, or that cannot be opened (e.g. protected with a password), is sent as it is.
+     */
+    private List<PageRange> split(Path pdfFile) {
+        List<PageRange> ranges = new ArrayList<>();
+        try (PDDocument document = PDDocument.load(pdfFile.toFile(), MemoryUsageSetting.setupTempFileOnly())) {
+            int pageCount = document.getNumberOfPages();
+            if (pageCount <= pagesPerRequest && Files.size(pdfFile) <= maxBytes) {
+                ranges.add(new PageRange(pdfFile, 1, pageCount, false));
+                return ranges;
+            }
+
+            addRanges(document, 1, pagesPerRequest, ranges);
+            return ranges;
+        } catch (InvalidPasswordException e) {
+            System.out.println("Could not open " + pdfFile + " to split it, sending the whole file.");
+            ranges.forEach(PageRange::deleteFile);
+            PageRange range = new PageRange(pdfFile, 1, 0, false);
+            try {
+                range.tooLarge = Files.size(pdfFile) > maxBytes;
+            } catch (IOException sizeException) {
+                throw new CompletionException(sizeException);
+            }
+            return List.of(range);
+        } catch (IOException e) {
+            ranges.forEach(PageRange::deleteFile);
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Saves the pages of the document in ranges of pagesPerRange pages. A range of several pages that is larger
+     * than maxBytes is saved again page by page, and a single page that is still too large is marked as such.
+     */
+    private void addRanges(PDDocument document, int firstPage, int pagesPerRange, List<PageRange> ranges)
+            throws IOException {
+        Splitter splitter = new Splitter();
+        splitter.setSplitAtPage(pagesPerRange);
+        splitter.setMemoryUsageSetting(MemoryUsageSetting.setupTempFileOnly());
+
+        List<PDDocument> parts = splitter.split(document);
+        try {
+            for (PDDocument part : parts) {
+                int pageCount = part.getNumberOfPages();
+                Path file = Files.createTempFile("ocr-pages-" + firstPage + "-", ".pdf");
+                PageRange range = new PageRange(file, firstPage, pageCount, true);
+                ranges.add(range);
+                part.save(file.toFile());
+
+                if (Files.size(file) > maxBytes) {
+                    if (pageCount > 1) {
+                        ranges.remove(range);
+                        range.deleteFile();
+                        addRanges(part, firstPage, 1, ranges);
+                    } else {
+                        range.tooLarge = true;
+                    }
+                }
+                firstPage += pageCount;
+            }
+        } finally {
+            for (PDDocument part : parts) {
+                part.close();
+            }
+        }
+    }
+
+    /**
+     * @return error result of a range that is too large to be sent.
+     */
+    private OCRObject tooLarge() {
+        OCRObject ocrObject = new OCRObject();
+        ocrObject.setErrorOnProcessing(true);
+        ocrObject.setOcrExitCode(3);
+        ocrObject.setErrorMessage("The page is larger than the file size limit of the OCR API ("
+                + maxBytes / 1024 + " KB).");
+        return ocrObject;
+    }
+
+    /**
+     * Copies the pages of a range, numbered within the whole file. The response itself is left unchanged,
+     * since it may be shared through OCRCache. A range that failed gets a page with the error message for
+     * every page it holds.
+     */
+    private OCRObject toPages(PageRange range, OCRObject response, Throwable throwable) {
+        OCRObject ocrObject = new OCRObject();
+        if (response == null) {
+            ocrObject.setErrorOnProcessing(true);
+            ocrObject.setErrorMessage(String.valueOf(throwable instanceof CompletionException
+                    ? throwable.getCause() : throwable));
+        } else {
+            ocrObject.setErrorOnProcessing(response.isErrorOnProcessing());
+            ocrObject.setErrorMessage(response.getErrorMessage());
+            ocrObject.setErrorDetails(response.getErrorDetails());
+        }
+
+        List<OCRPage> pages = new ArrayList<>();
+        if (ocrObject.isErrorOnProcessing()) {
+            for (int i = 0; i < Math.max(1, range.pageCount); i++) {
+                OCRPage page = new OCRPage();
+                page.setErrorMessage(ocrObject.getErrorMessage());
+                page.setErrorDetails(ocrObject.getErrorDetails());
+                pages.add(page);
+            }
+        } else if (response.getPages().isEmpty()) {
+            // A result without pages still holds the text of the whole range.
+            OCRPage page = new OCRPage();
+            page.setTextOrientation(response.getTextOrientation());
+            page.setFileParseExitCode(response.getFileParseExitCode());
+            page.setParsedText(response.getParsedText());
+            page.setParsedTextClean(response.getParsedTextClean());
+            pages.add(page);
+        } else {
+            for (OCRPage responsePage : response.getPages()) {
+                OCRPage page = new OCRPage();
+                page.setTextOrientation(responsePage.getTextOrientation());
+                page.setFileParseExitCode(responsePage.getFileParseExitCode());
+                page.setParsedText(responsePage.getParsedText());
+                page.setParsedTextClean(responsePage.getParsedTextClean());
+                page.setErrorMessage(responsePage.getErrorMessage());
+                page.setErrorDetails(responsePage.getErrorDetails());
+                pages.add(page);
+            }
+        }
+        for (int i = 0; i < pages.size(); i++) {
+            pages.get(i).setPageNumber(range.firstPage + i);
+        }
+        ocrObject.setPages(pages);
+        return ocrObject;
+    }
+
+    /**
+     * Puts the pages of all ranges together in the order of the file.
+     */
+    private OCRObject merge(List<PageRange> ranges, List<CompletableFuture<OCRObject>> futures, long elapsedMillis) {
+        OCRObject merged = new OCRObject();
+        List<OCRPage> pages = new ArrayList<>();
+        int failedRanges = 0;
+
+        for (int i = 0; i < ranges.size(); i++) {
+            OCRObject ocrObject = futures.get(i).join();
+            pages.addAll(ocrObject.getPages());
+
+            if (ocrObject.isErrorOnProcessing()) {
+                failedRanges++;
+                if (merged.getErrorMessage().isEmpty()) {
+                    PageRange range = ranges.get(i);
+                    merged.setErrorMessage(range.pageCount == 0 ? ocrObject.getErrorMessage() : "Pages "
+                            + range.firstPage + "-" + (range.firstPage + range.pageCount - 1) + ": " + ocrObject.getErrorMessage());
+                    merged.setErrorDetails(ocrObject.getErrorDetails());
+                }
+            }
+        }
+
+        merged.setPages(pages);
+        merged.setProcessingTime((int) elapsedMillis);
+        merged.setErrorOnProcessing(failedRanges == ranges.size());
+        merged.setOcrExitCode(failedRanges == 0 ? 1 : failedRanges < ranges.size() ? 2 : 3);
+        return merged;
+    }
+
+    /**
+     * Consecutive pages of the file that are sent in one request.
+     */
+    private static class PageRange {
+
+        private final Path file;
+        private final int firstPage;
+        private final int pageCount;
+        private final boolean temporary;
+        // Set if even a single page is larger than the file size limit, so the range is not sent.
+        private boolean tooLarge;
+
+        PageRange(Path file, int firstPage, int pageCount, boolean temporary) {
+            this.file = file;
+            this.firstPage = firstPage;
+            this.pageCount = pageCount;
+            this.temporary = temporary;
+        }
+
+        void deleteFile() {
+            if (temporary) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    System.out.println("Could not delete split PDF file " + file);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.imagetextapp.apis.ocr;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Result of preprocessing an image before it is uploaded for text generation.
+ */
+public class PreprocessResult {
+
+    private final Path original;
+    private final Path file;
+    private final long originalBytes;
+    private final long processedBytes;
+    private final long elapsedMillis;
+
+    public PreprocessResult(Path original, Path file, long originalBytes, long processedBytes, long elapsedMillis) {
+        this.original = original;
+        this.file = file;
+        this.originalBytes = originalBytes;
+        this.processedBytes = processedBytes;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @return the file that should be uploaded: the processed image, or the original if nothing was done.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return true if a new, smaller image was created.
+     */
+    public boolean isProcessed() {
+        return !file.equals(original);
+    }
+
+    public long getOriginalBytes() {
+        return originalBytes;
+    }
+
+    public long getProcessedBytes() {
+        return processedBytes;
+    }
+
+    public long getBytesSaved() {
+        return originalBytes - processedBytes;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Deletes the processed image once it has been uploaded. The original is never deleted.
+     */
+    public void deleteProcessedFile() {
+        if (isProcessed()) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                System.out.println("Could not delete preprocessed image " + file);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PreprocessResult{" +
+                "processed=" + isProcessed() +
+                ", originalBytes=" + originalBytes +
+                ", processedBytes=" + processedBytes +
+                ", bytesSaved=" + getBytesSaved() +
+                ", elapsedMillis=" + elapsedMillis +
+                '}';
+    }
+}
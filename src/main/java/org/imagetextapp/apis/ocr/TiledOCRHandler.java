@@ -0,0 +1,452 @@
+package org.imagetextapp.apis.ocr;
+
+import org.imagetextapp.utility.ExecutionManager;
+import org.imagetextapp.utility.PropertiesReader;
+import org.imagetextapp.utility.StringManager;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * Generates the text of a large image in parts, so that running it again after a small change (e.g. a crop or
+ * a marked word) only sends the parts that have changed.
+ *
+ * The image is cut into bands of at most OCR_TILE_HEIGHT pixels (default 1000). The bands follow the content,
+ * not a fixed grid: blank margins are left out, and a band ends in the largest blank gap between two lines of
+ * text in its lower half. Only if there is no such gap is a band cut through the text, overlapping the next band
+ * by OCR_TILE_OVERLAP pixels (default 100) so every line is whole in at least one band. Every band is identified
+ * in OCRCache by a hash of its content, trimmed to the ink, so cropping blank margins on any side or editing
+ * one part of the image leaves the other bands as they were. Bands that have been read before are taken from
+ * the cache, and only the others are preprocessed and sent to the OCR API, at the same time. The texts of the
+ * bands are stitched together in order, leaving out the lines that were read twice because of an overlap.
+ *
+ * If some bands fail, the result holds the text of the others with OCR exit code 2 (partially parsed).
+ * Enable with OCR_TILED.
+ */
+public class TiledOCRHandler {
+
+    // Number of lines at the end and start of two bands that are compared to find the overlap.
+    private static final int MAX_OVERLAP_LINES = 10;
+
+    // Lines that are read twice must together be at least this long, so short lines (e.g. "-") do not match by chance.
+    private static final int MIN_OVERLAP_CHARS = 8;
+
+    // Difference in gray level from the background above which a pixel counts as ink.
+    private static final int INK_THRESHOLD = 64;
+
+    // Blank border, in pixels, around the content of a band that is sent, as OCR works poorly up to the edge.
+    private static final int PADDING = 16;
+
+    private final int tileHeight;
+    private final int overlap;
+
+    public TiledOCRHandler() {
+        this((int) PropertiesReader.getLongProperty("OCR_TILE_HEIGHT", 1000),
+                (int) PropertiesReader.getLongProperty("OCR_TILE_OVERLAP", 100));
+    }
+
+    /**
+     * @param tileHeight height of a band, in pixels.
+     * @param overlap number of pixels that a band shares with the previous one.
+     */
+    public TiledOCRHandler(int tileHeight, int overlap) {
+        this.tileHeight = Math.max(2, tileHeight);
+        this.overlap = Math.max(0, Math.min(overlap, this.tileHeight / 2));
+    }
+
+    /**
+     * @param localFile Path to a local file (image).
+     * @param language The language of the text of the image.
+     * @param identifyLanguage If the server should try to identify the language to generate text.
+     * @param progress receives status messages while the bands are read, or null.
+     * @return object representation of the stitched text, as a single page.
+     * @throws IOException if the image could not be read or a band could not be written.
+     */
+    public OCRObject uploadLocalImage(Path localFile, String language, boolean identifyLanguage, Consumer<String> progress)
+            throws IOException {
+        try {
+            return uploadLocalImageAsync(localFile, language, identifyLanguage, progress).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Non-blocking version of uploadLocalImage.
+     * @param localFile Path to a local file (image).
+     * @param language The language of the text of the image.
+     * @param identifyLanguage If the server should try to identify the language to generate text.
+     * @param progress receives status messages while the bands are read, or null.
+     * @return future that completes with the result, or exceptionally with the IOException of the image.
+     */
+    public CompletableFuture<OCRObject> uploadLocalImageAsync(Path localFile, String language, boolean identifyLanguage,
+                                                             Consumer<String> progress) {
+        long start = System.nanoTime();
+        ExecutorService executor = ExecutionManager.getInstance().getExecutor();
+        String ocrEngine = identifyLanguage ? "2" : "1";
+
+        return CompletableFuture.supplyAsync(() -> split(localFile, language, ocrEngine), executor).thenCompose(tiles -> {
+            // Formats that ImageIO cannot read, and images without any ink, are sent as a whole.
+            if (tiles == null || tiles.isEmpty()) {
+                return CompletableFuture.supplyAsync(() ->
+                        new OCRHandler().uploadLocalImage(localFile, language, identifyLanguage), executor);
+            }
+
+            List<CompletableFuture<OCRObject>> futures = new ArrayList<>();
+            int sent = 0;
+            for (Tile tile : tiles) {
+                OCRObject cached = OCRCache.getInstance().get(tile.key);
+                if (cached != null) {
+                    futures.add(CompletableFuture.completedFuture(cached));
+                    tile.image = null;
+                    continue;
+                }
+                sent++;
+                futures.add(CompletableFuture.supplyAsync(() -> read(tile, language, identifyLanguage), executor));
+            }
+            report(progress, "Reusing " + (tiles.size() - sent) + " of " + tiles.size()
+                    + " parts of the image, processing " + sent + "...");
+
+            return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                    .thenApply(ignored -> merge(tiles, futures, (System.nanoTime() - start) / 1_000_000));
+        });
+    }
+
+    /**
+     * Cuts the image into bands that follow its content and hashes the content of every band.
+     * @return the bands in order, or null if the image cannot be read by ImageIO.
+     */
+    private List<Tile> split(Path localFile, String language, String ocrEngine) {
+        BufferedImage image;
+        try {
+            image = ImageIO.read(localFile.toFile());
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+        if (image == null) {
+            return null;
+        }
+
+        // Transparent parts become white, so they count as background.
+        BufferedImage gray = ImagePreprocessor.toGrayscale(image);
+        int width = gray.getWidth();
+        byte[] pixels = ((DataBufferByte) gray.getRaster().getDataBuffer()).getData();
+        int background = getBackground(pixels);
+
+        // First and last column with ink in every row, or -1 for a blank row.
+        int[] firstInk = new int[gray.getHeight()];
+        int[] lastInk = new int[gray.getHeight()];
+        boolean[] blankRows = new boolean[gray.getHeight()];
+        for (int y = 0; y < gray.getHeight(); y++) {
+            firstInk[y] = -1;
+            lastInk[y] = -1;
+            for (int x = 0; x < width; x++) {
+                if (Math.abs((pixels[y * width + x] & 0xff) - background) > INK_THRESHOLD) {
+                    firstInk[y] = firstInk[y] < 0 ? x : firstInk[y];
+                    lastInk[y] = x;
+                }
+            }
+            blankRows[y] = firstInk[y] < 0;
+        }
+
+        List<Tile> tiles = new ArrayList<>();
+        for (int[] bounds : getTileBounds(blankRows)) {
+            // Trim the band to its ink, so the blank space around it does not change its hash.
+            int top = -1;
+            int bottom = -1;
+            int left = width;
+            int right = -1;
+            for (int y = bounds[0]; y < bounds[1]; y++) {
+                if (!blankRows[y]) {
+                    top = top < 0 ? y : top;
+                    bottom = y + 1;
+                    left = Math.min(left, firstInk[y]);
+                    right = Math.max(right, lastInk[y] + 1);
+                }
+            }
+            if (top < 0) {
+                continue;
+            }
+
+            BufferedImage content = ImagePreprocessor.toGrayscale(gray.getSubimage(left, top, right - left, bottom - top));
+            byte[] contentPixels = ((DataBufferByte) content.getRaster().getDataBuffer()).getData();
+            // The size is part of the key, so bands with the same pixels but another shape are not mixed up.
+            String key = OCRCache.getInstance().createKey(contentPixels, language,
+                    ocrEngine + "|tile " + content.getWidth() + "x" + content.getHeight(), true);
+            tiles.add(new Tile(tiles.size() + 1, top, bottom, pad(content, background), key));
+        }
+        return tiles;
+    }
+
+    /**
+     * Lays out the bands along the content of the image. Blank rows at the top and bottom are left out, and a
+     * band that would be higher than tileHeight ends in the largest blank gap in its lower half (the lowest of
+     * equally large gaps), which is usually a paragraph break that stays in place when the image is cropped.
+     * Without such a gap, the band is cut through the text and overlaps the next band.
+     * @param blankRows for every row of the image, whether it holds no ink.
+     * @return top (inclusive) and bottom (exclusive) row of every band, from the top of the image.
+     */
+    public List<int[]> getTileBounds(boolean[] blankRows) {
+        List<int[]> bounds = new ArrayList<>();
+        int top = 0;
+        int end = blankRows.length;
+        while (top < end && blankRows[top]) {
+            top++;
+        }
+        while (end > top && blankRows[end - 1]) {
+            end--;
+        }
+
+        while (top < end) {
+            if (end - top <= tileHeight) {
+                bounds.add(new int[]{top, end});
+                break;
+            }
+
+            int gapStart = -1;
+            int gapLength = 0;
+            int row = top + tileHeight / 2;
+            while (row < top + tileHeight) {
+                if (!blankRows[row]) {
+                    row++;
+                    continue;
+                }
+                int start = row;
+                while (blankRows[row]) {
+                    row++;
+                }
+                if (row - start >= gapLength) {
+                    gapStart = start;
+                    gapLength = row - start;
+                }
+            }
+
+            if (gapStart < 0) {
+                bounds.add(new int[]{top, top + tileHeight});
+                top += tileHeight - overlap;
+            } else {
+                bounds.add(new int[]{top, gapStart});
+                top = gapStart + gapLength;
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Sends one band to the OCR API, preprocessed to the limits of the API, and stores the result under the
+     * hash of its pixels.
+     */
+    private OCRObject read(Tile tile, String language, boolean identifyLanguage) {
+        Path file = null;
+        PreprocessResult preprocessResult = null;
+        try {
+            file = Files.createTempFile("ocr-tile-" + tile.number + "-", ".png");
+            ImageIO.write(tile.image, "png", file.toFile());
+            tile.image = null;
+
+            preprocessResult = new ImagePreprocessor().preprocess(file);
+            OCRObject ocrObject = new OCRHandler().uploadLocalImage(preprocessResult.getFile(), language, identifyLanguage);
+            OCRCache.getInstance().put(tile.key, ocrObject);
+            return ocrObject;
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        } finally {
+            if (preprocessResult != null) {
+                preprocessResult.deleteProcessedFile();
+            }
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Stitches the texts of all bands into one page.
+     */
+    private OCRObject merge(List<Tile> tiles, List<CompletableFuture<OCRObject>> futures, long elapsedMillis) {
+        OCRObject merged = new OCRObject();
+        List<String> texts = new ArrayList<>();
+        int failedTiles = 0;
+        int textOrientation = 0;
+
+        for (int i = 0; i < tiles.size(); i++) {
+            OCRObject ocrObject = futures.get(i).join();
+            if (ocrObject.isErrorOnProcessing()) {
+                failedTiles++;
+                if (merged.getErrorMessage().isEmpty()) {
+                    Tile tile = tiles.get(i);
+                    merged.setErrorMessage("Part " + tile.number + " of " + tiles.size() + " (rows " + tile.top + "-"
+                            + tile.bottom + "): " + ocrObject.getErrorMessage());
+                    merged.setErrorDetails(ocrObject.getErrorDetails());
+                }
+                continue;
+            }
+            if (texts.isEmpty()) {
+                textOrientation = ocrObject.getTextOrientation();
+            }
+            texts.add(ocrObject.getParsedText());
+        }
+
+        OCRPage page = new OCRPage();
+        page.setTextOrientation(textOrientation);
+        page.setParsedText(stitch(texts));
+        page.setParsedTextClean(new StringManager().getCleanString(page.getParsedText()));
+        page.setErrorMessage(merged.getErrorMessage());
+        page.setErrorDetails(merged.getErrorDetails());
+
+        merged.setPages(List.of(page));
+        merged.setProcessingTime((int) elapsedMillis);
+        merged.setErrorOnProcessing(failedTiles == tiles.size());
+        merged.setOcrExitCode(failedTiles == 0 ? 1 : failedTiles < tiles.size() ? 2 : 3);
+        return merged;
+    }
+
+    /**
+     * Puts the texts of consecutive bands together. The lines at the start of a band that repeat the lines at
+     * the end of the text so far (read twice because of the overlap) are left out. A line that was cut by the
+     * edge of a band is read as nonsense, so one unmatched line at the edge on either side may be left out too.
+     * @param texts texts of the bands, from top to bottom.
+     * @return the text of the whole image.
+     */
+    public String stitch(List<String> texts) {
+        String separator = texts.stream().anyMatch(text -> text.contains("\r\n")) ? "\r\n" : "\n";
+        List<String> lines = new ArrayList<>();
+
+        for (String text : texts) {
+            List<String> next = new ArrayList<>(Arrays.asList(text.split("\r?\n", -1)));
+            // A trailing line break is added back at the end.
+            if (!next.isEmpty() && next.get(next.size() - 1).isEmpty()) {
+                next.remove(next.size() - 1);
+            }
+            if (lines.isEmpty()) {
+                lines.addAll(next);
+                continue;
+            }
+
+            int[] match = findOverlap(lines, next);
+            lines.subList(lines.size() - match[0], lines.size()).clear();
+            lines.addAll(next.subList(match[1], next.size()));
+        }
+
+        return lines.isEmpty() ? "" : String.join(separator, lines) + separator;
+    }
+
+    /**
+     * @return number of lines to remove from the end of the previous text, and the index of the first line of
+     * the next text to keep. Both are 0 if the texts do not overlap.
+     */
+    private int[] findOverlap(List<String> previous, List<String> next) {
+        int[] best = {0, 0};
+        int bestLength = 0;
+        for (int skipEnd = 0; skipEnd <= 1; skipEnd++) {
+            for (int skipStart = 0; skipStart <= 1; skipStart++) {
+                int available = Math.min(previous.size() - skipEnd, next.size() - skipStart);
+                for (int count = Math.min(MAX_OVERLAP_LINES, available); count > 0; count--) {
+                    int length = matchLength(previous, previous.size() - skipEnd - count, next, skipStart, count);
+                    // Prefer the longest match, and the fewest skipped lines among equally long ones.
+                    if (length >= MIN_OVERLAP_CHARS && length > bestLength) {
+                        best = new int[]{skipEnd, skipStart + count};
+                        bestLength = length;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return number of characters of the lines that match, or -1 if one of the lines differs.
+     */
+    private int matchLength(List<String> previous, int from, List<String> next, int start, int count) {
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            String line = normalize(previous.get(from + i));
+            if (!line.equals(normalize(next.get(start + i)))) {
+                return -1;
+            }
+            length += line.length();
+        }
+        return length;
+    }
+
+    private String normalize(String line) {
+        return line.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return the most common gray level of the image, taken as the color of the paper.
+     */
+    private int getBackground(byte[] pixels) {
+        int[] histogram = new int[256];
+        for (byte pixel : pixels) {
+            histogram[pixel & 0xff]++;
+        }
+        int background = 0;
+        for (int level = 1; level < histogram.length; level++) {
+            if (histogram[level] > histogram[background]) {
+                background = level;
+            }
+        }
+        return background;
+    }
+
+    /**
+     * @return the content with a border of the background color around it.
+     */
+    private BufferedImage pad(BufferedImage content, int background) {
+        BufferedImage padded = new BufferedImage(content.getWidth() + 2 * PADDING, content.getHeight() + 2 * PADDING,
+                BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = padded.createGraphics();
+        graphics.setColor(new Color(background, background, background));
+        graphics.fillRect(0, 0, padded.getWidth(), padded.getHeight());
+        graphics.drawImage(content, PADDING, PADDING, null);
+        graphics.dispose();
+        return padded;
+    }
+
+    private void report(Consumer<String> progress, String message) {
+        if (progress != null) {
+            progress.accept(message);
+        }
+    }
+
+    /**
+     * A band of the image, from row top (inclusive) to bottom (exclusive).
+     */
+    private static class Tile {
+
+        private final int number;
+        private final int top;
+        private final int bottom;
+        private final String key;
+        private BufferedImage image;
+
+        Tile(int number, int top, int bottom, BufferedImage image, String key) {
+            this.number = number;
+            this.top = top;
+            this.bottom = bottom;
+            this.image = image;
+            this.key = key;
+        }
+    }
+}
@@ -1,17 +1,47 @@
 package org.imagetextapp.apis.translate;
 
 import org.imagetextapp.utility.ConnectionManager;
+import org.imagetextapp.utility.ExecutionManager;
 import org.imagetextapp.utility.JsonParser;
+import org.imagetextapp.utility.PropertiesReader;
 import org.imagetextapp.utility.StringManager;
 
+import java.io.InputStream;
 import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Translates a string to a target language, with the help of Google Translate API:
  * https://english.api.rakuten.net/datascraper/api/google-translate20/endpoints
+ *
+ * Sentences that have been translated before are taken from the TranslationMemory, and only the
+ * remaining sentences are sent to the API. A long text is split into chunks of whole sentences, preferably at
+ * paragraph breaks, of at most TRANSLATE_CHUNK_MAX_CHARS characters (default 2000). Up to
+ * TRANSLATE_CHUNK_PARALLELISM chunks (default 8) are translated at the same time, so a long text takes about
+ * as long as its slowest chunks instead of one huge request. The translation keeps the line layout of the text.
  */
 public class TranslateHandler {
 
+    private final int maxChunkChars;
+    private final int chunkParallelism;
+
+    public TranslateHandler() {
+        this((int) PropertiesReader.getLongProperty("TRANSLATE_CHUNK_MAX_CHARS", 2000),
+                (int) PropertiesReader.getLongProperty("TRANSLATE_CHUNK_PARALLELISM", 8));
+    }
+
+    /**
+     * @param maxChunkChars maximum number of characters that are sent in one request.
+     * @param chunkParallelism maximum number of requests that are sent at the same time for one text.
+     */
+    public TranslateHandler(int maxChunkChars, int chunkParallelism) {
+        this.maxChunkChars = Math.max(1, maxChunkChars);
+        this.chunkParallelism = Math.max(1, chunkParallelism);
+    }
+
     /**
      *
      * @param toTranslate text to be translated
@@ -20,16 +50,7 @@ public class TranslateHandler {
      * @return Object representation of JSON response from Google Translate API.
      */
     public TranslateObject translateText(String toTranslate, String target, String source) {
-        StringManager stringManager = new StringManager();
-        String query = stringManager.getAppXForm(toTranslate, target, source);
-
-        // Make the Translate request.
-        ConnectionManager connectionManager = new ConnectionManager();
-        HttpResponse<String> response = connectionManager.makeTranslateRequest(query);
-
-        // Parse response (translated text) to String.
-        JsonParser jsonParser = new JsonParser();
-        return jsonParser.parseTranslateResponse(response);
+        return translateWithMemory(toTranslate, target, source);
     }
 
     /**
@@ -39,15 +60,198 @@ public class TranslateHandler {
      * @return Object representation of JSON response from Google Translate API.
      */
     public TranslateObject translateText(String toTranslate, String target) {
-        StringManager stringManager = new StringManager();
-        String query = stringManager.getAppXForm(toTranslate, target);
+        return translateWithMemory(toTranslate, target, null);
+    }
+
+    /**
+     * Non-blocking version of translateText.
+     * @param toTranslate text to be translated
+     * @param target language
+     * @param source language (optional)
+     * @return future that completes with the object representation of the response.
+     */
+    public CompletableFuture<TranslateObject> translateTextAsync(String toTranslate, String target, String source) {
+        return translateWithMemoryAsync(toTranslate, target, source);
+    }
 
+    /**
+     * Non-blocking version of translateText.
+     * @param toTranslate text to be translated
+     * @param target language
+     * @return future that completes with the object representation of the response.
+     */
+    public CompletableFuture<TranslateObject> translateTextAsync(String toTranslate, String target) {
+        return translateWithMemoryAsync(toTranslate, target, null);
+    }
+
+    private TranslateObject translateWithMemory(String toTranslate, String target, String source) {
+        TranslationMemory.Lookup lookup = TranslationMemory.getInstance().lookup(toTranslate, target, source);
+
+        // A long text is translated in chunks at the same time.
+        List<List<String>> chunks = lookup.getMissingChunks(maxChunkChars);
+        if (chunks.size() > 1) {
+            return translateChunksAsync(lookup, chunks, target, source).join();
+        }
+
+        if (!lookup.isComplete()) {
+            // Translate all new sentences in one request, one sentence per line.
+            TranslateObject response = translateSentences(lookup.getMissing(), target, source);
+            if (response.isErrorOnProcessing()) {
+                return withText(response, lookup);
+            }
+            lookup.addTranslations(response.getText());
+        }
+        return withText(new TranslateObject(), lookup);
+    }
+
+    /**
+     * Translates sentences in one request, one sentence per line. If the API merged or split lines, the sentences
+     * are halved and each half is translated again, so that a single odd sentence costs a few more requests
+     * instead of one request per sentence.
+     * @return response whose text holds the translated sentences, one per line.
+     */
+    private TranslateObject translateSentences(List<String> sentences, String target, String source) {
+        TranslateObject response = requestTranslation(String.join("\n", sentences), target, source);
+        if (response.isErrorOnProcessing() || matches(response, sentences)) {
+            return response;
+        }
+        if (sentences.size() == 1) {
+            return asSingleLine(response);
+        }
+
+        int middle = sentences.size() / 2;
+        TranslateObject first = translateSentences(sentences.subList(0, middle), target, source);
+        if (first.isErrorOnProcessing()) {
+            return first;
+        }
+        TranslateObject second = translateSentences(sentences.subList(middle, sentences.size()), target, source);
+        return second.isErrorOnProcessing() ? second : joinLines(first, second);
+    }
+
+    private CompletableFuture<TranslateObject> translateWithMemoryAsync(String toTranslate, String target, String source) {
+        TranslationMemory.Lookup lookup = TranslationMemory.getInstance().lookup(toTranslate, target, source);
+        if (lookup.isComplete()) {
+            return CompletableFuture.completedFuture(withText(new TranslateObject(), lookup));
+        }
+        return translateChunksAsync(lookup, lookup.getMissingChunks(maxChunkChars), target, source);
+    }
+
+    /**
+     * Translates the chunks with at most chunkParallelism requests at a time, and adds the translations to the
+     * lookup in the order of the text once all chunks are done.
+     * @return the assembled translation, or the first error together with the text translated so far.
+     */
+    private CompletableFuture<TranslateObject> translateChunksAsync(TranslationMemory.Lookup lookup,
+                                                                   List<List<String>> chunks, String target, String source) {
+        TranslateObject[] responses = new TranslateObject[chunks.size()];
+        AtomicInteger nextChunk = new AtomicInteger();
+
+        List<CompletableFuture<Void>> lanes = new ArrayList<>();
+        for (int i = 0; i < Math.min(chunkParallelism, chunks.size()); i++) {
+            lanes.add(translateNextChunk(chunks, responses, nextChunk, target, source));
+        }
+
+        return CompletableFuture.allOf(lanes.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            TranslateObject error = null;
+            for (int i = 0; i < chunks.size(); i++) {
+                if (responses[i].isErrorOnProcessing()) {
+                    error = error == null ? responses[i] : error;
+                } else {
+                    lookup.addTranslations(chunks.get(i), responses[i].getText());
+                }
+            }
+            return withText(error == null ? new TranslateObject() : error, lookup);
+        });
+    }
+
+    /**
+     * Translates chunks one after another until none are left. Every lane runs one of these.
+     */
+    private CompletableFuture<Void> translateNextChunk(List<List<String>> chunks, TranslateObject[] responses,
+                                                       AtomicInteger nextChunk, String target, String source) {
+        int chunk = nextChunk.getAndIncrement();
+        if (chunk >= chunks.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return translateChunkAsync(chunks.get(chunk), target, source).thenCompose(response -> {
+            responses[chunk] = response;
+            return translateNextChunk(chunks, responses, nextChunk, target, source);
+        });
+    }
+
+    /**
+     * Non-blocking version of translateSentences. The halves are translated one after the other, so a chunk never
+     * has more than one request in flight and stays within the lanes of translateChunksAsync.
+     * @return response whose text holds the translated sentences, one per line.
+     */
+    private CompletableFuture<TranslateObject> translateChunkAsync(List<String> sentences, String target, String source) {
+        return requestTranslationAsync(String.join("\n", sentences), target, source).thenCompose(response -> {
+            if (response.isErrorOnProcessing() || matches(response, sentences)) {
+                return CompletableFuture.completedFuture(response);
+            }
+            if (sentences.size() == 1) {
+                return CompletableFuture.completedFuture(asSingleLine(response));
+            }
+
+            int middle = sentences.size() / 2;
+            return translateChunkAsync(sentences.subList(0, middle), target, source).thenCompose(first -> {
+                if (first.isErrorOnProcessing()) {
+                    return CompletableFuture.completedFuture(first);
+                }
+                return translateChunkAsync(sentences.subList(middle, sentences.size()), target, source)
+                        .thenApply(second -> second.isErrorOnProcessing() ? second : joinLines(first, second));
+            });
+        });
+    }
+
+    private boolean matches(TranslateObject response, List<String> sentences) {
+        return response.getText().split("\n", -1).length == sentences.size();
+    }
+
+    /**
+     * @return the response of a single sentence, with the lines that the API split it into joined again.
+     */
+    private TranslateObject asSingleLine(TranslateObject response) {
+        response.setText(response.getText().replace('\n', ' '));
+        return response;
+    }
+
+    private TranslateObject joinLines(TranslateObject first, TranslateObject second) {
+        TranslateObject joined = new TranslateObject();
+        joined.setText(first.getText() + "\n" + second.getText());
+        return joined;
+    }
+
+    /**
+     * Sets the text of the result to the assembled translation. Sentences without a translation stay as they are.
+     */
+    private TranslateObject withText(TranslateObject translateObject, TranslationMemory.Lookup lookup) {
+        translateObject.setText(lookup.assemble());
+        return translateObject;
+    }
+
+    private TranslateObject requestTranslation(String toTranslate, String target, String source) {
         // Make the Translate request.
         ConnectionManager connectionManager = new ConnectionManager();
-        HttpResponse<String> response = connectionManager.makeTranslateRequest(query);
+        HttpResponse<InputStream> response = connectionManager.makeTranslateRequest(createQuery(toTranslate, target, source));
 
         // Parse response (translated text) to String.
         JsonParser jsonParser = new JsonParser();
         return jsonParser.parseTranslateResponse(response);
     }
+
+    private CompletableFuture<TranslateObject> requestTranslationAsync(String toTranslate, String target, String source) {
+        ConnectionManager connectionManager = new ConnectionManager();
+        JsonParser jsonParser = new JsonParser();
+        return connectionManager.makeTranslateRequestAsync(createQuery(toTranslate, target, source))
+                .thenApplyAsync(jsonParser::parseTranslateResponse, ExecutionManager.getInstance().getExecutor());
+    }
+
+    private String createQuery(String toTranslate, String target, String source) {
+        StringManager stringManager = new StringManager();
+        if (source == null) {
+            return stringManager.getAppXForm(toTranslate, target);
+        }
+        return stringManager.getAppXForm(toTranslate, target, source);
+    }
 }
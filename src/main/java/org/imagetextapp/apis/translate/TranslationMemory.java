@@ -0,0 +1,448 @@
+package org.imagetextapp.apis.translate;
+
+import org.imagetextapp.utility.PropertiesReader;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Segment-level translation memory. Texts are split into sentences, and every sentence that has been
+ * translated before (for the same source and target language) is taken from the memory, so only new
+ * sentences have to be sent to the Translate API.
+ *
+ * The memory is bounded (TRANSLATION_MEMORY_MAX_ENTRIES) and evicts the least recently used sentences,
+ * and sentences expire after TRANSLATION_MEMORY_TTL_HOURS. Setting TRANSLATION_MEMORY_FILE makes the memory
+ * persistent: new translations are appended to that file and loaded again at startup.
+ */
+public class TranslationMemory {
+
+    private static final TranslationMemory INSTANCE = new TranslationMemory(
+            (int) PropertiesReader.getLongProperty("TRANSLATION_MEMORY_MAX_ENTRIES", 20_000),
+            TimeUnit.HOURS.toMillis(PropertiesReader.getLongProperty("TRANSLATION_MEMORY_TTL_HOURS", 24L * 30)),
+            PropertiesReader.getProperty("TRANSLATION_MEMORY_FILE", null));
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Path file;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Guards the file, so lookups do not wait for the disk; never held while waiting for entries.
+    private final Object fileLock = new Object();
+    private BufferedWriter fileWriter;
+    private int fileLines = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxEntries maximum number of sentences kept in memory.
+     * @param ttlMillis time after which a translated sentence expires.
+     * @param file file that the memory is persisted to, or null to keep it in memory only.
+     */
+    public TranslationMemory(int maxEntries, long ttlMillis, String file) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.file = file == null ? null : Path.of(file);
+
+        if (this.file != null) {
+            load();
+        }
+    }
+
+    public static TranslationMemory getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Splits a text into sentences and looks each of them up.
+     * @param text to be translated.
+     * @param target language.
+     * @param source language, or null if unknown.
+     * @return lookup holding the translated sentences and the sentences that still need translation.
+     */
+    public Lookup lookup(String text, String target, String source) {
+        return new Lookup(text, target, source == null ? "" : source);
+    }
+
+    private String createKey(String source, String target, String segment) {
+        return source + '\u0000' + target + '\u0000' + segment;
+    }
+
+    private String get(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (System.currentTimeMillis() - entry.createdMillis > ttlMillis) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.translation;
+        }
+    }
+
+    private void put(String source, String target, String segment, String translation) {
+        Entry entry = new Entry(translation, System.currentTimeMillis());
+        synchronized (entries) {
+            putEntry(createKey(source, target, segment), entry);
+        }
+        synchronized (fileLock) {
+            append(source, target, segment, entry);
+        }
+    }
+
+    private void putEntry(String key, Entry entry) {
+        entries.put(key, entry);
+        if (entries.size() > maxEntries) {
+            String eldest = entries.keySet().iterator().next();
+            entries.remove(eldest);
+        }
+    }
+
+    /**
+     * Loads the persisted memory. Later lines override earlier ones, and expired lines are skipped.
+     */
+    private void load() {
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            if (Files.exists(file)) {
+                long now = System.currentTimeMillis();
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    fileLines++;
+                    try {
+                        JSONObject json = new JSONObject(line);
+                        Entry entry = new Entry(json.getString("translation"), json.getLong("created"));
+                        if (now - entry.createdMillis <= ttlMillis) {
+                            putEntry(createKey(json.getString("source"), json.getString("target"),
+                                    json.getString("segment")), entry);
+                        }
+                    } catch (JSONException e) {
+                        // Skip lines that were only partially written.
+                    }
+                }
+            }
+            fileWriter = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.out.println("Could not load the translation memory from " + file);
+            e.printStackTrace();
+        }
+    }
+
+    private void append(String source, String target, String segment, Entry entry) {
+        if (fileWriter == null) {
+            return;
+        }
+        JSONObject json = new JSONObject();
+        json.put("source", source);
+        json.put("target", target);
+        json.put("segment", segment);
+        json.put("translation", entry.translation);
+        json.put("created", entry.createdMillis);
+
+        try {
+            fileWriter.write(json.toString());
+            fileWriter.newLine();
+            fileWriter.flush();
+            fileLines++;
+
+            // Rewrite the file from memory once it mostly holds evicted or overridden lines.
+            if (fileLines > 2 * maxEntries) {
+                compact();
+            }
+        } catch (IOException e) {
+            System.out.println("Could not write to the translation memory file " + file);
+            e.printStackTrace();
+        }
+    }
+
+    private void compact() throws IOException {
+        Map<String, Entry> snapshot;
+        synchronized (entries) {
+            snapshot = new LinkedHashMap<>(entries);
+        }
+
+        fileWriter.close();
+        Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), "translation-memory", ".tmp");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> mapEntry : snapshot.entrySet()) {
+                String[] keyParts = mapEntry.getKey().split("\u0000", 3);
+                JSONObject json = new JSONObject();
+                json.put("source", keyParts[0]);
+                json.put("target", keyParts[1]);
+                json.put("segment", keyParts[2]);
+                json.put("translation", mapEntry.getValue().translation);
+                json.put("created", mapEntry.getValue().createdMillis);
+                writer.write(json.toString());
+                writer.newLine();
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        fileLines = snapshot.size();
+        fileWriter = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TranslationMemory{" +
+                "entries=" + getSize() +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                '}';
+    }
+
+    private static class Entry {
+        private final String translation;
+        private final long createdMillis;
+
+        Entry(String translation, long createdMillis) {
+            this.translation = translation;
+            this.createdMillis = createdMillis;
+        }
+    }
+
+    /**
+     * A sentence of the text, with the whitespace around it kept aside so the layout of the text survives.
+     */
+    private static class Segment {
+        private final String leading;
+        private final String sentence;
+        private final String trailing;
+
+        Segment(String leading, String sentence, String trailing) {
+            this.leading = leading;
+            this.sentence = sentence;
+            this.trailing = trailing;
+        }
+    }
+
+    /**
+     * The result of looking up all sentences of one text.
+     */
+    public class Lookup {
+
+        private final String target;
+        private final String source;
+        private final List<Segment> segments = new ArrayList<>();
+        private final Map<String, String> translations = new LinkedHashMap<>();
+        private final Set<String> missing = new LinkedHashSet<>();
+
+        private Lookup(String text, String target, String source) {
+            this.target = target;
+            this.source = source;
+
+            for (Segment segment : split(text)) {
+                segments.add(segment);
+                if (segment.sentence.isEmpty() || translations.containsKey(segment.sentence)
+                        || missing.contains(segment.sentence)) {
+                    continue;
+                }
+
+                String translation = get(createKey(source, target, segment.sentence));
+                if (translation != null) {
+                    hits.incrementAndGet();
+                    translations.put(segment.sentence, translation);
+                } else {
+                    misses.incrementAndGet();
+                    missing.add(segment.sentence);
+                }
+            }
+        }
+
+        /**
+         * @return true if every sentence was found in the memory.
+         */
+        public boolean isComplete() {
+            return missing.isEmpty();
+        }
+
+        /**
+         * @return the sentences that still need translation.
+         */
+        public List<String> getMissing() {
+            return new ArrayList<>(missing);
+        }
+
+        /**
+         * @return the sentences that still need translation, one per line, to be translated in one request.
+         */
+        public String getMissingText() {
+            return String.join("\n", missing);
+        }
+
+        /**
+         * Groups the sentences that still need translation into chunks of at most maxChars characters, to be
+         * translated in one request each. The sentences keep the order of the text, and a chunk that is at least
+         * half full ends at the next paragraph break (an empty line). A sentence longer than maxChars is a chunk
+         * of its own.
+         * @param maxChars maximum length of a chunk, one sentence per line.
+         * @return chunks of sentences, in the order of the text.
+         */
+        public List<List<String>> getMissingChunks(int maxChars) {
+            List<List<String>> chunks = new ArrayList<>();
+            List<String> chunk = new ArrayList<>();
+            Set<String> added = new LinkedHashSet<>();
+            int chunkChars = 0;
+
+            for (Segment segment : segments) {
+                boolean paragraphBreak = segment.sentence.isEmpty() && segment.leading.isBlank();
+                if (paragraphBreak && chunkChars >= maxChars / 2 && !chunk.isEmpty()) {
+                    chunks.add(chunk);
+                    chunk = new ArrayList<>();
+                    chunkChars = 0;
+                }
+                if (!missing.contains(segment.sentence) || !added.add(segment.sentence)) {
+                    continue;
+                }
+
+                int sentenceChars = segment.sentence.length() + 1;
+                if (chunkChars + sentenceChars > maxChars && !chunk.isEmpty()) {
+                    chunks.add(chunk);
+                    chunk = new ArrayList<>();
+                    chunkChars = 0;
+                }
+                chunk.add(segment.sentence);
+                chunkChars += sentenceChars;
+            }
+            if (!chunk.isEmpty()) {
+                chunks.add(chunk);
+            }
+            return chunks;
+        }
+
+        /**
+         * Adds the translation of getMissingText.
+         * @param translatedText translated sentences, one per line.
+         * @return false if the lines do not match the sentences, in which case nothing is added.
+         */
+        public boolean addTranslations(String translatedText) {
+            return addTranslations(getMissing(), translatedText);
+        }
+
+        /**
+         * Adds the translation of some of the missing sentences, e.g. a chunk from getMissingChunks.
+         * @param sentences sentences that were translated, one per line.
+         * @param translatedText translated sentences, one per line.
+         * @return false if the lines do not match the sentences, in which case nothing is added.
+         */
+        public boolean addTranslations(List<String> sentences, String translatedText) {
+            String[] lines = translatedText.split("\n", -1);
+            if (lines.length != sentences.size()) {
+                return false;
+            }
+
+            int i = 0;
+            for (String sentence : sentences) {
+                addTranslation(sentence, lines[i++].trim());
+            }
+            return true;
+        }
+
+        /**
+         * Adds the translation of a single sentence and stores it in the memory.
+         * @param sentence from getMissing.
+         * @param translation of the sentence.
+         */
+        public void addTranslation(String sentence, String translation) {
+            missing.remove(sentence);
+            translations.put(sentence, translation);
+            put(source, target, sentence, translation);
+        }
+
+        /**
+         * @return the translated text, with the original whitespace and line breaks between the sentences.
+         */
+        public String assemble() {
+            StringBuilder text = new StringBuilder();
+            for (Segment segment : segments) {
+                text.append(segment.leading);
+                if (!segment.sentence.isEmpty()) {
+                    text.append(translations.getOrDefault(segment.sentence, segment.sentence));
+                }
+                text.append(segment.trailing);
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * Splits a text into lines and the lines into sentences.
+     */
+    private static List<Segment> split(String text) {
+        List<Segment> segments = new ArrayList<>();
+        BreakIterator sentenceIterator = BreakIterator.getSentenceInstance(Locale.ROOT);
+
+        int lineStart = 0;
+        while (lineStart <= text.length()) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            String line = text.substring(lineStart, lineEnd < 0 ? text.length() : lineEnd);
+            String lineBreak = lineEnd < 0 ? "" : "\n";
+
+            sentenceIterator.setText(line);
+            int start = sentenceIterator.first();
+            int end = sentenceIterator.next();
+            if (end == BreakIterator.DONE) {
+                segments.add(new Segment(line, "", lineBreak));
+            }
+            while (end != BreakIterator.DONE) {
+                segments.add(createSegment(line.substring(start, end), end == line.length() ? lineBreak : ""));
+                start = end;
+                end = sentenceIterator.next();
+            }
+
+            if (lineEnd < 0) {
+                break;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return segments;
+    }
+
+    private static Segment createSegment(String sentence, String lineBreak) {
+        int start = 0;
+        int end = sentence.length();
+        while (start < end && Character.isWhitespace(sentence.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(sentence.charAt(end - 1))) {
+            end--;
+        }
+        return new Segment(sentence.substring(0, start), sentence.substring(start, end), sentence.substring(end) + lineBreak);
+    }
+}
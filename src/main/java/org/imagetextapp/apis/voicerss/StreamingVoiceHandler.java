@@ -0,0 +1,325 @@
+package org.imagetextapp.apis.voicerss;
+
+import org.imagetextapp.utility.AudioPlayer;
+import org.imagetextapp.utility.PropertiesReader;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Reads out a long text while its voice is still being generated, instead of waiting for the voice of the
+ * whole text.
+ *
+ * The text is split at sentence boundaries into chunks of at most VOICE_STREAM_CHUNK_CHARS characters
+ * (default 500). The first chunk is kept to a quarter of that, so playback starts quickly. Up to
+ * VOICE_STREAM_PREFETCH chunks (default 3) are generated at the same time by VoiceHandler (and so taken from
+ * the VoiceCache when possible), and played in order as soon as they arrive, by streaming the audio through a
+ * Pipe to an AudioPlayer (so generation waits while the player is behind, and pause works as usual). Only the
+ * chunks that are being generated or played are kept, each in a temporary file, so memory does not grow with
+ * the length of the text. The voice is written to the voice file as well, to be played again or saved.
+ */
+public class StreamingVoiceHandler {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final int chunkChars;
+    private final int prefetch;
+    private final AudioPlayer player;
+
+    private volatile boolean stopped = false;
+
+    public StreamingVoiceHandler() {
+        this(new AudioPlayer());
+    }
+
+    /**
+     * @param player that the voice is played with.
+     */
+    public StreamingVoiceHandler(AudioPlayer player) {
+        this((int) PropertiesReader.getLongProperty("VOICE_STREAM_CHUNK_CHARS", 500),
+                (int) PropertiesReader.getLongProperty("VOICE_STREAM_PREFETCH", 3), player);
+    }
+
+    /**
+     * @param chunkChars maximum number of characters of a chunk.
+     * @param prefetch maximum number of chunks that are generated ahead of the one that is playing.
+     */
+    public StreamingVoiceHandler(int chunkChars, int prefetch) {
+        this(chunkChars, prefetch, new AudioPlayer());
+    }
+
+    /**
+     * @param chunkChars maximum number of characters of a chunk.
+     * @param prefetch maximum number of chunks that are generated ahead of the one that is playing.
+     * @param player that the voice is played with.
+     */
+    public StreamingVoiceHandler(int chunkChars, int prefetch, AudioPlayer player) {
+        this.chunkChars = Math.max(4, chunkChars);
+        this.prefetch = Math.max(1, prefetch);
+        this.player = player;
+    }
+
+    /**
+     * Generates the voice of the text chunk by chunk and plays each chunk as soon as it is ready.
+     * Blocks until the whole text has been played, or until stop is called.
+     * @param language of the text
+     * @param speechVoice name of the reader (optional)
+     * @param text to be read
+     * @param outputFile .wav file that the whole voice is written to at the end.
+     * @param progress receives status messages while the text is read out, or null.
+     * @return true if the whole voice was generated and written to the output file.
+     */
+    public boolean speak(String language, String speechVoice, String text, Path outputFile, Consumer<String> progress) {
+        List<String> chunks = split(text);
+        if (chunks.isEmpty()) {
+            return false;
+        }
+
+        List<CompletableFuture<Path>> voices = new ArrayList<>();
+        Path pcmFile = null;
+        Pipe.SinkChannel sink = null;
+        CompletableFuture<Void> playback = null;
+        try {
+            Path directory = outputFile.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            pcmFile = Files.createTempFile(directory, "voice", ".pcm");
+
+            for (int i = 0; i < Math.min(prefetch, chunks.size()); i++) {
+                voices.add(generate(language, speechVoice, chunks.get(i), directory));
+            }
+
+            AudioFormat format = null;
+            long pcmBytes = 0;
+            byte[] buffer = new byte[BUFFER_SIZE];
+
+            try (OutputStream pcm = new BufferedOutputStream(Files.newOutputStream(pcmFile))) {
+                for (int i = 0; i < chunks.size() && !stopped; i++) {
+                    Path voice = voices.get(i).join();
+                    if (i + prefetch < chunks.size()) {
+                        voices.add(generate(language, speechVoice, chunks.get(i + prefetch), directory));
+                    }
+                    if (voice == null) {
+                        System.out.println("Could not generate the voice of part " + (i + 1) + " of the text.");
+                        return false;
+                    }
+
+                    report(progress, "Reading out part " + (i + 1) + " of " + chunks.size() + "...");
+                    try (AudioInputStream audio = openChunk(voice, format)) {
+                        if (format == null) {
+                            format = audio.getFormat();
+                            Pipe pipe = Pipe.open();
+                            playback = startPlayback(format, pipe.source());
+                            sink = playback != null ? pipe.sink() : null;
+                            if (sink == null) {
+                                pipe.sink().close();
+                            }
+                        }
+
+                        int read;
+                        while (!stopped && (read = audio.read(buffer)) > 0) {
+                            pcm.write(buffer, 0, read);
+                            pcmBytes += read;
+                            if (sink != null && !writeToPlayer(sink, buffer, read)) {
+                                sink = null;
+                            }
+                        }
+                    } finally {
+                        Files.deleteIfExists(voice);
+                    }
+                }
+            }
+
+            // The end of the pipe ends playback once the player has played everything.
+            closeSink(sink);
+            sink = null;
+            if (playback != null && !stopped) {
+                playback.join();
+            }
+            if (stopped) {
+                return false;
+            }
+
+            writeWave(pcmFile, format, pcmBytes, outputFile);
+            return true;
+        } catch (IOException | UnsupportedAudioFileException e) {
+            System.out.println("An error occurred while trying to read out the voice.");
+            e.printStackTrace();
+            return false;
+        } finally {
+            closeSink(sink);
+            // Chunks that were generated ahead but not played.
+            for (CompletableFuture<Path> voice : voices) {
+                voice.thenAccept(this::deleteFile);
+            }
+            deleteFile(pcmFile);
+        }
+    }
+
+    /**
+     * Stops playback and the generation of the remaining chunks. speak returns false afterwards.
+     */
+    public void stop() {
+        stopped = true;
+        player.stop();
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Splits a text into chunks of whole sentences. A sentence that is longer than a chunk is split between words.
+     * @param text to be read
+     * @return chunks of the text, in order.
+     */
+    public List<String> split(String text) {
+        List<String> chunks = new ArrayList<>();
+        BreakIterator sentenceIterator = BreakIterator.getSentenceInstance(Locale.ROOT);
+        sentenceIterator.setText(text);
+
+        StringBuilder chunk = new StringBuilder();
+        int start = sentenceIterator.first();
+        for (int end = sentenceIterator.next(); end != BreakIterator.DONE; start = end, end = sentenceIterator.next()) {
+            String sentence = text.substring(start, end).strip().replaceAll("\\s+", " ");
+            int limit = chunks.isEmpty() ? chunkChars / 4 : chunkChars;
+
+            if (chunk.length() > 0 && chunk.length() + 1 + sentence.length() > limit) {
+                chunks.add(chunk.toString());
+                chunk.setLength(0);
+                limit = chunkChars;
+            }
+            while (sentence.length() > limit) {
+                int split = sentence.lastIndexOf(' ', limit);
+                split = split > 0 ? split : limit;
+                chunks.add(sentence.substring(0, split).strip());
+                sentence = sentence.substring(split).strip();
+                limit = chunkChars;
+            }
+            if (!sentence.isEmpty()) {
+                chunk.append(chunk.length() > 0 ? " " : "").append(sentence);
+            }
+        }
+        if (chunk.length() > 0) {
+            chunks.add(chunk.toString());
+        }
+        return chunks;
+    }
+
+    /**
+     * @return future that completes with the temporary voice file of the chunk, or null if it failed.
+     */
+    private CompletableFuture<Path> generate(String language, String speechVoice, String chunk, Path directory) {
+        Path file;
+        try {
+            file = Files.createTempFile(directory, "voice-part", ".wav");
+        } catch (IOException e) {
+            e.printStackTrace();
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return new VoiceHandler().voiceFormDataAsync(language, speechVoice, chunk, file).thenApply(written -> {
+            if (!written) {
+                deleteFile(file);
+                return null;
+            }
+            return file;
+        });
+    }
+
+    /**
+     * Opens the audio of a chunk, converted to the format of the first chunk if it differs.
+     */
+    private AudioInputStream openChunk(Path voice, AudioFormat format) throws IOException, UnsupportedAudioFileException {
+        AudioInputStream audio = AudioSystem.getAudioInputStream(new BufferedInputStream(Files.newInputStream(voice)));
+        if (format == null || audio.getFormat().matches(format)) {
+            return audio;
+        }
+        return AudioSystem.getAudioInputStream(format, audio);
+    }
+
+    /**
+     * @return future of the playback of the channel, or null if there is no audio output, in which case the voice
+     * is only written to file.
+     */
+    private CompletableFuture<Void> startPlayback(AudioFormat format, Pipe.SourceChannel source) {
+        try {
+            return player.play(format, source);
+        } catch (LineUnavailableException e) {
+            System.out.println("No audio output is available, the voice is only written to file.");
+            return null;
+        }
+    }
+
+    /**
+     * Writes audio to the player, waiting while the player is behind.
+     * @return false if the player does not take any more audio (e.g. it was stopped or started other audio).
+     */
+    private boolean writeToPlayer(Pipe.SinkChannel sink, byte[] buffer, int length) {
+        try {
+            ByteBuffer audio = ByteBuffer.wrap(buffer, 0, length);
+            while (audio.hasRemaining()) {
+                sink.write(audio);
+            }
+            return true;
+        } catch (IOException e) {
+            closeSink(sink);
+            return false;
+        }
+    }
+
+    private void closeSink(Pipe.SinkChannel sink) {
+        if (sink != null) {
+            try {
+                sink.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Writes the played audio as a .wav file, replacing the output file only once it is complete.
+     */
+    private void writeWave(Path pcmFile, AudioFormat format, long pcmBytes, Path outputFile) throws IOException {
+        Path temporary = VoiceOutputManager.createTemporaryFile(outputFile);
+        try (AudioInputStream audio = new AudioInputStream(new BufferedInputStream(Files.newInputStream(pcmFile)),
+                format, pcmBytes / format.getFrameSize())) {
+            AudioSystem.write(audio, AudioFileFormat.Type.WAVE, temporary.toFile());
+            VoiceOutputManager.moveInto(temporary, outputFile);
+        } finally {
+            deleteFile(temporary);
+        }
+    }
+
+    private void deleteFile(Path file) {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void report(Consumer<String> progress, String message) {
+        if (progress != null) {
+            progress.accept(message);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package org.imagetextapp.apis.voicerss;
+
+import org.imagetextapp.utility.PropertiesReader;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Disk cache of generated voice files, so that the same text is only sent to Voice RSS once.
+ *
+ * Files are stored content-addressed in VOICE_CACHE_DIR (default "generated_voice/cache"), keyed by a
+ * SHA-256 hash of language, voice and text. The total size of the cache is capped by VOICE_CACHE_MAX_BYTES,
+ * evicting the least recently used files first. An index file in the cache directory keeps track of the
+ * files and their last use, and is loaded at startup. Set VOICE_CACHE_ENABLED to false to disable the cache.
+ */
+public class VoiceCache {
+
+    private static final String INDEX_FILE = "index.txt";
+
+    private static final VoiceCache INSTANCE = new VoiceCache(
+            PropertiesReader.getBooleanProperty("VOICE_CACHE_ENABLED", true),
+            Path.of(PropertiesReader.getProperty("VOICE_CACHE_DIR", "generated_voice/cache")),
+            PropertiesReader.getLongProperty("VOICE_CACHE_MAX_BYTES", 256L * 1024 * 1024));
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxBytes;
+
+    // Key -> file size, ordered from least to most recently used.
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param enabled if the cache is used at all.
+     * @param directory directory of the cached files and the index.
+     * @param maxBytes upper bound for the total size of the cached files.
+     */
+    public VoiceCache(boolean enabled, Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+
+        boolean ready = enabled;
+        if (enabled) {
+            try {
+                Files.createDirectories(directory);
+                loadIndex();
+            } catch (IOException e) {
+                System.out.println("Could not open the voice cache in " + directory + ", caching is disabled.");
+                e.printStackTrace();
+                ready = false;
+            }
+        }
+        this.enabled = ready;
+    }
+
+    public static VoiceCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param language of the text.
+     * @param speechVoice name of the reader.
+     * @param text to be read.
+     * @return hex string identifying the generated voice.
+     */
+    public String createKey(String language, String speechVoice, String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            String value = language + '\u0000' + (speechVoice == null ? "" : speechVoice) + '\u0000' + text;
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest(value.getBytes(StandardCharsets.UTF_8))) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+
+    /**
+     * Copies a cached voice file to the target, if the voice has been generated before.
+     * @param key created by createKey.
+     * @param target file to copy the voice to.
+     * @return true if the voice was found in the cache and copied.
+     */
+    public boolean copyTo(String key, Path target) {
+        if (!enabled) {
+            return false;
+        }
+        synchronized (index) {
+            if (index.get(key) == null) {
+                misses.incrementAndGet();
+                return false;
+            }
+        }
+
+        Path temporary = null;
+        try {
+            // Copied next to the target first, so a reader of the target never sees half a file.
+            temporary = VoiceOutputManager.createTemporaryFile(target);
+            Files.copy(directory.resolve(key + ".wav"), temporary, StandardCopyOption.REPLACE_EXISTING);
+            VoiceOutputManager.moveInto(temporary, target);
+            hits.incrementAndGet();
+            synchronized (index) {
+                saveIndex();
+            }
+            return true;
+        } catch (IOException e) {
+            deleteTemporaryFile(temporary);
+            // The file has disappeared, forget about it.
+            synchronized (index) {
+                Long size = index.remove(key);
+                if (size != null) {
+                    totalBytes -= size;
+                }
+            }
+            misses.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Adds a generated voice file to the cache.
+     * @param key created by createKey.
+     * @param source generated voice file, which is copied into the cache.
+     */
+    public void store(String key, Path source) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Path temporary = Files.createTempFile(directory, key, ".tmp");
+            Files.copy(source, temporary, StandardCopyOption.REPLACE_EXISTING);
+            long size = Files.size(temporary);
+            Files.move(temporary, directory.resolve(key + ".wav"),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            synchronized (index) {
+                Long previous = index.put(key, size);
+                totalBytes += size - (previous == null ? 0 : previous);
+                evict();
+                saveIndex();
+            }
+        } catch (IOException e) {
+            System.out.println("Could not add the voice file to the cache.");
+            e.printStackTrace();
+        }
+    }
+
+    private void deleteTemporaryFile(Path temporary) {
+        if (temporary != null) {
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Deletes the least recently used files until the cache is within its size cap.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> iterator = index.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            try {
+                Files.deleteIfExists(directory.resolve(eldest.getKey() + ".wav"));
+            } catch (IOException e) {
+                System.out.println("Could not delete cached voice file " + eldest.getKey());
+            }
+            totalBytes -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Reads the index: one "key size" line per file, from least to most recently used.
+     * Files that no longer exist are skipped.
+     */
+    private void loadIndex() throws IOException {
+        Path indexFile = directory.resolve(INDEX_FILE);
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+
+        List<String[]> entries = new ArrayList<>();
+        for (String line : Files.readAllLines(indexFile, StandardCharsets.UTF_8)) {
+            String[] parts = line.trim().split(" ");
+            if (parts.length == 2 && Files.exists(directory.resolve(parts[0] + ".wav"))) {
+                entries.add(parts);
+            }
+        }
+
+        for (String[] entry : entries) {
+            try {
+                long size = Long.parseLong(entry[1]);
+                index.put(entry[0], size);
+                totalBytes += size;
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        evict();
+    }
+
+    private void saveIndex() {
+        try {
+            Path temporary = Files.createTempFile(directory, "index", ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Long> entry : index.entrySet()) {
+                    writer.write(entry.getKey() + " " + entry.getValue());
+                    writer.newLine();
+                }
+            }
+            Files.move(temporary, directory.resolve(INDEX_FILE),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Could not save the voice cache index.");
+            e.printStackTrace();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        synchronized (index) {
+            return "VoiceCache{" +
+                    "files=" + index.size() +
+                    ", totalBytes=" + totalBytes +
+                    ", hits=" + hits +
+                    ", misses=" + misses +
+                    '}';
+        }
+    }
+}
@@ -1,14 +1,20 @@
 package org.imagetextapp.apis.voicerss;
 
 import org.imagetextapp.utility.ConnectionManager;
+import org.imagetextapp.utility.ExecutionManager;
 import org.imagetextapp.utility.MultiPartBody;
 import org.imagetextapp.utility.PropertiesReader;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Generate voice file (.wav) that reads out the specified text in the specified language.
@@ -17,42 +23,220 @@ import java.util.Base64;
  */
 public class VoiceHandler {
 
+    // Voice RSS starts the response with "data:audio/wav;base64,", or sends an error message instead.
+    private static final int MAX_PREFIX_LENGTH = 256;
+
+    // Number of Base64 characters decoded at once; a multiple of 4, so blocks never split a group.
+    private static final int DECODE_BLOCK_SIZE = 64 * 1024;
+
     /**
      *
      * @param language of the text
      * @param speechVoice name of the reader
      * @param text to be read
+     * @return new voice file from VoiceOutputManager, to be released by the caller, or null if it failed.
+     */
+    public VoiceOutput voiceFormData(String language, String speechVoice, String text) {
+        VoiceOutput output = createOutput();
+        if (output == null) {
+            return null;
+        }
+        return toOutput(output, voiceFormData(language, speechVoice, text, output.getFile()));
+    }
+
+    /**
+     *
+     * @param language of the text
+     * @param speechVoice name of the reader (optional)
+     * @param text to be read
+     * @param outputFile .wav file that the voice is written to
+     */
+    public boolean voiceFormData(String language, String speechVoice, String text, Path outputFile) {
+        // Reuse the voice if the same text has been generated before.
+        VoiceCache voiceCache = VoiceCache.getInstance();
+        String cacheKey = voiceCache.createKey(language, speechVoice, text);
+        if (voiceCache.copyTo(cacheKey, outputFile)) {
+            return true;
+        }
+
+        MultiPartBody multiPartBody = createRequestBody(language, speechVoice, text);
+
+        ConnectionManager connectionManager = new ConnectionManager();
+        HttpResponse<InputStream> response = connectionManager.makeGetVoiceRequestForm(multiPartBody);
+
+        boolean written = writeVoiceFile(response, outputFile);
+        if (written) {
+            voiceCache.store(cacheKey, outputFile);
+        }
+        return written;
+    }
+
+    /**
+     * Non-blocking version of voiceFormData.
+     * @param language of the text
+     * @param speechVoice name of the reader
+     * @param text to be read
+     * @return future that completes with a new voice file from VoiceOutputManager, to be released by the caller,
+     * or with null if it failed.
      */
-    public boolean voiceFormData(String language, String speechVoice, String text) {
-        MultiPartBody multiPartBody;
+    public CompletableFuture<VoiceOutput> voiceFormDataAsync(String language, String speechVoice, String text) {
+        VoiceOutput output = createOutput();
+        if (output == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return voiceFormDataAsync(language, speechVoice, text, output.getFile())
+                .thenApply(written -> toOutput(output, written));
+    }
 
-        multiPartBody = new MultiPartBody()
+    private VoiceOutput createOutput() {
+        try {
+            return VoiceOutputManager.getInstance().create();
+        } catch (IOException e) {
+            System.out.println("Could not create a file for the voice.");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private VoiceOutput toOutput(VoiceOutput output, boolean written) {
+        if (!written) {
+            output.release();
+            return null;
+        }
+        return output;
+    }
+
+    /**
+     * Non-blocking version of voiceFormData.
+     * @param language of the text
+     * @param speechVoice name of the reader (optional)
+     * @param text to be read
+     * @param outputFile .wav file that the voice is written to
+     * @return future that completes with true if the voice file was written.
+     */
+    public CompletableFuture<Boolean> voiceFormDataAsync(String language, String speechVoice, String text, Path outputFile) {
+        VoiceCache voiceCache = VoiceCache.getInstance();
+        String cacheKey = voiceCache.createKey(language, speechVoice, text);
+        if (voiceCache.copyTo(cacheKey, outputFile)) {
+            return CompletableFuture.completedFuture(true);
+        }
+
+        MultiPartBody multiPartBody = createRequestBody(language, speechVoice, text);
+
+        ConnectionManager connectionManager = new ConnectionManager();
+        return connectionManager.makeGetVoiceRequestFormAsync(multiPartBody).thenApplyAsync(response -> {
+            boolean written = writeVoiceFile(response, outputFile);
+            if (written) {
+                voiceCache.store(cacheKey, outputFile);
+            }
+            return written;
+        }, ExecutionManager.getInstance().getExecutor());
+    }
+
+    private MultiPartBody createRequestBody(String language, String speechVoice, String text) {
+        MultiPartBody multiPartBody = new MultiPartBody()
                 .addPart("key", PropertiesReader.getProperty("VOICERSS_APIKEY"))
                 .addPart("src", text)
                 .addPart("hl", language)
-                .addPart("v", speechVoice)
                 .addPart("b64", "true");
 
-        ConnectionManager connectionManager = new ConnectionManager();
-        HttpResponse<String> response = connectionManager.makeGetVoiceRequestForm(multiPartBody);
+        // Without a specified voice, Voice RSS uses the default voice of the language.
+        if (speechVoice != null && !speechVoice.isEmpty()) {
+            multiPartBody.addPart("v", speechVoice);
+        }
+        return multiPartBody;
+    }
 
-        // Remove "base64"-identifier in the beginning of the response and keep only the actual Base64 encoding.
-        String separatorSymbol = ",";
-        String encoded64BaseAudio = response.body().split(separatorSymbol)[1];
-        byte[] decodedVoiceBytes = Base64.getDecoder().decode(encoded64BaseAudio.getBytes(StandardCharsets.UTF_8));
+    /**
+     * Decodes the Base64 voice of the response and writes it to a .wav file while it is being received.
+     * @param response from the Voice RSS API.
+     * @param outputFile .wav file that the voice is written to.
+     * @return true if the file was written.
+     */
+    private boolean writeVoiceFile(HttpResponse<InputStream> response, Path outputFile) {
+        if (response == null) {
+            return false;
+        }
 
-        // Write decoded bytes from the returned voice to a .wav file.
-        FileOutputStream fos;
-        try {
-            fos = new FileOutputStream("generated_voice/voice.wav");
-            fos.write(decodedVoiceBytes, 0, decodedVoiceBytes.length);
-            fos.flush();
-            fos.close();
-        } catch (IOException e) {
+        // Decode into a temporary file first, so a failed response does not replace an earlier voice.
+        Path temporary = null;
+        try (InputStream responseBody = response.body()) {
+            temporary = VoiceOutputManager.createTemporaryFile(outputFile);
+            try (OutputStream outputStream = Files.newOutputStream(temporary)) {
+                decodeVoice(responseBody, outputStream);
+            }
+            VoiceOutputManager.moveInto(temporary, outputFile);
+        } catch (IOException | IllegalArgumentException e) {
             System.out.println("An error occurred while trying to decode Base64 voice to .wav file.");
             e.printStackTrace();
+            deleteTemporaryFile(temporary);
             return false;
         }
         return true;
     }
+
+    private void deleteTemporaryFile(Path temporary) {
+        if (temporary != null) {
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Decodes the voice of a Voice RSS response, e.g. "data:audio/wav;base64,UklGR...".
+     * @param responseBody response from the Voice RSS API.
+     * @return bytes of the .wav file.
+     */
+    public byte[] decodeVoice(String responseBody) {
+        // Remove "base64"-identifier in the beginning of the response and keep only the actual Base64 encoding.
+        String separatorSymbol = ",";
+        String encoded64BaseAudio = responseBody.split(separatorSymbol)[1];
+        return Base64.getDecoder().decode(encoded64BaseAudio.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes the voice of a Voice RSS response chunk by chunk, so only a small buffer is held in memory
+     * no matter how long the voice is.
+     * @param responseBody response from the Voice RSS API, e.g. "data:audio/wav;base64,UklGR...".
+     * @param output stream that the bytes of the .wav file are written to.
+     * @return number of bytes written.
+     * @throws IOException if the response is not a Base64 voice (e.g. an error message) or cannot be read.
+     */
+    public long decodeVoice(InputStream responseBody, OutputStream output) throws IOException {
+        // Skip the "base64"-identifier in the beginning of the response.
+        StringBuilder prefix = new StringBuilder();
+        int c;
+        while ((c = responseBody.read()) != ',') {
+            if (c == -1 || prefix.length() >= MAX_PREFIX_LENGTH) {
+                throw new IOException("Unexpected response from Voice RSS: " + prefix);
+            }
+            prefix.append((char) c);
+        }
+
+        // Decode whole blocks of Base64 characters at once; both buffers are reused for the entire voice.
+        Base64.Decoder decoder = Base64.getDecoder();
+        byte[] encoded = new byte[DECODE_BLOCK_SIZE];
+        byte[] decoded = new byte[DECODE_BLOCK_SIZE / 4 * 3];
+        long written = 0;
+
+        int read;
+        while ((read = responseBody.readNBytes(encoded, 0, encoded.length)) == encoded.length) {
+            int length = decoder.decode(encoded, decoded);
+            output.write(decoded, 0, length);
+            written += length;
+        }
+
+        // The last block is shorter and may end with padding or a line break.
+        while (read > 0 && Character.isWhitespace(encoded[read - 1])) {
+            read--;
+        }
+        if (read > 0) {
+            int length = decoder.decode(Arrays.copyOf(encoded, read), decoded);
+            output.write(decoded, 0, length);
+            written += length;
+        }
+        return written;
+    }
 }
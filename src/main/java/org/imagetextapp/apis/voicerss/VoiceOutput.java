@@ -0,0 +1,64 @@
+package org.imagetextapp.apis.voicerss;
+
+import java.nio.file.Path;
+
+/**
+ * A voice file handed out by VoiceOutputManager. Everyone that uses the file (e.g. the player, or the
+ * dialog that saves it) retains it first and releases it when done; the file is deleted after the last release.
+ */
+public class VoiceOutput implements AutoCloseable {
+
+    private final VoiceOutputManager manager;
+    private final Path file;
+    private int users = 1;
+
+    VoiceOutput(VoiceOutputManager manager, Path file) {
+        this.manager = manager;
+        this.file = file;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return this output, with one more user.
+     * @throws IllegalStateException if the output has already been released by all its users.
+     */
+    public synchronized VoiceOutput retain() {
+        if (users == 0) {
+            throw new IllegalStateException("Voice file " + file + " has already been released.");
+        }
+        users++;
+        return this;
+    }
+
+    /**
+     * Releases the output for one user, deleting the file after the last one.
+     */
+    public void release() {
+        synchronized (this) {
+            if (users == 0 || --users > 0) {
+                return;
+            }
+        }
+        manager.released(this);
+    }
+
+    public synchronized boolean isReleased() {
+        return users == 0;
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+
+    @Override
+    public String toString() {
+        return "VoiceOutput{" +
+                "file=" + file +
+                ", users=" + users +
+                '}';
+    }
+}
@@ -0,0 +1,152 @@
+package org.imagetextapp.apis.voicerss;
+
+import org.imagetextapp.utility.PropertiesReader;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Hands out voice files, so that voices that are generated at the same time never overwrite each other.
+ *
+ * Every voice gets its own file in VOICE_OUTPUT_DIR (default "generated_voice/output"), wrapped in a
+ * VoiceOutput that counts its users: the file is deleted when the last user releases it. Files that are
+ * left behind (e.g. by a crash) are deleted once they are older than VOICE_OUTPUT_MAX_AGE_MS (default one
+ * hour) and no longer in use; this is checked at startup and whenever a new file is handed out.
+ *
+ * Files are written atomically: into a temporary file in the same directory, which is then moved over the
+ * target, so a reader never sees a half written voice.
+ */
+public class VoiceOutputManager {
+
+    private static final long CLEAN_UP_INTERVAL_MILLIS = 60_000;
+
+    private static final VoiceOutputManager INSTANCE = new VoiceOutputManager(
+            Path.of(PropertiesReader.getProperty("VOICE_OUTPUT_DIR", "generated_voice/output")),
+            PropertiesReader.getLongProperty("VOICE_OUTPUT_MAX_AGE_MS", 60L * 60 * 1000));
+
+    private final Path directory;
+    private final long maxAgeMillis;
+
+    // File name -> output, for the files that are in use.
+    private final Map<String, VoiceOutput> outputs = new HashMap<>();
+    private long lastCleanUp = 0;
+
+    /**
+     * @param directory directory of the voice files.
+     * @param maxAgeMillis age after which files that are no longer in use are deleted.
+     */
+    public VoiceOutputManager(Path directory, long maxAgeMillis) {
+        this.directory = directory;
+        this.maxAgeMillis = maxAgeMillis;
+        cleanUp();
+    }
+
+    public static VoiceOutputManager getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return a new voice file, with one user. The file itself is created when the voice is written.
+     * @throws IOException if the directory cannot be created.
+     */
+    public VoiceOutput create() throws IOException {
+        Files.createDirectories(directory);
+        synchronized (outputs) {
+            if (System.currentTimeMillis() - lastCleanUp > CLEAN_UP_INTERVAL_MILLIS) {
+                cleanUp();
+            }
+            VoiceOutput output = new VoiceOutput(this, directory.resolve("voice-" + UUID.randomUUID() + ".wav"));
+            outputs.put(output.getFile().getFileName().toString(), output);
+            return output;
+        }
+    }
+
+    /**
+     * Deletes the files in the directory that are older than the maximum age and not in use.
+     * @return number of deleted files.
+     */
+    public int cleanUp() {
+        int deleted = 0;
+        synchronized (outputs) {
+            lastCleanUp = System.currentTimeMillis();
+            if (!Files.isDirectory(directory)) {
+                return 0;
+            }
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    if (outputs.containsKey(file.getFileName().toString())) {
+                        continue;
+                    }
+                    try {
+                        if (lastCleanUp - Files.getLastModifiedTime(file).toMillis() > maxAgeMillis
+                                && Files.deleteIfExists(file)) {
+                            deleted++;
+                        }
+                    } catch (IOException e) {
+                        System.out.println("Could not delete old voice file " + file);
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("Could not clean up the voice files in " + directory);
+                e.printStackTrace();
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * @return number of voice files that are in use.
+     */
+    public int getOpenOutputs() {
+        synchronized (outputs) {
+            return outputs.size();
+        }
+    }
+
+    /**
+     * Called by VoiceOutput when its last user has released it.
+     */
+    void released(VoiceOutput output) {
+        synchronized (outputs) {
+            outputs.remove(output.getFile().getFileName().toString());
+        }
+        try {
+            Files.deleteIfExists(output.getFile());
+        } catch (IOException e) {
+            // Deleted by cleanUp once it is old enough, e.g. when it was still open on Windows.
+            System.out.println("Could not delete voice file " + output.getFile());
+        }
+    }
+
+    /**
+     * @param target file that will be written.
+     * @return a new temporary file next to the target, to be moved over it with moveInto.
+     * @throws IOException if the file cannot be created.
+     */
+    public static Path createTemporaryFile(Path target) throws IOException {
+        Path parent = target.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        return Files.createTempFile(parent, "voice", ".tmp");
+    }
+
+    /**
+     * Replaces the target with a completely written temporary file in one step.
+     * @param temporary file created by createTemporaryFile.
+     * @param target file to be replaced.
+     * @throws IOException if the file cannot be moved.
+     */
+    public static void moveInto(Path temporary, Path target) throws IOException {
+        try {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
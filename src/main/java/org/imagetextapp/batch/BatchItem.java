@@ -0,0 +1,107 @@
+package org.imagetextapp.batch;
+
+import org.imagetextapp.apis.detectlanguage.DetectLanguageObject;
+import org.imagetextapp.apis.ocr.OCRObject;
+import org.imagetextapp.apis.ocr.PreprocessResult;
+import org.imagetextapp.apis.translate.TranslateObject;
+
+import java.nio.file.Path;
+
+/**
+ * One input image travelling through the batch pipeline, together with the results of every stage.
+ */
+public class BatchItem {
+
+    private final int index;
+    private final Path source;
+    private final long startNanos = System.nanoTime();
+
+    private PreprocessResult preprocessResult;
+    private OCRObject ocrObject;
+    private DetectLanguageObject detectLanguageObject;
+    private TranslateObject translateObject;
+    private Path voiceFile;
+    private String error;
+
+    public BatchItem(int index, Path source) {
+        this.index = index;
+        this.source = source;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public Path getSource() {
+        return source;
+    }
+
+    public PreprocessResult getPreprocessResult() {
+        return preprocessResult;
+    }
+
+    public void setPreprocessResult(PreprocessResult preprocessResult) {
+        this.preprocessResult = preprocessResult;
+    }
+
+    public OCRObject getOcrObject() {
+        return ocrObject;
+    }
+
+    public void setOcrObject(OCRObject ocrObject) {
+        this.ocrObject = ocrObject;
+    }
+
+    public DetectLanguageObject getDetectLanguageObject() {
+        return detectLanguageObject;
+    }
+
+    public void setDetectLanguageObject(DetectLanguageObject detectLanguageObject) {
+        this.detectLanguageObject = detectLanguageObject;
+    }
+
+    public TranslateObject getTranslateObject() {
+        return translateObject;
+    }
+
+    public void setTranslateObject(TranslateObject translateObject) {
+        this.translateObject = translateObject;
+    }
+
+    public Path getVoiceFile() {
+        return voiceFile;
+    }
+
+    public void setVoiceFile(Path voiceFile) {
+        this.voiceFile = voiceFile;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+
+    /**
+     * @return time since the item entered the pipeline, in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /**
+     * @return the text that later stages should work on: the translation if there is one, else the OCR text.
+     */
+    public String getCurrentText() {
+        if (translateObject != null && !translateObject.isErrorOnProcessing()) {
+            return translateObject.getText();
+        }
+        return ocrObject != null ? ocrObject.getParsedText() : "";
+    }
+}
@@ -0,0 +1,130 @@
+package org.imagetextapp.batch;
+
+/**
+ * Settings for a headless batch run. Stages without the required settings are skipped:
+ * translation needs a target language, and text-to-speech needs a voice language.
+ */
+public class BatchOptions {
+
+    private String ocrLanguage = "eng";
+    private boolean identifyLanguage = false;
+    private boolean detectLanguage = true;
+    private String targetLanguage = null;
+    private String voiceLanguage = null;
+    private String voice = null;
+
+    private int ocrWorkers = 4;
+    // Detect workers mostly wait for their batch (see detectBatchWindowMillis), so there are more of them.
+    private int detectWorkers = 16;
+    private int translateWorkers = 4;
+    private int voiceWorkers = 4;
+    private int queueCapacity = 16;
+    private int detectBatchWindowMillis = 1000;
+
+    public String getOcrLanguage() {
+        return ocrLanguage;
+    }
+
+    public void setOcrLanguage(String ocrLanguage) {
+        this.ocrLanguage = ocrLanguage;
+    }
+
+    public boolean isIdentifyLanguage() {
+        return identifyLanguage;
+    }
+
+    public void setIdentifyLanguage(boolean identifyLanguage) {
+        this.identifyLanguage = identifyLanguage;
+    }
+
+    public boolean isDetectLanguage() {
+        return detectLanguage;
+    }
+
+    public void setDetectLanguage(boolean detectLanguage) {
+        this.detectLanguage = detectLanguage;
+    }
+
+    public String getTargetLanguage() {
+        return targetLanguage;
+    }
+
+    public void setTargetLanguage(String targetLanguage) {
+        this.targetLanguage = targetLanguage;
+    }
+
+    public String getVoiceLanguage() {
+        return voiceLanguage;
+    }
+
+    public void setVoiceLanguage(String voiceLanguage) {
+        this.voiceLanguage = voiceLanguage;
+    }
+
+    public String getVoice() {
+        return voice;
+    }
+
+    public void setVoice(String voice) {
+        this.voice = voice;
+    }
+
+    public int getOcrWorkers() {
+        return ocrWorkers;
+    }
+
+    public void setOcrWorkers(int ocrWorkers) {
+        this.ocrWorkers = ocrWorkers;
+    }
+
+    public int getDetectWorkers() {
+        return detectWorkers;
+    }
+
+    public void setDetectWorkers(int detectWorkers) {
+        this.detectWorkers = detectWorkers;
+    }
+
+    public int getTranslateWorkers() {
+        return translateWorkers;
+    }
+
+    public void setTranslateWorkers(int translateWorkers) {
+        this.translateWorkers = translateWorkers;
+    }
+
+    public int getVoiceWorkers() {
+        return voiceWorkers;
+    }
+
+    public void setVoiceWorkers(int voiceWorkers) {
+        this.voiceWorkers = voiceWorkers;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * @return how long a text waits for other texts to be identified in the same Detect Language request.
+     */
+    public int getDetectBatchWindowMillis() {
+        return detectBatchWindowMillis;
+    }
+
+    public void setDetectBatchWindowMillis(int detectBatchWindowMillis) {
+        this.detectBatchWindowMillis = detectBatchWindowMillis;
+    }
+
+    public boolean isTranslationEnabled() {
+        return targetLanguage != null && !targetLanguage.isEmpty();
+    }
+
+    public boolean isVoiceEnabled() {
+        return voiceLanguage != null && !voiceLanguage.isEmpty();
+    }
+}
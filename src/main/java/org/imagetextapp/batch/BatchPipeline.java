@@ -0,0 +1,361 @@
+package org.imagetextapp.batch;
+
+import org.imagetextapp.apis.detectlanguage.DetectLanguageBatcher;
+import org.imagetextapp.apis.detectlanguage.DetectLanguageObject;
+import org.imagetextapp.apis.detectlanguage.LanguageIdentifier;
+import org.imagetextapp.apis.ocr.AutoLanguageOCRHandler;
+import org.imagetextapp.apis.ocr.AutoLanguageResult;
+import org.imagetextapp.apis.ocr.ImagePreprocessor;
+import org.imagetextapp.apis.ocr.OCRObject;
+import org.imagetextapp.apis.ocr.OcrEngine;
+import org.imagetextapp.apis.ocr.OcrEngines;
+import org.imagetextapp.apis.ocr.PdfOCRHandler;
+import org.imagetextapp.apis.ocr.PreprocessResult;
+import org.imagetextapp.apis.ocr.TiledOCRHandler;
+import org.imagetextapp.apis.translate.TranslateHandler;
+import org.imagetextapp.apis.translate.TranslateObject;
+import org.imagetextapp.apis.voicerss.VoiceHandler;
+import org.imagetextapp.utility.LanguageRegistry;
+import org.imagetextapp.utility.MimeManager;
+import org.imagetextapp.utility.PropertiesReader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * GUI-free OCR -> language detection -> translation -> text-to-speech pipeline for many images.
+ *
+ * Every stage has its own bounded worker pool. A finished item is handed to the next stage, and the
+ * handing-over worker waits when that stage is full, so a slow stage slows the stages before it down
+ * instead of piling up unbounded work. Since each stage has several workers and a queue, a single
+ * slow call (e.g. a long text-to-speech request) does not hold up the other items.
+ */
+public class BatchPipeline {
+
+    private final BatchOptions options;
+
+    public BatchPipeline(BatchOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * Runs all images through the pipeline and streams the results into the output directory.
+     * @param inputs images to process.
+     * @param outputDirectory directory for the result files.
+     * @return summary of the run.
+     * @throws IOException if the output directory could not be prepared.
+     * @throws InterruptedException if interrupted while waiting for the batch to finish.
+     */
+    public BatchSummary run(List<Path> inputs, Path outputDirectory) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+
+        try (BatchResultWriter writer = new BatchResultWriter(outputDirectory)) {
+            BatchRun batchRun = new BatchRun(writer, inputs.size());
+            try {
+                for (int i = 0; i < inputs.size(); i++) {
+                    BatchItem item = new BatchItem(i, inputs.get(i));
+                    batchRun.ocrStage.submit(() -> batchRun.ocr(item));
+                }
+                batchRun.remaining.await();
+
+                if (options.isDetectLanguage()) {
+                    System.out.println("Identified " + batchRun.detectLanguageBatcher.getTexts() + " texts in "
+                            + batchRun.detectLanguageBatcher.getRequests() + " Detect Language requests.");
+                }
+            } finally {
+                batchRun.shutdown();
+            }
+            return new BatchSummary(inputs.size(), batchRun.failed.get(), (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    /**
+     * State of a single call to run.
+     */
+    private class BatchRun {
+
+        private final BatchResultWriter writer;
+        private final CountDownLatch remaining;
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger finished = new AtomicInteger();
+
+        private final PipelineStage ocrStage;
+        private final PipelineStage detectStage;
+        private final PipelineStage translateStage;
+        private final PipelineStage voiceStage;
+
+        // Texts of items that reach the detect stage within the window share a single request.
+        private final DetectLanguageBatcher detectLanguageBatcher;
+        private final LanguageIdentifier languageIdentifier;
+
+        BatchRun(BatchResultWriter writer, int size) {
+            this.writer = writer;
+            this.remaining = new CountDownLatch(size);
+
+            ocrStage = new PipelineStage("ocr", options.getOcrWorkers(), options.getQueueCapacity());
+            detectStage = new PipelineStage("detect", options.getDetectWorkers(), options.getQueueCapacity());
+            translateStage = new PipelineStage("translate", options.getTranslateWorkers(), options.getQueueCapacity());
+            voiceStage = new PipelineStage("voice", options.getVoiceWorkers(), options.getQueueCapacity());
+
+            detectLanguageBatcher = new DetectLanguageBatcher(options.getDetectBatchWindowMillis(),
+                    DetectLanguageBatcher.getInstance().getMaxBatchSize());
+            languageIdentifier = LanguageIdentifier.fromProperties(detectLanguageBatcher);
+        }
+
+        void ocr(BatchItem item) {
+            if (isPdf(item)) {
+                ocrPdf(item);
+                return;
+            }
+            if (isAutomaticLanguage()) {
+                ocrWithAutomaticLanguage(item);
+                return;
+            }
+            if (PropertiesReader.getBooleanProperty("OCR_TILED", false)) {
+                ocrTiled(item);
+                return;
+            }
+
+            try {
+                PreprocessResult preprocessResult = new ImagePreprocessor().preprocess(item.getSource());
+                item.setPreprocessResult(preprocessResult);
+
+                try {
+                    OcrEngine ocrEngine = OcrEngines.getInstance().getDefault();
+                    OCRObject ocrObject = ocrEngine.uploadLocalImage(preprocessResult.getFile(), getEngineLanguage(),
+                            options.isIdentifyLanguage());
+                    item.setOcrObject(ocrObject);
+
+                    if (ocrObject.isErrorOnProcessing()) {
+                        item.setError("OCR: " + ocrObject.getErrorMessage());
+                    }
+                } finally {
+                    preprocessResult.deleteProcessedFile();
+                }
+            } catch (IOException e) {
+                item.setError("Preprocessing: " + e);
+            } catch (RuntimeException | Error e) {
+                item.setError("OCR: " + e);
+            }
+
+            afterOcr(item);
+        }
+
+        /**
+         * Generates the text of every page of a PDF file, with its ranges of pages sent at the same time.
+         * In automatic mode the server identifies the language, since a PDF file has no thumbnail.
+         */
+        private void ocrPdf(BatchItem item) {
+            try {
+                OCRObject ocrObject = new PdfOCRHandler().uploadPdf(item.getSource(),
+                        getEngineLanguage(),
+                        isAutomaticLanguage() || options.isIdentifyLanguage(), null);
+                item.setOcrObject(ocrObject);
+
+                if (ocrObject.isErrorOnProcessing()) {
+                    item.setError("OCR: " + ocrObject.getErrorMessage());
+                }
+            } catch (IOException e) {
+                item.setError("Splitting: " + e);
+            } catch (RuntimeException | Error e) {
+                item.setError("OCR: " + e);
+            }
+
+            afterOcr(item);
+        }
+
+        /**
+         * Generates the text in bands, so images that share most of their content only send what differs.
+         */
+        private void ocrTiled(BatchItem item) {
+            try {
+                OCRObject ocrObject = new TiledOCRHandler().uploadLocalImage(item.getSource(), getEngineLanguage(),
+                        options.isIdentifyLanguage(), null);
+                item.setOcrObject(ocrObject);
+
+                if (ocrObject.isErrorOnProcessing()) {
+                    item.setError("OCR: " + ocrObject.getErrorMessage());
+                }
+            } catch (IOException e) {
+                item.setError("Preprocessing: " + e);
+            } catch (RuntimeException | Error e) {
+                item.setError("OCR: " + e);
+            }
+
+            afterOcr(item);
+        }
+
+        private boolean isPdf(BatchItem item) {
+            try {
+                return new MimeManager().isPdf(Files.probeContentType(item.getSource()));
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        private void afterOcr(BatchItem item) {
+            if (item.isFailed() || !options.isDetectLanguage()) {
+                afterDetect(item);
+            } else {
+                forward(detectStage, item, this::detect);
+            }
+        }
+
+        /**
+         * Identifies the language from a first pass over a thumbnail, and generates the text with it.
+         * The identified language is kept, so the item skips the detect stage.
+         */
+        private void ocrWithAutomaticLanguage(BatchItem item) {
+            try {
+                AutoLanguageResult result = new AutoLanguageOCRHandler(languageIdentifier)
+                        .uploadLocalImage(item.getSource(), "eng", null);
+                item.setOcrObject(result.getOcrObject());
+                if (result.isLanguageIdentified()) {
+                    item.setDetectLanguageObject(result.getDetectLanguageObject());
+                }
+
+                if (result.getOcrObject().isErrorOnProcessing()) {
+                    item.setError("OCR: " + result.getOcrObject().getErrorMessage());
+                }
+            } catch (IOException e) {
+                item.setError("Preprocessing: " + e);
+            } catch (RuntimeException | Error e) {
+                item.setError("OCR: " + e);
+            }
+
+            if (item.isFailed() || !options.isDetectLanguage() || item.getDetectLanguageObject() != null) {
+                afterDetect(item);
+            } else {
+                forward(detectStage, item, this::detect);
+            }
+        }
+
+        private boolean isAutomaticLanguage() {
+            return options.getOcrLanguage().equals(AutoLanguageOCRHandler.AUTO_LANGUAGE) && !options.isIdentifyLanguage();
+        }
+
+        /**
+         * @return the language to send to the OCR engine. "auto" is only understood by the two-pass pipeline,
+         * so it is replaced by English and the language is identified by the engine or the pipeline instead.
+         */
+        private String getEngineLanguage() {
+            return options.getOcrLanguage().equals(AutoLanguageOCRHandler.AUTO_LANGUAGE) ? "eng" : options.getOcrLanguage();
+        }
+
+        void detect(BatchItem item) {
+            try {
+                item.setDetectLanguageObject(languageIdentifier.identifyLanguage(item.getOcrObject().getParsedTextClean()));
+            } catch (RuntimeException | Error e) {
+                // Detection only refines translation, so the item can continue without it.
+                System.out.println("Language detection failed for " + item.getSource() + ": " + e);
+            }
+            afterDetect(item);
+        }
+
+        private void afterDetect(BatchItem item) {
+            if (!item.isFailed() && options.isTranslationEnabled()) {
+                forward(translateStage, item, this::translate);
+            } else {
+                afterTranslate(item);
+            }
+        }
+
+        void translate(BatchItem item) {
+            try {
+                TranslateHandler translateHandler = new TranslateHandler();
+                String text = item.getOcrObject().getParsedText();
+                String source = getSourceTranslateCode(item.getDetectLanguageObject());
+
+                TranslateObject translateObject = source == null
+                        ? translateHandler.translateText(text, options.getTargetLanguage())
+                        : translateHandler.translateText(text, options.getTargetLanguage(), source);
+                item.setTranslateObject(translateObject);
+
+                if (translateObject.isErrorOnProcessing()) {
+                    item.setError("Translate: " + translateObject.getMessage());
+                }
+            } catch (RuntimeException | Error e) {
+                item.setError("Translate: " + e);
+            }
+            afterTranslate(item);
+        }
+
+        private void afterTranslate(BatchItem item) {
+            if (!item.isFailed() && options.isVoiceEnabled()) {
+                forward(voiceStage, item, this::voice);
+            } else {
+                finish(item);
+            }
+        }
+
+        void voice(BatchItem item) {
+            try {
+                VoiceHandler voiceHandler = new VoiceHandler();
+                Path voiceFile = writer.getOutputFile(item, ".wav");
+
+                if (voiceHandler.voiceFormData(options.getVoiceLanguage(), options.getVoice(), item.getCurrentText(), voiceFile)) {
+                    item.setVoiceFile(voiceFile);
+                } else {
+                    item.setError("Voice: could not generate voice.");
+                }
+            } catch (RuntimeException | Error e) {
+                item.setError("Voice: " + e);
+            }
+            finish(item);
+        }
+
+        /**
+         * Hands the item to the next stage, blocking while the stage is full.
+         */
+        private void forward(PipelineStage stage, BatchItem item, Consumer<BatchItem> step) {
+            try {
+                stage.submit(() -> step.accept(item));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                item.setError("Interrupted before stage " + stage.getName());
+                finish(item);
+            }
+        }
+
+        private void finish(BatchItem item) {
+            try {
+                writer.write(item);
+            } catch (RuntimeException e) {
+                // E.g. a JSONException for a value that JSON cannot hold; the batch must still finish.
+                System.out.println("An error occurred while trying to write the results for " + item.getSource());
+                e.printStackTrace();
+                if (item.getError() == null) {
+                    item.setError("Could not write results: " + e.getMessage());
+                }
+            } finally {
+                if (item.isFailed()) {
+                    failed.incrementAndGet();
+                }
+                remaining.countDown();
+            }
+
+            System.out.println("[" + finished.incrementAndGet() + "] " + item.getSource().getFileName()
+                    + (item.isFailed() ? " failed: " + item.getError() : " done in " + item.getElapsedMillis() + " ms."));
+        }
+
+        private String getSourceTranslateCode(DetectLanguageObject detectLanguageObject) {
+            if (detectLanguageObject == null || detectLanguageObject.isErrorOnProcessing()) {
+                return null;
+            }
+            LanguageRegistry.Language language = LanguageRegistry.getInstance().fromDetectCode(detectLanguageObject.getLanguage(false));
+            return language == null ? null : language.getTranslateCode();
+        }
+
+        void shutdown() {
+            ocrStage.shutdown();
+            detectStage.shutdown();
+            translateStage.shutdown();
+            voiceStage.shutdown();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.imagetextapp.batch;
+
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams batch results to disk as soon as each item is finished.
+ * For every item, the generated and translated texts are written to their own files, and one JSON line
+ * describing the item is appended to "results.jsonl" in the output directory.
+ */
+public class BatchResultWriter implements Closeable {
+
+    private final Path outputDirectory;
+    private final BufferedWriter resultsWriter;
+
+    /**
+     * @param outputDirectory directory for all result files, created if it does not exist.
+     * @throws IOException if the directory or the results file could not be created.
+     */
+    public BatchResultWriter(Path outputDirectory) throws IOException {
+        this.outputDirectory = Files.createDirectories(outputDirectory);
+        this.resultsWriter = Files.newBufferedWriter(outputDirectory.resolve("results.jsonl"), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * @param item in the batch.
+     * @param extension of the file, including the dot.
+     * @return output file for the item, unique per input even if input file names collide.
+     */
+    public Path getOutputFile(BatchItem item, String extension) {
+        String fileName = item.getSource().getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        if (dot > 0) {
+            fileName = fileName.substring(0, dot);
+        }
+        return outputDirectory.resolve(String.format("%05d_%s%s", item.getIndex(), fileName, extension));
+    }
+
+    /**
+     * Writes all results of a finished item.
+     * @param item that has passed through every stage of the pipeline.
+     */
+    public void write(BatchItem item) {
+        JSONObject line = new JSONObject();
+        line.put("index", item.getIndex());
+        line.put("source", item.getSource().toString());
+        line.put("elapsedMillis", item.getElapsedMillis());
+
+        if (item.getPreprocessResult() != null && item.getPreprocessResult().isProcessed()) {
+            line.put("bytesSaved", item.getPreprocessResult().getBytesSaved());
+            line.put("preprocessMillis", item.getPreprocessResult().getElapsedMillis());
+        }
+
+        try {
+            if (item.getOcrObject() != null && !item.getOcrObject().isErrorOnProcessing()) {
+                Path textFile = getOutputFile(item, ".txt");
+                Files.writeString(textFile, item.getOcrObject().getParsedText(), StandardCharsets.UTF_8);
+                line.put("textFile", textFile.getFileName().toString());
+                line.put("ocrProcessingTime", item.getOcrObject().getProcessingTime());
+            }
+            if (item.getDetectLanguageObject() != null && !item.getDetectLanguageObject().isErrorOnProcessing()) {
+                line.put("language", item.getDetectLanguageObject().getLanguage(false));
+                line.put("confidence", item.getDetectLanguageObject().getConfidence());
+            }
+            if (item.getTranslateObject() != null && !item.getTranslateObject().isErrorOnProcessing()) {
+                Path translationFile = getOutputFile(item, ".translated.txt");
+                Files.writeString(translationFile, item.getTranslateObject().getText(), StandardCharsets.UTF_8);
+                line.put("translationFile", translationFile.getFileName().toString());
+            }
+        } catch (IOException e) {
+            System.out.println("An error occurred while trying to write the results for " + item.getSource());
+            e.printStackTrace();
+            if (item.getError() == null) {
+                item.setError("Could not write results: " + e.getMessage());
+            }
+        }
+
+        if (item.getVoiceFile() != null) {
+            line.put("voiceFile", item.getVoiceFile().getFileName().toString());
+        }
+        if (item.getError() != null) {
+            line.put("error", item.getError());
+        }
+
+        synchronized (resultsWriter) {
+            try {
+                resultsWriter.write(line.toString());
+                resultsWriter.newLine();
+                resultsWriter.flush();
+            } catch (IOException e) {
+                System.out.println("An error occurred while trying to append to results.jsonl.");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (resultsWriter) {
+            resultsWriter.close();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.imagetextapp.batch;
+
+import org.imagetextapp.utility.HttpClientManager;
+import org.imagetextapp.utility.MimeManager;
+import org.imagetextapp.utility.RateLimiter;
+import org.imagetextapp.utility.ServiceType;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Command line entry point for headless batch processing:
+ *
+ *      BatchRunner <image directory | manifest file> <output directory> [--option=value ...]
+ *
+ * A manifest is a text file with one image path per line (relative paths are resolved against the
+ * manifest's directory, empty lines and lines starting with # are ignored).
+ *
+ * Options: --ocr-language, --identify-language, --no-detect, --target, --voice-language, --voice,
+ * --ocr-workers, --detect-workers, --translate-workers, --voice-workers, --queue-capacity, --detect-batch-window-ms.
+ */
+public class BatchRunner {
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: BatchRunner <image directory | manifest file> <output directory> [--option=value ...]");
+            System.exit(1);
+            return;
+        }
+
+        try {
+            BatchOptions options = parseOptions(args);
+            List<Path> inputs = collectInputs(Path.of(args[0]));
+            System.out.println("Processing " + inputs.size() + " images...");
+
+            BatchSummary summary = new BatchPipeline(options).run(inputs, Path.of(args[1]));
+            System.out.println(summary);
+            System.out.print(HttpClientManager.getInstance().getStatisticsReport());
+            for (ServiceType serviceType : ServiceType.values()) {
+                System.out.println(serviceType + ": " + RateLimiter.forService(serviceType));
+            }
+
+            if (summary.getFailed() > 0) {
+                System.exit(2);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Batch processing failed: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Batch processing was interrupted.");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @param input directory of images, or manifest file listing images.
+     * @return all images to process, in a stable order.
+     * @throws IOException if the input could not be read.
+     */
+    public static List<Path> collectInputs(Path input) throws IOException {
+        if (Files.isDirectory(input)) {
+            MimeManager mimeManager = new MimeManager();
+            try (Stream<Path> files = Files.list(input)) {
+                List<Path> images = new ArrayList<>();
+                for (Path file : files.sorted().collect(Collectors.toList())) {
+                    if (Files.isRegularFile(file) && mimeManager.validImageFile(Files.probeContentType(file))) {
+                        images.add(file);
+                    }
+                }
+                return images;
+            }
+        }
+
+        Path baseDirectory = input.toAbsolutePath().getParent();
+        List<Path> images = new ArrayList<>();
+        for (String line : Files.readAllLines(input, StandardCharsets.UTF_8)) {
+            String trimmed = line.trim();
+            if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                images.add(baseDirectory.resolve(trimmed));
+            }
+        }
+        return images;
+    }
+
+    private static BatchOptions parseOptions(String[] args) {
+        BatchOptions options = new BatchOptions();
+
+        for (int i = 2; i < args.length; i++) {
+            String arg = args[i];
+            int separator = arg.indexOf('=');
+            String name = separator > 0 ? arg.substring(0, separator) : arg;
+            String value = separator > 0 ? arg.substring(separator + 1) : "";
+
+            switch (name) {
+                case "--ocr-language" -> options.setOcrLanguage(value);
+                case "--identify-language" -> options.setIdentifyLanguage(true);
+                case "--no-detect" -> options.setDetectLanguage(false);
+                case "--target" -> options.setTargetLanguage(value);
+                case "--voice-language" -> options.setVoiceLanguage(value);
+                case "--voice" -> options.setVoice(value);
+                case "--ocr-workers" -> options.setOcrWorkers(parsePositive(name, value));
+                case "--detect-workers" -> options.setDetectWorkers(parsePositive(name, value));
+                case "--translate-workers" -> options.setTranslateWorkers(parsePositive(name, value));
+                case "--voice-workers" -> options.setVoiceWorkers(parsePositive(name, value));
+                case "--queue-capacity" -> options.setQueueCapacity(parsePositive(name, value));
+                case "--detect-batch-window-ms" -> options.setDetectBatchWindowMillis(parsePositive(name, value));
+                default -> throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        return options;
+    }
+
+    private static int parsePositive(String name, String value) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException(name + " needs a positive number, got: " + value);
+    }
+}
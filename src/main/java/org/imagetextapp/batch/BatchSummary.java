@@ -0,0 +1,43 @@
+package org.imagetextapp.batch;
+
+/**
+ * Outcome of a batch run.
+ */
+public class BatchSummary {
+
+    private final int total;
+    private final int failed;
+    private final long elapsedMillis;
+
+    public BatchSummary(int total, int failed, long elapsedMillis) {
+        this.total = total;
+        this.failed = failed;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public int getSucceeded() {
+        return total - failed;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchSummary{" +
+                "total=" + total +
+                ", succeeded=" + getSucceeded() +
+                ", failed=" + failed +
+                ", elapsedMillis=" + elapsedMillis +
+                '}';
+    }
+}
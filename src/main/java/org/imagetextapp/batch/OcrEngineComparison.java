@@ -0,0 +1,233 @@
+package org.imagetextapp.batch;
+
+import org.imagetextapp.apis.ocr.ImagePreprocessor;
+import org.imagetextapp.apis.ocr.OCRCache;
+import org.imagetextapp.apis.ocr.OCRObject;
+import org.imagetextapp.apis.ocr.OcrEngine;
+import org.imagetextapp.apis.ocr.OcrEngines;
+import org.imagetextapp.apis.ocr.PreprocessResult;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line benchmark that reads the same images with several OCR engines:
+ *
+ *      App --compare-ocr-engines <image directory | manifest file> [--engines=ocrspace,tesseract] [--language=eng]
+ *
+ * Every image is preprocessed once and then read by each engine in turn, so they get the same input. If a
+ * text file with the same name as an image is next to it (e.g. page1.txt for page1.png), it is used as ground
+ * truth and the character error rate of every engine is reported. Results that OCR.space served from
+ * OCRCache are counted separately, as their time says nothing about the engine.
+ */
+public class OcrEngineComparison {
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: --compare-ocr-engines <image directory | manifest file> "
+                    + "[--engines=" + String.join(",", OcrEngines.getInstance().getNames()) + "] [--language=eng]");
+            System.exit(1);
+            return;
+        }
+
+        List<String> names = OcrEngines.getInstance().getNames();
+        String language = "eng";
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith("--engines=")) {
+                names = Arrays.asList(args[i].substring("--engines=".length()).split(","));
+            } else if (args[i].startsWith("--language=")) {
+                language = args[i].substring("--language=".length());
+            } else {
+                System.out.println("Unknown option: " + args[i]);
+                System.exit(1);
+                return;
+            }
+        }
+
+        List<OcrEngine> engines = new ArrayList<>();
+        for (String name : names) {
+            OcrEngine engine = OcrEngines.getInstance().get(name.trim());
+            if (engine == null) {
+                System.out.println("Unknown OCR engine: " + name + ", expected one of " + OcrEngines.getInstance().getNames());
+            } else if (!engine.isAvailable()) {
+                System.out.println("OCR engine " + engine.getName() + " cannot run here and is left out.");
+            } else {
+                engines.add(engine);
+            }
+        }
+        if (engines.isEmpty()) {
+            System.exit(1);
+            return;
+        }
+
+        try {
+            List<Path> inputs = BatchRunner.collectInputs(Path.of(args[0]));
+            System.out.println("Comparing " + engines.size() + " OCR engines on " + inputs.size() + " images...");
+
+            OcrEngineComparison comparison = new OcrEngineComparison(engines, language);
+            comparison.run(inputs);
+            System.out.print(comparison.getReport());
+        } catch (IOException e) {
+            System.out.println("Comparison failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private final List<OcrEngine> engines;
+    private final String language;
+    // Engine name -> its results, in the order of the engines.
+    private final Map<String, EngineResults> results = new LinkedHashMap<>();
+
+    /**
+     * @param engines engines to compare.
+     * @param language OCR.space code of the language of the images.
+     */
+    public OcrEngineComparison(List<OcrEngine> engines, String language) {
+        this.engines = engines;
+        this.language = language;
+        for (OcrEngine engine : engines) {
+            results.put(engine.getName(), new EngineResults());
+        }
+    }
+
+    /**
+     * Reads every image with every engine, one at a time so the timings do not affect each other.
+     * @param images images to read.
+     */
+    public void run(List<Path> images) {
+        OCRCache cache = OCRCache.getInstance();
+
+        for (Path image : images) {
+            PreprocessResult preprocessResult;
+            try {
+                preprocessResult = new ImagePreprocessor().preprocess(image);
+            } catch (IOException e) {
+                System.out.println("Could not read " + image + ": " + e.getMessage());
+                continue;
+            }
+            String groundTruth = readGroundTruth(image);
+
+            try {
+                for (OcrEngine engine : engines) {
+                    EngineResults engineResults = results.get(engine.getName());
+                    long cacheHits = cache.getMemoryHits() + cache.getDiskHits();
+                    long start = System.nanoTime();
+                    OCRObject ocrObject = engine.uploadLocalImage(preprocessResult.getFile(), language, false);
+                    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+                    if (ocrObject == null || ocrObject.isErrorOnProcessing()) {
+                        engineResults.failures++;
+                        System.out.println(engine.getName() + " failed on " + image.getFileName() + ": "
+                                + (ocrObject == null ? "no result" : ocrObject.getErrorMessage()));
+                    } else if (cache.getMemoryHits() + cache.getDiskHits() > cacheHits) {
+                        engineResults.cached++;
+                    } else {
+                        engineResults.millis.add(elapsedMillis);
+                    }
+
+                    if (ocrObject != null && !ocrObject.isErrorOnProcessing() && groundTruth != null) {
+                        engineResults.errorRates.add(characterErrorRate(groundTruth, ocrObject.getParsedText()));
+                    }
+                }
+            } finally {
+                preprocessResult.deleteProcessedFile();
+            }
+        }
+    }
+
+    /**
+     * @return one line per engine with its failures, timings and character error rate.
+     */
+    public String getReport() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, EngineResults> entry : results.entrySet()) {
+            builder.append(entry.getKey()).append(": ").append(entry.getValue()).append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @param expected text that should have been read.
+     * @param actual text that was read.
+     * @return edit distance between the texts divided by the length of the expected text, ignoring how
+     * whitespace is laid out.
+     */
+    public static double characterErrorRate(String expected, String actual) {
+        String a = normalize(expected);
+        String b = normalize(actual);
+        if (a.isEmpty()) {
+            return b.isEmpty() ? 0 : 1;
+        }
+
+        // Levenshtein distance, keeping only two rows of the table.
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return (double) previous[b.length()] / a.length();
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.strip().replaceAll("\\s+", " ");
+    }
+
+    private static String readGroundTruth(Path image) {
+        String fileName = image.getFileName().toString();
+        int extension = fileName.lastIndexOf('.');
+        Path text = image.resolveSibling((extension > 0 ? fileName.substring(0, extension) : fileName) + ".txt");
+        try {
+            return Files.isRegularFile(text) ? Files.readString(text, StandardCharsets.UTF_8) : null;
+        } catch (IOException e) {
+            System.out.println("Could not read ground truth " + text + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static class EngineResults {
+        private final List<Long> millis = new ArrayList<>();
+        private final List<Double> errorRates = new ArrayList<>();
+        private int failures;
+        private int cached;
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append(millis.size()).append(" read, ").append(failures).append(" failed, ")
+                    .append(cached).append(" from cache");
+
+            if (!millis.isEmpty()) {
+                List<Long> sorted = new ArrayList<>(millis);
+                Collections.sort(sorted);
+                long total = sorted.stream().mapToLong(Long::longValue).sum();
+                builder.append(", mean ").append(total / sorted.size()).append(" ms")
+                        .append(", median ").append(sorted.get(sorted.size() / 2)).append(" ms")
+                        .append(", p95 ").append(sorted.get((int) Math.ceil(sorted.size() * 0.95) - 1)).append(" ms")
+                        .append(", total ").append(total).append(" ms");
+            }
+            if (!errorRates.isEmpty()) {
+                double mean = errorRates.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+                builder.append(String.format(", CER %.2f%% over %d images", mean * 100, errorRates.size()));
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.imagetextapp.batch;
+
+import org.imagetextapp.utility.ExecutionManager;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One stage of the batch pipeline: a fixed number of workers with a bounded queue in front of them.
+ * Submitting to a full stage blocks the caller, which gives backpressure to the stage before it
+ * without ever rejecting work.
+ *
+ * The workers are platform threads, or virtual threads when ExecutionManager runs in virtual mode.
+ */
+public class PipelineStage {
+
+    private final String name;
+    private final ExecutorService executor;
+    private final Semaphore capacity;
+    private final Semaphore workers;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * @param name of the stage, used for thread names.
+     * @param workers number of items this stage works on at the same time.
+     * @param queueCapacity number of items that may wait for a free worker.
+     */
+    public PipelineStage(String name, int workers, int queueCapacity) {
+        this.name = name;
+        this.executor = ExecutionManager.getInstance().newWorkerExecutor("batch-" + name + "-", workers);
+        this.capacity = new Semaphore(workers + queueCapacity);
+        this.workers = new Semaphore(workers, true);
+    }
+
+    /**
+     * Hands a task to this stage, waiting while all workers are busy and the queue is full.
+     * @param task to be run by one of the stage's workers.
+     * @throws InterruptedException if interrupted while waiting for capacity.
+     */
+    public void submit(Runnable task) throws InterruptedException {
+        capacity.acquire();
+        pending.incrementAndGet();
+        try {
+            executor.execute(() -> runTask(task));
+        } catch (RuntimeException e) {
+            pending.decrementAndGet();
+            capacity.release();
+            throw e;
+        }
+    }
+
+    private void runTask(Runnable task) {
+        try {
+            // Only needed for virtual threads, where every task gets its own thread.
+            workers.acquireUninterruptibly();
+            try {
+                task.run();
+            } finally {
+                workers.release();
+            }
+        } finally {
+            pending.decrementAndGet();
+            capacity.release();
+        }
+    }
+
+    /**
+     * @return number of items that are queued or being worked on.
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Stops the workers once all submitted tasks are done.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -2,13 +2,27 @@ package org.imagetextapp.gui;
 
 import org.imagetextapp.apis.detectlanguage.DetectLanguageHandler;
 import org.imagetextapp.apis.detectlanguage.DetectLanguageObject;
+import org.imagetextapp.apis.ocr.AutoLanguageOCRHandler;
+import org.imagetextapp.apis.ocr.AutoLanguageResult;
+import org.imagetextapp.apis.ocr.ImagePreprocessor;
 import org.imagetextapp.apis.ocr.OCRHandler;
 import org.imagetextapp.apis.ocr.OCRObject;
+import org.imagetextapp.apis.ocr.OcrEngine;
+import org.imagetextapp.apis.ocr.OcrEngines;
+import org.imagetextapp.apis.ocr.PdfOCRHandler;
+import org.imagetextapp.apis.ocr.PreprocessResult;
+import org.imagetextapp.apis.ocr.TiledOCRHandler;
 import org.imagetextapp.apis.translate.TranslateHandler;
 import org.imagetextapp.apis.translate.TranslateObject;
+import org.imagetextapp.apis.voicerss.StreamingVoiceHandler;
 import org.imagetextapp.apis.voicerss.VoiceHandler;
-import org.imagetextapp.utility.LanguageCodeMapper;
+import org.imagetextapp.apis.voicerss.VoiceOutput;
+import org.imagetextapp.apis.voicerss.VoiceOutputManager;
+import org.imagetextapp.utility.AudioPlayer;
+import org.imagetextapp.utility.ExecutionManager;
+import org.imagetextapp.utility.LanguageRegistry;
 import org.imagetextapp.utility.MimeManager;
+import org.imagetextapp.utility.PropertiesReader;
 import org.imagetextapp.utility.StringManager;
 
 import javax.sound.sampled.*;
@@ -30,9 +44,9 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Controller for the GUI. Responsible for invoking specified methods based on a user's input.
@@ -273,100 +287,29 @@ public class Controller {
      * Fills JComboBoxes with correct items needed for the functionality of the application.
      */
     private void fillDropDowns() {
-        // Fill textGenerationLanguageBox with all supported languages.
-        // OCR API codes as values.
-        view.getTextGenerationLanguageBox().addItem(new BoxItem("Croatian", "hrv"));
-        view.getTextGenerationLanguageBox().addItem(new BoxItem("Czech", "cze"));
-        view.getTextGenerationLanguageBox().addItem(new BoxItem("Danish", "dan"));
-        view.getTextGenerationLanguageBox().addItem(new BoxItem("Dutch", "dut"));
-        view.getTextGenerationLanguageBox().addItem(new BoxItem("English", "eng"));
-        view.getTextGenerationLanguageBox().addItem(new BoxItem("Finnish", "fin"));
-        view.getTextGenerationLanguageBox().addItem(new BoxItem("French", "fre"));
-        view.getTextGenerationLanguageBox().addItem(new BoxItem("German", "ger"));
-        view.getTextGenerationLanguageBox().addItem(new BoxItem("Hungarian", "hun"));
-        view.getTextGenerationLanguageBox().addItem(new BoxItem("Italian", "ita"));
-        view.getTextGenerationLanguageBox().addItem(new BoxItem("Polish", "pol"));
-        view.getTextGenerationLanguageBox().addItem(new BoxItem("Portuguese", "por"));
-        view.getTextGenerationLanguageBox().addItem(new BoxItem("Slovenian", "slv"));
-        view.getTextGenerationLanguageBox().addItem(new BoxItem("Spanish", "spa"));
-        view.getTextGenerationLanguageBox().addItem(new BoxItem("Swedish", "swe"));
-        view.getTextGenerationLanguageBox().addItem(new BoxItem("Turkish", "tur"));
-
-        // Set the standard value to "English".
-        view.getTextGenerationLanguageBox().setSelectedIndex(4);
-
-        // Fill translateBoxes with all supported languages.
-        // Google Translate API codes as values.
-        view.getTranslateFromBox().addItem(new BoxItem("Croatian", "hr"));
-        view.getTranslateToBox().addItem(new BoxItem("Croatian", "hr"));
-        view.getTranslateFromBox().addItem(new BoxItem("Czech", "cs"));
-        view.getTranslateToBox().addItem(new BoxItem("Czech", "cs"));
-        view.getTranslateFromBox().addItem(new BoxItem("Danish", "da"));
-        view.getTranslateToBox().addItem(new BoxItem("Danish", "da"));
-        view.getTranslateFromBox().addItem(new BoxItem("Dutch", "nl"));
-        view.getTranslateToBox().addItem(new BoxItem("Dutch", "nl"));
-        view.getTranslateFromBox().addItem(new BoxItem("English", "en"));
-        view.getTranslateToBox().addItem(new BoxItem("English", "en"));
-        view.getTranslateFromBox().addItem(new BoxItem("Finnish", "fi"));
-        view.getTranslateToBox().addItem(new BoxItem("Finnish", "fi"));
-        view.getTranslateFromBox().addItem(new BoxItem("French", "fr"));
-        view.getTranslateToBox().addItem(new BoxItem("French", "fr"));
-        view.getTranslateFromBox().addItem(new BoxItem("German", "de"));
-        view.getTranslateToBox().addItem(new BoxItem("German", "de"));
-        view.getTranslateFromBox().addItem(new BoxItem("Hungarian", "hu"));
-        view.getTranslateToBox().addItem(new BoxItem("Hungarian", "hu"));
-        view.getTranslateFromBox().addItem(new BoxItem("Italian", "it"));
-        view.getTranslateToBox().addItem(new BoxItem("Italian", "it"));
-        view.getTranslateFromBox().addItem(new BoxItem("Polish", "pl"));
-        view.getTranslateToBox().addItem(new BoxItem("Polish", "pl"));
-        view.getTranslateFromBox().addItem(new BoxItem("Portuguese", "pt"));
-        view.getTranslateToBox().addItem(new BoxItem("Portuguese", "pt"));
-        view.getTranslateFromBox().addItem(new BoxItem("Slovenian", "sl"));
-        view.getTranslateToBox().addItem(new BoxItem("Slovenian", "sl"));
-        view.getTranslateFromBox().addItem(new BoxItem("Spanish", "es"));
-        view.getTranslateToBox().addItem(new BoxItem("Spanish", "es"));
-        view.getTranslateFromBox().addItem(new BoxItem("Swedish", "sv"));
-        view.getTranslateToBox().addItem(new BoxItem("Swedish", "sv"));
-        view.getTranslateFromBox().addItem(new BoxItem("Turkish", "tr"));
-        view.getTranslateToBox().addItem(new BoxItem("Turkish", "tr"));
-
-        // Set the standard values to "English".
-        view.getTranslateFromBox().setSelectedIndex(4);
-        view.getTranslateToBox().setSelectedIndex(4);
-
-        // Fill TextLanguageBoxes with all supported languages.
-        // VoiceRSS API codes as values.
-        view.getTextLanguageBox().addItem(new BoxItem("Croatian", "hr-hr"));
-        view.getTextLanguageBox().addItem(new BoxItem("Czech", "cs-cz"));
-        view.getTextLanguageBox().addItem(new BoxItem("Danish", "da-dk"));
-        view.getTextLanguageBox().addItem(new BoxItem("Dutch (Belgium)", "nl-be"));
-        view.getTextLanguageBox().addItem(new BoxItem("Dutch (Netherlands)", "nl-nl"));
-        view.getTextLanguageBox().addItem(new BoxItem("English (Australia)", "en-au"));
-        view.getTextLanguageBox().addItem(new BoxItem("English (Canada)", "en-ca"));
-        view.getTextLanguageBox().addItem(new BoxItem("English (Great Britain)", "en-gb"));
-        view.getTextLanguageBox().addItem(new BoxItem("English (India)", "en-in"));
-        view.getTextLanguageBox().addItem(new BoxItem("English (Ireland)", "en-ie"));
-        view.getTextLanguageBox().addItem(new BoxItem("English (United States)", "en-us"));
-        view.getTextLanguageBox().addItem(new BoxItem("Finnish", "fi-fi"));
-        view.getTextLanguageBox().addItem(new BoxItem("French (Canada)", "fr-ca"));
-        view.getTextLanguageBox().addItem(new BoxItem("French (France)", "fr-fr"));
-        view.getTextLanguageBox().addItem(new BoxItem("French (Switzerland)", "fr-ch"));
-        view.getTextLanguageBox().addItem(new BoxItem("German (Austria)", "de-at"));
-        view.getTextLanguageBox().addItem(new BoxItem("German (Germany)", "de-de"));
-        view.getTextLanguageBox().addItem(new BoxItem("German (Switzerland)", "de-ch"));
-        view.getTextLanguageBox().addItem(new BoxItem("Hungarian", "hu-hu"));
-        view.getTextLanguageBox().addItem(new BoxItem("Italian", "it-it"));
-        view.getTextLanguageBox().addItem(new BoxItem("Polish", "pl-pl"));
-        view.getTextLanguageBox().addItem(new BoxItem("Portuguese (Brazil)", "pt-br"));
-        view.getTextLanguageBox().addItem(new BoxItem("Portuguese (Portugal)", "pt-pt"));
-        view.getTextLanguageBox().addItem(new BoxItem("Slovenian", "sl-si"));
-        view.getTextLanguageBox().addItem(new BoxItem("Spanish (Mexico)", "es-mx"));
-        view.getTextLanguageBox().addItem(new BoxItem("Spanish (Spain)", "es-es"));
-        view.getTextLanguageBox().addItem(new BoxItem("Swedish", "sv-se"));
-        view.getTextLanguageBox().addItem(new BoxItem("Turkish", "tr-tr"));
-
-        // Set the standard value to "English - USA".
-        view.getTextLanguageBox().setSelectedIndex(10);
+        LanguageRegistry languageRegistry = LanguageRegistry.getInstance();
+
+        // Fill the language boxes with all supported languages, with the codes of the respective API as values.
+        for (LanguageRegistry.Language language : languageRegistry.getLanguages()) {
+            view.getTextGenerationLanguageBox().addItem(new BoxItem(language.getName(), language.getOcrCode()));
+            view.getTranslateFromBox().addItem(new BoxItem(language.getName(), language.getTranslateCode()));
+            view.getTranslateToBox().addItem(new BoxItem(language.getName(), language.getTranslateCode()));
+        }
+        for (LanguageRegistry.VoiceLocale voiceLocale : languageRegistry.getVoiceLocales()) {
+            view.getTextLanguageBox().addItem(new BoxItem(voiceLocale.getName(), voiceLocale.getCode()));
+        }
+
+        // Automatic language selection comes first, which moves the languages down by one.
+        view.getTextGenerationLanguageBox().insertItemAt(new BoxItem("Automatic", AutoLanguageOCRHandler.AUTO_LANGUAGE), 0);
+
+        // Set the standard values to "English" and "English (United States)".
+        LanguageRegistry.Language english = languageRegistry.fromDetectCode("en");
+        if (english != null) {
+            view.getTextGenerationLanguageBox().setSelectedIndex(english.getIndex() + 1);
+            view.getTranslateFromBox().setSelectedIndex(english.getIndex());
+            view.getTranslateToBox().setSelectedIndex(english.getIndex());
+            view.getTextLanguageBox().setSelectedIndex(english.getDefaultVoiceLocale().getIndex());
+        }
     }
 
     /**
@@ -431,10 +374,7 @@ public class Controller {
         long fileSizeBytes = model.getSelectedFile().length();
         long fileSizeKB = fileSizeBytes / 1024;
 
-        // Checks if selected file is within the file size limit (1 MB).
-        if (fileSizeKB > model.getFILE_SIZE_LIMIT()) {
-            openTooLargeFileSizeDialog();
-        } else if (fileSizeKB == 0) {
+        if (fileSizeKB == 0) {
             openInvalidFileDialog();
         } else {
             try {
@@ -442,28 +382,99 @@ public class Controller {
                 MimeManager mimeManager = new MimeManager();
 
                 // Checks if the content type of the selected file is supported for text generation.
+                // Images are shrunk and PDF files are split into ranges of pages before the upload.
                 if (mimeManager.validImageFile(mime)) {
                     BoxItem item = (BoxItem) view.getTextGenerationLanguageBox().getSelectedItem();
                     assert item != null;
                     String selectedLanguage = item.getValue();
+                    boolean automaticSelected = selectedLanguage.equals(AutoLanguageOCRHandler.AUTO_LANGUAGE);
+                    boolean automaticLanguage = automaticSelected && !view.getUnknownCheckBox().isSelected();
+                    // With the unknown checkbox ticked, the OCR API identifies the language itself, as for links.
+                    String language = automaticSelected ? "eng" : selectedLanguage;
+                    boolean pdf = mimeManager.isPdf(mime);
 
                     setStatusLabel("Size of local file: " + fileSizeKB + "KB. Initializing text generation...");
 
                     // Thread for handling the server communication and safely updating GUI throughout the process.
                     SwingWorker<OCRObject, String> worker = new SwingWorker<>() {
 
+                        private String identifiedLanguage = null;
+
                         @Override
-                        protected OCRObject doInBackground() {
-                            OCRHandler ocrHandler = new OCRHandler();
-                            model.setOcrObject(ocrHandler.uploadLocalImage(path, selectedLanguage, view.getUnknownCheckBox().isSelected()));
-                            publish();
+                        protected OCRObject doInBackground() throws IOException {
+                            if (pdf) {
+                                return generateForPdf();
+                            }
+                            if (automaticLanguage) {
+                                return generateWithAutomaticLanguage();
+                            }
+                            if (PropertiesReader.getBooleanProperty("OCR_TILED", false)) {
+                                return generateTiled();
+                            }
+
+                            // Downscales and recompresses large images before they are uploaded.
+                            PreprocessResult preprocessResult = new ImagePreprocessor().preprocess(path);
+                            if (preprocessResult.isProcessed()) {
+                                publish("Reduced the image from " + preprocessResult.getOriginalBytes() / 1024 + "KB to "
+                                        + preprocessResult.getProcessedBytes() / 1024 + "KB in "
+                                        + preprocessResult.getElapsedMillis() + " ms. Processing the file...");
+                            } else {
+                                publish("Processing the file...");
+                            }
+
+                            try {
+                                OcrEngine ocrEngine = OcrEngines.getInstance().getDefault();
+                                model.setOcrObject(ocrEngine.uploadLocalImage(preprocessResult.getFile(), language,
+                                        view.getUnknownCheckBox().isSelected()));
+                            } finally {
+                                preprocessResult.deleteProcessedFile();
+                            }
+
+                            return model.getOcrObject();
+                        }
 
+                        /**
+                         * Generates the text of every page, reporting the pages as they are completed.
+                         * The language of a PDF file cannot be identified from a thumbnail, so automatic
+                         * language lets the server identify it instead.
+                         */
+                        private OCRObject generateForPdf() throws IOException {
+                            publish("Processing the pages of the file...");
+                            AtomicInteger completedPages = new AtomicInteger();
+                            PdfOCRHandler pdfOCRHandler = new PdfOCRHandler();
+                            model.setOcrObject(pdfOCRHandler.uploadPdf(path, language,
+                                    automaticLanguage || view.getUnknownCheckBox().isSelected(),
+                                    (page, pageCount) -> publish("Generated text for " + completedPages.incrementAndGet()
+                                            + " of " + pageCount + " pages...")));
+                            return model.getOcrObject();
+                        }
+
+                        /**
+                         * Generates the text in bands, sending only the bands that have not been read before.
+                         */
+                        private OCRObject generateTiled() throws IOException {
+                            publish("Processing the parts of the file...");
+                            model.setOcrObject(new TiledOCRHandler().uploadLocalImage(path, language,
+                                    view.getUnknownCheckBox().isSelected(), this::publish));
+                            return model.getOcrObject();
+                        }
+
+                        /**
+                         * Identifies the language from a first pass over a thumbnail, and generates the text with it.
+                         */
+                        private OCRObject generateWithAutomaticLanguage() throws IOException {
+                            publish("Processing a preview of the file...");
+                            AutoLanguageResult result = new AutoLanguageOCRHandler().uploadLocalImage(path, "eng", this::publish);
+                            if (result.isLanguageIdentified()) {
+                                identifiedLanguage = result.getDetectLanguageObject().getLanguage(false);
+                            }
+                            model.setOcrObject(result.getOcrObject());
                             return model.getOcrObject();
                         }
 
                         @Override
                         protected void process(List<String> chunks) {
-                            setStatusLabel("Processing the file...");
+                            setStatusLabel(chunks.get(chunks.size() - 1));
                         }
 
                         @Override
@@ -487,6 +498,15 @@ public class Controller {
                                     enableTranslationTab();
                                     setStatusLabel("Success. Processing time: " + ocrObject.getProcessingTime() + " ms.");
                                     model.setTRANSLATED(false);
+
+                                    // Some ranges of pages of a PDF file failed.
+                                    if (ocrObject.getOcrExitCode() == 2) {
+                                        setStatusLabel("Partial success. " + ocrObject.getErrorMessage());
+                                    }
+
+                                    if (identifiedLanguage != null) {
+                                        fillBoxesAsIdentifiedLanguage(identifiedLanguage);
+                                    }
                                 }
 
                             } catch (InterruptedException | ExecutionException e) {
@@ -494,7 +514,7 @@ public class Controller {
                             }
                         }
                     };
-                    worker.execute();
+                    execute(worker);
 
                 } else {
                     openUnsupportedFileDialog();
@@ -514,6 +534,11 @@ public class Controller {
         assert item != null;
         String selectedLanguage = item.getValue();
 
+        // Images behind a link are not downloaded, so the OCR API identifies their language itself.
+        boolean automaticLanguage = selectedLanguage.equals(AutoLanguageOCRHandler.AUTO_LANGUAGE);
+        String language = automaticLanguage ? "eng" : selectedLanguage;
+        boolean identifyLanguage = automaticLanguage || view.getUnknownCheckBox().isSelected();
+
         setStatusLabel("Initializing text generation for the provided url-link...");
 
         // Thread for handling the server communication and safely updating GUI throughout the process.
@@ -521,7 +546,7 @@ public class Controller {
             @Override
             protected OCRObject doInBackground() {
                 OCRHandler ocrHandler = new OCRHandler();
-                model.setOcrObject(ocrHandler.uploadURLImage(model.getUserFilePathInput(), selectedLanguage, view.getUnknownCheckBox().isSelected()));
+                model.setOcrObject(ocrHandler.uploadURLImage(model.getUserFilePathInput(), language, identifyLanguage));
                 publish();
 
                 return model.getOcrObject();
@@ -561,7 +586,7 @@ public class Controller {
             }
         };
 
-        worker.execute();
+        execute(worker);
     }
 
 
@@ -672,37 +697,46 @@ public class Controller {
      * Saves the user generated voice file with the name and location that the user has specified.
      */
     private void saveLocalVoiceFile() {
-        String pathToVoiceFile = "generated_voice/voice.wav";
-        JFileChooser fileChooser = new JFileChooser();
-        int result = fileChooser.showSaveDialog(view);
-
-        if (result == JFileChooser.APPROVE_OPTION) {
-            File file = fileChooser.getSelectedFile();
+        if (model.getVoiceOutput() == null) {
+            return;
+        }
+        // Kept while the dialog is open and the file is copied, even if a new voice is generated in the meantime.
+        VoiceOutput output = model.getVoiceOutput().retain();
+        try {
+            Path pathToVoiceFile = output.getFile();
+            JFileChooser fileChooser = new JFileChooser();
+            int result = fileChooser.showSaveDialog(view);
 
-            if (file == null) {
-                return;
-            }
+            if (result == JFileChooser.APPROVE_OPTION) {
+                File file = fileChooser.getSelectedFile();
 
-            // Handle .wav extension of filename based on how the user named the file that is to be saved.
-            if (!file.getName().toLowerCase().endsWith(".wav")) {
-                file = new File(file.getParentFile(), file.getName() + ".wav");
-            } else {
-                file = new File(file.getParentFile(), file.getName());
-            }
+                if (file == null) {
+                    return;
+                }
 
-            // Saves the file to specified directory.
-            try {
-                byte[] voiceBytes = Files.readAllBytes(Paths.get(pathToVoiceFile));
-                FileOutputStream fos = new FileOutputStream(file);
-                fos.write(voiceBytes, 0, voiceBytes.length);
-                fos.flush();
-                fos.close();
-                openSaveVoiceOKDialog();
+                // Handle .wav extension of filename based on how the user named the file that is to be saved.
+                if (!file.getName().toLowerCase().endsWith(".wav")) {
+                    file = new File(file.getParentFile(), file.getName() + ".wav");
+                } else {
+                    file = new File(file.getParentFile(), file.getName());
+                }
 
-            } catch (IOException e) {
-                e.printStackTrace();
-                openSaveVoiceFailedDialog();
+                // Saves the file to specified directory.
+                try {
+                    byte[] voiceBytes = Files.readAllBytes(pathToVoiceFile);
+                    FileOutputStream fos = new FileOutputStream(file);
+                    fos.write(voiceBytes, 0, voiceBytes.length);
+                    fos.flush();
+                    fos.close();
+                    openSaveVoiceOKDialog();
+
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    openSaveVoiceFailedDialog();
+                }
             }
+        } finally {
+            output.release();
         }
     }
 
@@ -757,7 +791,7 @@ public class Controller {
                     }
                 }
             };
-            worker.execute();
+            execute(worker);
 
         }
     }
@@ -811,128 +845,144 @@ public class Controller {
                 }
             }
         };
-        worker.execute();
+        execute(worker);
 
     }
 
     /**
      * Generates voice that reads out the current text in the JTextArea of the "Translation & Options"-tab.
      * The generation details - language and voice, are specified by the user.
+     * A long text is read out while its voice is being generated (see StreamingVoiceHandler).
      */
     private void generateVoice() {
         setStatusOptLabel("Generating voice for text...");
 
         // If user has selected a specific part to be generated to voice.
-        SwingWorker<Boolean, String> worker;
-        if (model.getUserMarkedTextAreaOpt() != null) {
-            worker = new SwingWorker<>() {
+        String text = model.getUserMarkedTextAreaOpt() != null ? model.getUserMarkedTextAreaOpt() : view.getTextAreaOpt().getText();
+        BoxItem selectedLanguage = (BoxItem) view.getTextLanguageBox().getSelectedItem();
+        BoxItem selectedVoice = (BoxItem) view.getSelectVoiceBox().getSelectedItem();
+        assert selectedLanguage != null;
+        assert selectedVoice != null;
+
+        StreamingVoiceHandler streamingVoiceHandler = new StreamingVoiceHandler(model.getAudioPlayer());
+        boolean streaming = PropertiesReader.getBooleanProperty("VOICE_STREAMING", true)
+                && streamingVoiceHandler.split(text).size() > 1;
+        if (streaming) {
+            model.setVoiceStream(streamingVoiceHandler);
+            view.getPlayVoiceButton().setEnabled(false);
+            view.getStopVoiceButton().setEnabled(true);
+        }
 
-                @Override
-                protected Boolean doInBackground() {
-                    VoiceHandler voiceHandler = new VoiceHandler();
-                    BoxItem selectedLanguage = (BoxItem) view.getTextLanguageBox().getSelectedItem();
-                    BoxItem selectedVoice = (BoxItem) view.getSelectVoiceBox().getSelectedItem();
-                    assert selectedLanguage != null;
-                    assert selectedVoice != null;
-                    return voiceHandler.voiceFormData(selectedLanguage.getValue(), selectedVoice.getValue(), model.getUserMarkedTextAreaOpt());
-                }
+        SwingWorker<VoiceOutput, String> worker = new SwingWorker<>() {
 
-                @Override
-                protected void done() {
+            @Override
+            protected VoiceOutput doInBackground() {
+                if (streaming) {
                     try {
-                        boolean success = get();
-                        if (success) {
-                            activateVoiceButtons();
-                            setStatusOptLabel("Successfully generated voice for text.");
-                        } else {
-                            deactivateVoiceButtons();
-                            openVoiceGenerationFailedDialog();
-                            resetStatusOptLabel();
+                        VoiceOutput output = VoiceOutputManager.getInstance().create();
+                        if (streamingVoiceHandler.speak(selectedLanguage.getValue(), selectedVoice.getValue(), text,
+                                output.getFile(), this::publish)) {
+                            return output;
                         }
-                    } catch (InterruptedException | ExecutionException e) {
+                        output.release();
+                    } catch (IOException e) {
                         e.printStackTrace();
-                        resetStatusOptLabel();
                     }
+                    return null;
                 }
-            };
+                VoiceHandler voiceHandler = new VoiceHandler();
+                return voiceHandler.voiceFormData(selectedLanguage.getValue(), selectedVoice.getValue(), text);
+            }
 
-            // If user has not selected a specific part to be generated to voice.
-        } else {
-            worker = new SwingWorker<>() {
+            @Override
+            protected void process(List<String> chunks) {
+                setStatusOptLabel(chunks.get(chunks.size() - 1));
+            }
 
-                @Override
-                protected Boolean doInBackground() {
-                    VoiceHandler voiceHandler = new VoiceHandler();
-                    BoxItem selectedLanguage = (BoxItem) view.getTextLanguageBox().getSelectedItem();
-                    BoxItem selectedVoice = (BoxItem) view.getSelectVoiceBox().getSelectedItem();
-                    assert selectedLanguage != null;
-                    assert selectedVoice != null;
-                    return voiceHandler.voiceFormData(selectedLanguage.getValue(), selectedVoice.getValue(), view.getTextAreaOpt().getText());
+            @Override
+            protected void done() {
+                if (streaming) {
+                    model.setVoiceStream(null);
+                    view.getStopVoiceButton().setEnabled(false);
                 }
-
-                @Override
-                protected void done() {
-                    try {
-                        boolean success = get();
-                        if (success) {
-                            activateVoiceButtons();
-                            setStatusOptLabel("Successfully generated voice for text.");
-                        } else {
-                            deactivateVoiceButtons();
-                            openVoiceGenerationFailedDialog();
-                            resetStatusOptLabel();
+                try {
+                    VoiceOutput output = get();
+                    if (output != null) {
+                        // The previous voice is deleted once it is no longer played.
+                        VoiceOutput previous = model.getVoiceOutput();
+                        model.setVoiceOutput(output);
+                        if (previous != null) {
+                            previous.release();
                         }
-                    } catch (InterruptedException | ExecutionException e) {
-                        e.printStackTrace();
+                        activateVoiceButtons();
+                        setStatusOptLabel(streaming ? "Read out the text." : "Successfully generated voice for text.");
+                    } else if (streamingVoiceHandler.isStopped()) {
+                        deactivateVoiceButtons();
+                        setStatusOptLabel("Stopped Voice.");
+                    } else {
+                        deactivateVoiceButtons();
+                        openVoiceGenerationFailedDialog();
+                        resetStatusOptLabel();
                     }
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                    resetStatusOptLabel();
                 }
-            };
-        }
-        worker.execute();
+            }
+        };
+        execute(worker);
 
     }
 
     /**
-     * Plays the sound file that reads out the text.
+     * Plays the sound file that reads out the text. While it plays, the button pauses and resumes it.
      */
     private void playVoice() {
-
-        setStatusOptLabel("Playing voice...");
-
-        SwingWorker<Clip, String> worker = new SwingWorker<>() {
-            final String voiceFile = "generated_voice/voice.wav";
-            File file;
-            Clip clip = null;
-
-            @Override
-            protected Clip doInBackground() {
-                try {
-                    file = new File(voiceFile);
-                    AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(file);
-                    clip = AudioSystem.getClip();
-                    clip.open(audioInputStream);
-
-                    model.setAUDIO_CLIP(clip);
-                    assert clip != null;
-
-                    clip.setFramePosition(0);
-                    clip.start();
-
-                    view.getPlayVoiceButton().setEnabled(false);
-                    view.getStopVoiceButton().setEnabled(true);
-                } catch (UnsupportedAudioFileException | IOException | LineUnavailableException e) {
-                    e.printStackTrace();
-                }
-                return clip;
+        AudioPlayer audioPlayer = model.getAudioPlayer();
+        if (audioPlayer.isPlaying()) {
+            if (audioPlayer.isPaused()) {
+                audioPlayer.resume();
+                view.getPlayVoiceButton().setText("Pause Voice");
+                setStatusOptLabel("Playing voice...");
+            } else {
+                audioPlayer.pause();
+                view.getPlayVoiceButton().setText("Resume Voice");
+                setStatusOptLabel("Paused voice.");
             }
+            return;
+        }
 
-            @Override
-            protected void done() {
-                setStatusOptLabel("Played voice.");
-            }
-        };
+        if (model.getVoiceOutput() == null) {
+            return;
+        }
+        // Kept while it plays, even if a new voice is generated in the meantime.
+        VoiceOutput output = model.getVoiceOutput().retain();
+        try {
+            audioPlayer.play(output.getFile()).whenComplete((ignored, throwable) -> {
+                output.release();
+                SwingUtilities.invokeLater(this::voicePlayed);
+            });
+            view.getPlayVoiceButton().setText("Pause Voice");
+            view.getStopVoiceButton().setEnabled(true);
+            setStatusOptLabel("Playing voice...");
+        } catch (UnsupportedAudioFileException | IOException | LineUnavailableException e) {
+            output.release();
+            e.printStackTrace();
+            resetStatusOptLabel();
+        }
+    }
 
-        worker.execute();
+    /**
+     * Resets the voice buttons when the sound file has been played to the end or was stopped.
+     */
+    private void voicePlayed() {
+        view.getPlayVoiceButton().setText("Play Voice");
+        // The player is taken over while a text is read out, and Stop Voice is still enabled unless playback
+        // was stopped by the user.
+        if (model.getVoiceStream() == null && view.getStopVoiceButton().isEnabled()) {
+            view.getStopVoiceButton().setEnabled(false);
+            setStatusOptLabel("Played voice.");
+        }
     }
 
     /**
@@ -940,21 +990,13 @@ public class Controller {
      */
     private void stopVoice() {
         setStatusOptLabel("Stopped Voice.");
-        SwingWorker<String, String> worker = new SwingWorker<>() {
-            @Override
-            protected String doInBackground() {
-                view.getPlayVoiceButton().setEnabled(true);
-                view.getStopVoiceButton().setEnabled(false);
-
-                if (model.getAUDIO_CLIP() != null && model.getAUDIO_CLIP().isActive()) {
-                    model.getAUDIO_CLIP().stop();
-                    model.getAUDIO_CLIP().close();
-                }
-                return null;
-            }
-        };
+        view.getPlayVoiceButton().setEnabled(true);
+        view.getStopVoiceButton().setEnabled(false);
 
-        worker.execute();
+        if (model.getVoiceStream() != null) {
+            model.getVoiceStream().stop();
+        }
+        model.getAudioPlayer().stop();
     }
 
     /**
@@ -963,43 +1005,16 @@ public class Controller {
      * @param detectLanguageCode language code for Detect Language API.
      */
     private void fillBoxesAsIdentifiedLanguage(String detectLanguageCode) {
-        LanguageCodeMapper languageCodeMapper = new LanguageCodeMapper();
-
-        // Get the VoiceRSS language code of the detected language.
-        String voiceCode = languageCodeMapper.getDetectLanguageToVoiceCode(detectLanguageCode);
-
-        if (voiceCode.equals("Unsupported Code Conversion.")) {
-            System.out.println("Unsupported Language Code Conversion from DetectLanguage code to VoiceRSS code.");
-        } else {
+        LanguageRegistry.Language language = LanguageRegistry.getInstance().fromDetectCode(detectLanguageCode);
 
-            // Find and select the detected language in textLanguageBox.
-            int size = view.getTextLanguageBox().getItemCount();
-            for (int i = 0; i < size; i++) {
-                BoxItem boxItem = view.getTextLanguageBox().getItemAt(i);
-                if (boxItem.getValue().equals(voiceCode)) {
-                    view.getTextLanguageBox().setSelectedIndex(i);
-                    break;
-                }
-            }
+        if (language == null) {
+            System.out.println("Unsupported Language Code Conversion from DetectLanguage code " + detectLanguageCode + ".");
+            return;
         }
 
-        // Get the Google Translate language code of the detected language.
-        String translateCode = languageCodeMapper.getDetectLanguageToTranslateCode(detectLanguageCode);
-
-        if (translateCode.equals("Unsupported Code Conversion.")) {
-            System.out.println("Unsupported Language Code Conversion from DetectLanguage code to Google Translate code.");
-        } else {
-
-            // Find and select the detected language in translateFromBox.
-            int size = view.getTranslateFromBox().getItemCount();
-            for (int i = 0; i < size; i++) {
-                BoxItem boxItem = view.getTranslateFromBox().getItemAt(i);
-                if (boxItem.getValue().equals(translateCode)) {
-                    view.getTranslateFromBox().setSelectedIndex(i);
-                    break;
-                }
-            }
-        }
+        // The boxes are filled in the order of the registry.
+        view.getTextLanguageBox().setSelectedIndex(language.getDefaultVoiceLocale().getIndex());
+        view.getTranslateFromBox().setSelectedIndex(language.getIndex());
     }
 
     /**
@@ -1013,6 +1028,19 @@ public class Controller {
     }
 
 
+    /**
+     * Starts a background worker. In virtual execution mode (see ExecutionManager), the worker runs on its
+     * own virtual thread instead of SwingWorker's small shared thread pool.
+     * @param worker to be started.
+     */
+    private void execute(SwingWorker<?, ?> worker) {
+        if (ExecutionManager.getInstance().isVirtualThreads()) {
+            ExecutionManager.getInstance().getExecutor().execute(worker);
+        } else {
+            worker.execute();
+        }
+    }
+
     /**
      * Resetting and setting status labels in the GUI.
      */
@@ -1264,11 +1292,6 @@ public class Controller {
                 "Make sure that the file exists at the specified location.", "Invalid file detected", JOptionPane.INFORMATION_MESSAGE);
     }
 
-    private void openTooLargeFileSizeDialog() {
-        JOptionPane.showMessageDialog(view, "This file exceeds the 1 MB (1024 KB) limit for " +
-                "generating text from file. \nPlease choose a smaller file.", "Too large file", JOptionPane.INFORMATION_MESSAGE);
-    }
-
     private void openCustomOCRErrorDialog(OCRObject ocrObject) {
         JOptionPane.showMessageDialog(view, ocrObject.getErrorMessage() + "\n" + "OCR Exit Code: "
                 + ocrObject.getOcrExitCode() + "\n" + ocrObject.getErrorDetails(), "OCR API: Processing error", JOptionPane.INFORMATION_MESSAGE);
@@ -2,8 +2,10 @@ package org.imagetextapp.gui;
 
 import org.imagetextapp.apis.ocr.OCRObject;
 import org.imagetextapp.apis.translate.TranslateObject;
+import org.imagetextapp.apis.voicerss.StreamingVoiceHandler;
+import org.imagetextapp.apis.voicerss.VoiceOutput;
+import org.imagetextapp.utility.AudioPlayer;
 
-import javax.sound.sampled.Clip;
 import java.io.File;
 
 /**
@@ -21,7 +23,9 @@ public class Model {
     private File selectedFile;
     private OCRObject ocrObject;
     private TranslateObject translateObject;
-    private Clip AUDIO_CLIP;
+    private VoiceOutput voiceOutput;
+    private final AudioPlayer audioPlayer = new AudioPlayer();
+    private volatile StreamingVoiceHandler voiceStream;
 
     private boolean TRANSLATED = false;
 
@@ -85,12 +89,33 @@ public class Model {
         this.translateObject = translateObject;
     }
 
-    public Clip getAUDIO_CLIP() {
-        return AUDIO_CLIP;
+    /**
+     * @return the last generated voice, or null.
+     */
+    public VoiceOutput getVoiceOutput() {
+        return voiceOutput;
     }
 
-    public void setAUDIO_CLIP(Clip AUDIO_CLIP) {
-        this.AUDIO_CLIP = AUDIO_CLIP;
+    public void setVoiceOutput(VoiceOutput voiceOutput) {
+        this.voiceOutput = voiceOutput;
+    }
+
+    /**
+     * @return the player of the voice, shared by the voice file and the text that is being read out.
+     */
+    public AudioPlayer getAudioPlayer() {
+        return audioPlayer;
+    }
+
+    /**
+     * @return the text that is being read out while its voice is generated, or null.
+     */
+    public StreamingVoiceHandler getVoiceStream() {
+        return voiceStream;
+    }
+
+    public void setVoiceStream(StreamingVoiceHandler voiceStream) {
+        this.voiceStream = voiceStream;
     }
 
     public boolean isTRANSLATED() {
@@ -101,8 +126,4 @@ public class Model {
         this.TRANSLATED = TRANSLATED;
     }
 
-    public int getFILE_SIZE_LIMIT() {
-        return 1024;
-    }
-
 }
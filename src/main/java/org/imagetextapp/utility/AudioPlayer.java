@@ -0,0 +1,401 @@
+package org.imagetextapp.utility;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Plays audio by streaming it through a SourceDataLine, instead of decoding a whole file into a Clip.
+ *
+ * Audio is read from a .wav file or from any channel (e.g. the voice of a text that is still being generated)
+ * into a small buffer of AUDIO_PLAYER_BUFFER_MS milliseconds (default 200), which is written to the line as
+ * the line has room for it. Memory use therefore does not depend on the length of the audio, and playback
+ * starts at once. The buffer and the line are reused by the next play with the same format.
+ *
+ * Playback runs in the background and can be paused, resumed, moved to another position (files only) and
+ * stopped. Only one audio plays at a time: playing new audio stops the current one.
+ */
+public class AudioPlayer {
+
+    private static final long POLL_MILLIS = 10;
+
+    // Chunk ids of .wav files, as read from the file in little-endian order.
+    private static final int RIFF = 0x46464952;
+    private static final int WAVE = 0x45564157;
+    private static final int DATA = 0x61746164;
+
+    private final int bufferMillis;
+    private final Object lock = new Object();
+
+    // Reused across plays; only touched by the playback thread and by play, which waits for that thread.
+    private ByteBuffer buffer;
+    private SourceDataLine line;
+
+    private CompletableFuture<Void> playback = CompletableFuture.completedFuture(null);
+    private volatile SourceDataLine activeLine;
+    private volatile AudioFormat format;
+    private volatile boolean playing = false;
+    private volatile boolean paused = false;
+    private volatile boolean stopped = false;
+    private volatile long seekFrame = -1;
+    private volatile long frameOffset = 0;
+    private volatile long frameLength = AudioSystem.NOT_SPECIFIED;
+
+    public AudioPlayer() {
+        this((int) PropertiesReader.getLongProperty("AUDIO_PLAYER_BUFFER_MS", 200));
+    }
+
+    /**
+     * @param bufferMillis length of the audio that is buffered ahead of the line.
+     */
+    public AudioPlayer(int bufferMillis) {
+        this.bufferMillis = Math.max(10, bufferMillis);
+    }
+
+    /**
+     * Starts playing a .wav file from the beginning.
+     * @param wavFile file to be played.
+     * @return future that completes when the file has been played to the end or playback was stopped.
+     * @throws IOException if the file cannot be read.
+     * @throws UnsupportedAudioFileException if the file is not an audio file.
+     * @throws LineUnavailableException if there is no audio output for the format of the file.
+     */
+    public synchronized CompletableFuture<Void> play(Path wavFile)
+            throws IOException, UnsupportedAudioFileException, LineUnavailableException {
+        AudioFileFormat fileFormat = AudioSystem.getAudioFileFormat(wavFile.toFile());
+        AudioFormat audioFormat = fileFormat.getFormat();
+        long frames = fileFormat.getFrameLength();
+
+        // Uncompressed audio is read straight from the file, which makes it possible to seek.
+        if (isPcm(audioFormat) && frames != AudioSystem.NOT_SPECIFIED) {
+            FileChannel channel = FileChannel.open(wavFile, StandardOpenOption.READ);
+            long dataOffset;
+            try {
+                dataOffset = findDataChunk(channel);
+            } catch (IOException e) {
+                closeQuietly(channel);
+                throw e;
+            }
+            if (dataOffset >= 0) {
+                channel.position(dataOffset);
+                return start(audioFormat, channel, dataOffset, frames);
+            }
+            closeQuietly(channel);
+        }
+
+        AudioFormat pcmFormat = new AudioFormat(audioFormat.getSampleRate(), 16, audioFormat.getChannels(), true, false);
+        AudioInputStream pcm = AudioSystem.getAudioInputStream(pcmFormat,
+                AudioSystem.getAudioInputStream(new BufferedInputStream(Files.newInputStream(wavFile))));
+        return start(pcmFormat, Channels.newChannel(pcm), -1, AudioSystem.NOT_SPECIFIED);
+    }
+
+    /**
+     * Starts playing raw audio from a channel until the channel ends. Seeking is not possible.
+     * @param audioFormat format of the audio, which must be PCM.
+     * @param channel that the audio is read from, closed at the end.
+     * @return future that completes when the channel has been played to the end or playback was stopped.
+     * @throws LineUnavailableException if there is no audio output for the format.
+     */
+    public synchronized CompletableFuture<Void> play(AudioFormat audioFormat, ReadableByteChannel channel)
+            throws LineUnavailableException {
+        return start(audioFormat, channel, -1, AudioSystem.NOT_SPECIFIED);
+    }
+
+    private CompletableFuture<Void> start(AudioFormat audioFormat, ReadableByteChannel channel, long dataOffset,
+                                          long frames) throws LineUnavailableException {
+        stop();
+        playback.join();
+
+        int frameSize = audioFormat.getFrameSize();
+        int bufferFrames = (int) Math.max(1, audioFormat.getFrameRate() * bufferMillis / 1000);
+        try {
+            if (line == null || !line.isOpen() || !line.getFormat().matches(audioFormat)) {
+                if (line != null) {
+                    line.close();
+                }
+                line = AudioSystem.getSourceDataLine(audioFormat);
+                line.open(audioFormat, bufferFrames * frameSize);
+            }
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            line = null;
+            closeQuietly(channel);
+            throw e instanceof LineUnavailableException ? (LineUnavailableException) e
+                    : new LineUnavailableException(e.getMessage());
+        }
+        if (buffer == null || buffer.capacity() < bufferFrames * frameSize) {
+            buffer = ByteBuffer.allocate(bufferFrames * frameSize);
+        }
+        buffer.clear().limit(bufferFrames * frameSize);
+
+        synchronized (lock) {
+            format = audioFormat;
+            frameLength = frames;
+            frameOffset = -line.getLongFramePosition();
+            seekFrame = -1;
+            paused = false;
+            stopped = false;
+            playing = true;
+            activeLine = line;
+        }
+
+        SourceDataLine playbackLine = line;
+        ByteBuffer playbackBuffer = buffer;
+        long dataEnd = dataOffset < 0 ? -1 : dataOffset + frames * frameSize;
+        playback = CompletableFuture.runAsync(() -> run(playbackLine, playbackBuffer, channel, dataOffset, dataEnd),
+                ExecutionManager.getInstance().getExecutor());
+        return playback;
+    }
+
+    /**
+     * Moves data from the channel through the buffer to the line, without ever blocking on the line, so pause,
+     * seek and stop take effect within a few milliseconds. For a file, only the audio from dataOffset up to
+     * dataEnd is played, so chunks after the audio (e.g. metadata) are not.
+     */
+    private void run(SourceDataLine playbackLine, ByteBuffer playbackBuffer, ReadableByteChannel channel,
+                     long dataOffset, long dataEnd) {
+        int frameSize = playbackLine.getFormat().getFrameSize();
+        long framesWritten = playbackLine.getLongFramePosition();
+        boolean endOfAudio = false;
+
+        try {
+            playbackLine.start();
+            while (!stopped) {
+                long seek = seekFrame;
+                if (seek >= 0 && channel instanceof FileChannel) {
+                    seekFrame = -1;
+                    playbackLine.stop();
+                    playbackLine.flush();
+                    ((FileChannel) channel).position(dataOffset + seek * frameSize);
+                    playbackBuffer.clear();
+                    endOfAudio = false;
+                    framesWritten = playbackLine.getLongFramePosition();
+                    frameOffset = seek - framesWritten;
+                    if (!paused) {
+                        playbackLine.start();
+                    }
+                }
+
+                if (!endOfAudio && playbackBuffer.hasRemaining()) {
+                    endOfAudio = dataEnd >= 0 ? readData((FileChannel) channel, playbackBuffer, dataEnd)
+                            : channel.read(playbackBuffer) < 0;
+                }
+
+                playbackBuffer.flip();
+                int writable = Math.min(playbackBuffer.remaining(), paused ? 0 : playbackLine.available());
+                writable -= writable % frameSize;
+                if (writable > 0) {
+                    playbackLine.write(playbackBuffer.array(), playbackBuffer.position(), writable);
+                    playbackBuffer.position(playbackBuffer.position() + writable);
+                    framesWritten += writable / frameSize;
+                }
+                playbackBuffer.compact();
+
+                // At the end, wait until the line has played everything that was written to it.
+                boolean drained = endOfAudio && playbackBuffer.position() < frameSize
+                        && playbackLine.getLongFramePosition() >= framesWritten;
+                if (drained) {
+                    break;
+                }
+                if (writable == 0) {
+                    synchronized (lock) {
+                        if (!stopped && seekFrame < 0) {
+                            lock.wait(paused ? 0 : POLL_MILLIS);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("An error occurred while trying to play the audio.");
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            playbackLine.stop();
+            playbackLine.flush();
+            closeQuietly(channel);
+            playing = false;
+            activeLine = null;
+        }
+    }
+
+    public void pause() {
+        synchronized (lock) {
+            if (playing && !paused) {
+                paused = true;
+                SourceDataLine currentLine = activeLine;
+                if (currentLine != null) {
+                    currentLine.stop();
+                }
+            }
+        }
+    }
+
+    public void resume() {
+        synchronized (lock) {
+            if (playing && paused) {
+                paused = false;
+                SourceDataLine currentLine = activeLine;
+                if (currentLine != null) {
+                    currentLine.start();
+                }
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Moves playback to a position. Only possible while a file is played.
+     * @param millis position from the beginning of the audio.
+     */
+    public void seek(long millis) {
+        AudioFormat currentFormat = format;
+        if (!playing || currentFormat == null) {
+            return;
+        }
+        long frame = (long) (millis * currentFormat.getFrameRate() / 1000);
+        if (frameLength != AudioSystem.NOT_SPECIFIED) {
+            frame = Math.min(frame, frameLength);
+        }
+        synchronized (lock) {
+            seekFrame = Math.max(0, frame);
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Stops playback. The future returned by play completes shortly after.
+     */
+    public void stop() {
+        synchronized (lock) {
+            stopped = true;
+            SourceDataLine currentLine = activeLine;
+            if (currentLine != null) {
+                currentLine.stop();
+                currentLine.flush();
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Releases the audio output. The player can still be used afterwards.
+     */
+    public synchronized void close() {
+        stop();
+        playback.join();
+        if (line != null) {
+            line.close();
+            line = null;
+        }
+        buffer = null;
+    }
+
+    /**
+     * @return true from the start of play until the audio has ended or was stopped, also while paused.
+     */
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    public boolean isPaused() {
+        return playing && paused;
+    }
+
+    /**
+     * @return position of the audio that is heard right now.
+     */
+    public long getPositionMillis() {
+        SourceDataLine currentLine = activeLine;
+        AudioFormat currentFormat = format;
+        if (currentLine == null || currentFormat == null) {
+            return 0;
+        }
+        return (long) ((frameOffset + currentLine.getLongFramePosition()) * 1000 / currentFormat.getFrameRate());
+    }
+
+    /**
+     * @return length of the audio that is played, or -1 if it is not known (e.g. for a channel).
+     */
+    public long getDurationMillis() {
+        AudioFormat currentFormat = format;
+        if (currentFormat == null || frameLength == AudioSystem.NOT_SPECIFIED) {
+            return -1;
+        }
+        return (long) (frameLength * 1000 / currentFormat.getFrameRate());
+    }
+
+    /**
+     * Reads audio from the file into the buffer, but not past the end of the audio.
+     * @return true if the end of the audio has been reached.
+     */
+    private boolean readData(FileChannel channel, ByteBuffer playbackBuffer, long dataEnd) throws IOException {
+        long left = dataEnd - channel.position();
+        if (left <= 0) {
+            return true;
+        }
+        int limit = playbackBuffer.limit();
+        if (playbackBuffer.remaining() > left) {
+            playbackBuffer.limit(playbackBuffer.position() + (int) left);
+        }
+        int read = channel.read(playbackBuffer);
+        playbackBuffer.limit(limit);
+        return read < 0;
+    }
+
+    /**
+     * Finds the audio of a .wav file by walking its RIFF chunks, as other chunks (e.g. LIST metadata) may come
+     * before or after it.
+     * @return position of the first byte of the audio, or -1 if the file has no data chunk.
+     */
+    static long findDataChunk(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        channel.position(0);
+        if (channel.read(header) < 12 || header.getInt(0) != RIFF || header.getInt(8) != WAVE) {
+            return -1;
+        }
+
+        long position = 12;
+        ByteBuffer chunkHeader = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        while (position + 8 <= channel.size()) {
+            chunkHeader.clear();
+            channel.position(position);
+            if (channel.read(chunkHeader) < 8) {
+                return -1;
+            }
+            if (chunkHeader.getInt(0) == DATA) {
+                return position + 8;
+            }
+            // Chunks start at even positions, so a chunk of odd size is followed by a pad byte.
+            long size = Integer.toUnsignedLong(chunkHeader.getInt(4));
+            position += 8 + size + (size & 1);
+        }
+        return -1;
+    }
+
+    private boolean isPcm(AudioFormat audioFormat) {
+        return audioFormat.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED)
+                || audioFormat.getEncoding().equals(AudioFormat.Encoding.PCM_UNSIGNED);
+    }
+
+    private void closeQuietly(ReadableByteChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.imagetextapp.utility;
+
+/**
+ * Stops requests to a service that keeps failing, so callers fail fast instead of waiting for timeouts and
+ * retries while the provider is down.
+ *
+ * The breaker opens after a number of consecutive failures. While it is open every request is rejected. After
+ * the open period a single trial request is let through (half-open): if it succeeds the breaker closes again,
+ * otherwise it stays open for another period.
+ *
+ * Configured per service through <SERVICE>_CIRCUIT_FAILURE_THRESHOLD (default 5) and <SERVICE>_CIRCUIT_OPEN_MS
+ * (default 30000), e.g. OCR_CIRCUIT_FAILURE_THRESHOLD.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAt = 0;
+    private boolean trialInFlight = false;
+
+    /**
+     * @param failureThreshold consecutive failures after which the breaker opens.
+     * @param openMillis how long the breaker stays open before a trial request is let through.
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * @param serviceType service whose keys are read.
+     * @return the breaker configured for the service.
+     */
+    public static CircuitBreaker fromProperties(ServiceType serviceType) {
+        return new CircuitBreaker(
+                (int) PropertiesReader.getLongProperty(serviceType.getPropertyKey("CIRCUIT_FAILURE_THRESHOLD"), 5),
+                PropertiesReader.getLongProperty(serviceType.getPropertyKey("CIRCUIT_OPEN_MS"), 30_000));
+    }
+
+    /**
+     * @return true if a request may be sent. Every allowed request must be followed by recordSuccess, recordFailure
+     * or releaseTrial.
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt < openMillis) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialInFlight = true;
+                return true;
+            default:
+                // Half-open: only one trial request at a time.
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        trialInFlight = false;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Gives up an allowed request without an outcome, e.g. because the caller was interrupted, so that a
+     * half-open breaker lets the next trial request through.
+     */
+    public synchronized void releaseTrial() {
+        trialInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return milliseconds until a trial request will be let through, or 0 if requests are allowed.
+     */
+    public synchronized long getRemainingOpenMillis() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, openMillis - (System.currentTimeMillis() - openedAt));
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CircuitBreaker{" +
+                "state=" + state +
+                ", consecutiveFailures=" + consecutiveFailures +
+                '}';
+    }
+}
@@ -0,0 +1,16 @@
+package org.imagetextapp.utility;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of sending a request while the circuit breaker of the service is open.
+ */
+public class CircuitOpenException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CircuitOpenException(ServiceType serviceType, long remainingMillis) {
+        super("The " + serviceType + " service is unavailable, requests are paused for another "
+                + remainingMillis + " ms.");
+    }
+}
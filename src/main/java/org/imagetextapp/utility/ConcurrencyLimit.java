@@ -0,0 +1,96 @@
+package org.imagetextapp.utility;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Limits how many calls to a service may run at once, for blocking and non-blocking callers alike.
+ *
+ * A caller takes a permit before the call and releases it when the call is done. When no permit is left, a
+ * blocking caller waits for one, and a non-blocking caller gets a future that completes when one is handed to it.
+ * Waiting callers of both kinds are served first come, first served.
+ */
+public class ConcurrencyLimit {
+
+    private final Queue<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+    private int available;
+
+    /**
+     * @param permits number of calls that may run at once.
+     */
+    public ConcurrencyLimit(int permits) {
+        this.available = Math.max(1, permits);
+    }
+
+    /**
+     * Takes a permit, waiting until one is available.
+     * @throws InterruptedException if interrupted while waiting. No permit is taken then.
+     */
+    public void acquire() throws InterruptedException {
+        CompletableFuture<Void> permit = acquireAsync();
+        try {
+            permit.get();
+        } catch (InterruptedException e) {
+            // The permit may have been handed over just now; if so, give it back.
+            if (!permit.cancel(false)) {
+                release();
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Non-blocking version of acquire.
+     * @return future that completes when the permit is taken. Cancelling it gives up the place in the queue.
+     */
+    public CompletableFuture<Void> acquireAsync() {
+        synchronized (this) {
+            if (available > 0) {
+                available--;
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> permit = new CompletableFuture<>();
+            waiting.add(permit);
+            return permit;
+        }
+    }
+
+    /**
+     * Returns a permit, handing it to the first waiting caller if there is one.
+     */
+    public void release() {
+        while (true) {
+            CompletableFuture<Void> next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) {
+                    available++;
+                    return;
+                }
+            }
+            // Completed outside the lock, since the waiting caller may continue on this thread.
+            if (next.complete(null)) {
+                return;
+            }
+            // The caller gave up waiting; try the next one.
+        }
+    }
+
+    /**
+     * @return number of calls that may start right now.
+     */
+    public synchronized int getAvailablePermits() {
+        return available;
+    }
+
+    /**
+     * @return number of callers that are waiting for a permit.
+     */
+    public synchronized int getWaiting() {
+        return (int) waiting.stream().filter(permit -> !permit.isDone()).count();
+    }
+}
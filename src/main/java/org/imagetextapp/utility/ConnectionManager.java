@@ -1,13 +1,22 @@
 package org.imagetextapp.utility;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Makes the connections for the various APIs that are used.
+ * All requests share the long-lived client of HttpClientManager, so connections are reused.
+ * Every request is available both as a blocking call and as a non-blocking call returning a CompletableFuture.
+ * Responses are returned as streams, so that they can be parsed or decoded while they are being received.
+ *
+ * Requests are retried and guarded by a circuit breaker per service (see ResilientSender). If a request
+ * still fails, the error is printed and the response is null (or the future completes with null).
  */
 public class ConnectionManager {
 
@@ -16,26 +25,19 @@ public class ConnectionManager {
      * @param multiPartBody multipart/form-data parameters for the file request to OCR API.
      * @return response from the OCR API.
      */
-    public HttpResponse<String> makeOCRRequest(MultiPartBody multiPartBody) {
-        final String OCR_URL = "https://api.ocr.space/parse/image";
-        HttpClient client = HttpClient.newHttpClient();
-        HttpResponse<String> response = null;
-
-        HttpRequest request = HttpRequest.newBuilder()
-                .header("Content-Type", "multipart/form-data; boundary=" + multiPartBody.getBoundary())
-                .header("apikey", PropertiesReader.getProperty("OCR_APIKEY"))
-                .uri(URI.create(OCR_URL))
-                .POST(multiPartBody.build())
-                .build();
-
-        try {
-            response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    public HttpResponse<InputStream> makeOCRRequest(MultiPartBody multiPartBody) {
+        return send(ServiceType.OCR, buildOCRRequest(multiPartBody), HttpResponse.BodyHandlers.ofInputStream(),
+                "An error occurred while trying to make an OCR request.");
+    }
 
-        } catch (IOException | InterruptedException e) {
-            System.out.println("An error occurred while trying to make an OCR request.");
-            e.printStackTrace();
-        }
-        return response;
+    /**
+     *
+     * @param multiPartBody multipart/form-data parameters for the file request to OCR API.
+     * @return future response from the OCR API.
+     */
+    public CompletableFuture<HttpResponse<InputStream>> makeOCRRequestAsync(MultiPartBody multiPartBody) {
+        return sendAsync(ServiceType.OCR, buildOCRRequest(multiPartBody), HttpResponse.BodyHandlers.ofInputStream(),
+                "An error occurred while trying to make an OCR request.");
     }
 
     /**
@@ -43,28 +45,39 @@ public class ConnectionManager {
      * @param query text to be identified by Detect Language API in the query.
      * @return response from the Detect Language API.
      */
-    public HttpResponse<String> makeDetectLanguageRequest(String query) {
-        StringManager stringManager = new StringManager();
-        final String noParamsURL = "https://ws.detectlanguage.com/0.2/detect";
-
-        String DETECT_LANGUAGE_URL = stringManager.getDetectLanguageParameterizedURL(noParamsURL, query);
-        HttpClient client = HttpClient.newHttpClient();
-        HttpResponse<String> response = null;
+    public HttpResponse<InputStream> makeDetectLanguageRequest(String query) {
+        return send(ServiceType.DETECT_LANGUAGE, buildDetectLanguageRequest(query), HttpResponse.BodyHandlers.ofInputStream(),
+                "An error occurred while trying to make a DetectLanguage request.");
+    }
 
-        HttpRequest request = HttpRequest.newBuilder()
-                .header("Authorization", "Bearer " + PropertiesReader.getProperty("DETECT_LANGUAGE_APIKEY"))
-                .uri(URI.create(DETECT_LANGUAGE_URL))
-                .POST(HttpRequest.BodyPublishers.noBody())
-                .build();
+    /**
+     *
+     * @param query text to be identified by Detect Language API in the query.
+     * @return future response from the Detect Language API.
+     */
+    public CompletableFuture<HttpResponse<InputStream>> makeDetectLanguageRequestAsync(String query) {
+        return sendAsync(ServiceType.DETECT_LANGUAGE, buildDetectLanguageRequest(query), HttpResponse.BodyHandlers.ofInputStream(),
+                "An error occurred while trying to make a DetectLanguage request.");
+    }
 
-        try {
-            response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    /**
+     *
+     * @param queries texts to be identified by Detect Language API in a single request.
+     * @return response from the Detect Language API, with the detections of every text.
+     */
+    public HttpResponse<InputStream> makeDetectLanguageRequest(List<String> queries) {
+        return send(ServiceType.DETECT_LANGUAGE, buildDetectLanguageRequest(queries), HttpResponse.BodyHandlers.ofInputStream(),
+                "An error occurred while trying to make a DetectLanguage request.");
+    }
 
-        } catch (IOException | InterruptedException e) {
-            System.out.println("An error occurred while trying to make a DetectLanguage request.");
-            e.printStackTrace();
-        }
-        return response;
+    /**
+     *
+     * @param queries texts to be identified by Detect Language API in a single request.
+     * @return future response from the Detect Language API, with the detections of every text.
+     */
+    public CompletableFuture<HttpResponse<InputStream>> makeDetectLanguageRequestAsync(List<String> queries) {
+        return sendAsync(ServiceType.DETECT_LANGUAGE, buildDetectLanguageRequest(queries), HttpResponse.BodyHandlers.ofInputStream(),
+                "An error occurred while trying to make a DetectLanguage request.");
     }
 
     /**
@@ -72,56 +85,148 @@ public class ConnectionManager {
      * @param query text together with required fields for the Translate API.
      * @return response from the Translate API.
      */
-    public HttpResponse<String> makeTranslateRequest(String query) {
-        final String TRANSLATE_URL = "https://google-translate20.p.rapidapi.com/translate";
+    public HttpResponse<InputStream> makeTranslateRequest(String query) {
+        return send(ServiceType.TRANSLATE, buildTranslateRequest(query), HttpResponse.BodyHandlers.ofInputStream(),
+                "An error occurred while trying to make a Translate request.");
+    }
+
+    /**
+     *
+     * @param query text together with required fields for the Translate API.
+     * @return future response from the Translate API.
+     */
+    public CompletableFuture<HttpResponse<InputStream>> makeTranslateRequestAsync(String query) {
+        return sendAsync(ServiceType.TRANSLATE, buildTranslateRequest(query), HttpResponse.BodyHandlers.ofInputStream(),
+                "An error occurred while trying to make a Translate request.");
+    }
 
-        HttpClient client = HttpClient.newHttpClient();
-        HttpResponse<String> response = null;
+    /**
+     *
+     * @param multiPartBody multipart/form-data parameters for the text-to-speech request to Voice RSS API.
+     * @return response from the Voice RSS API.
+     */
+    public HttpResponse<InputStream> makeGetVoiceRequestForm(MultiPartBody multiPartBody) {
+        return send(ServiceType.VOICE, buildVoiceRequest(multiPartBody), HttpResponse.BodyHandlers.ofInputStream(),
+                "An error occurred while trying to make a VoiceRSS request.");
+    }
 
-        HttpRequest request = HttpRequest.newBuilder()
+    /**
+     *
+     * @param multiPartBody multipart/form-data parameters for the text-to-speech request to Voice RSS API.
+     * @return future response from the Voice RSS API.
+     */
+    public CompletableFuture<HttpResponse<InputStream>> makeGetVoiceRequestFormAsync(MultiPartBody multiPartBody) {
+        return sendAsync(ServiceType.VOICE, buildVoiceRequest(multiPartBody), HttpResponse.BodyHandlers.ofInputStream(),
+                "An error occurred while trying to make a VoiceRSS request.");
+    }
+
+    private HttpRequest buildOCRRequest(MultiPartBody multiPartBody) {
+        HttpRequest.BodyPublisher body = buildMultiPartBody(multiPartBody, "An error occurred while trying to make an OCR request.");
+        if (body == null) {
+            return null;
+        }
+        return HttpClientManager.getInstance().newRequestBuilder(URI.create(ServiceType.OCR.getUrl()))
+                .header("Content-Type", "multipart/form-data; boundary=" + multiPartBody.getBoundary())
+                .header("apikey", PropertiesReader.getProperty("OCR_APIKEY"))
+                .POST(body)
+                .build();
+    }
+
+    private HttpRequest buildDetectLanguageRequest(String query) {
+        StringManager stringManager = new StringManager();
+        String url = stringManager.getDetectLanguageParameterizedURL(ServiceType.DETECT_LANGUAGE.getUrl(), query);
+
+        return HttpClientManager.getInstance().newRequestBuilder(URI.create(url))
+                .header("Authorization", "Bearer " + PropertiesReader.getProperty("DETECT_LANGUAGE_APIKEY"))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+
+    private HttpRequest buildDetectLanguageRequest(List<String> queries) {
+        StringManager stringManager = new StringManager();
+
+        // Sent as a form, since many texts would not fit in the URL.
+        return HttpClientManager.getInstance().newRequestBuilder(URI.create(ServiceType.DETECT_LANGUAGE.getUrl()))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .header("Authorization", "Bearer " + PropertiesReader.getProperty("DETECT_LANGUAGE_APIKEY"))
+                .POST(HttpRequest.BodyPublishers.ofString(stringManager.getDetectLanguageBatchForm(queries)))
+                .build();
+    }
+
+    private HttpRequest buildTranslateRequest(String query) {
+        return HttpClientManager.getInstance().newRequestBuilder(URI.create(ServiceType.TRANSLATE.getUrl()))
                 .header("Content-Type", "application/x-www-form-urlencoded")
                 .header("Accept-Encoding", "application/gzip")
                 .header("x-rapidapi-key", PropertiesReader.getProperty("X_RAPIDAPI_KEY"))
                 .header("x-rapidapi-host", PropertiesReader.getProperty("X_RAPIDAPI_HOST"))
                 .header("useQueryString", "true")
-                .uri(URI.create(TRANSLATE_URL))
                 .POST(HttpRequest.BodyPublishers.ofString(query))
                 .build();
+    }
 
-        try {
-            response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    private HttpRequest buildVoiceRequest(MultiPartBody multiPartBody) {
+        HttpRequest.BodyPublisher body = buildMultiPartBody(multiPartBody, "An error occurred while trying to make a VoiceRSS request.");
+        if (body == null) {
+            return null;
+        }
+        return HttpClientManager.getInstance().newRequestBuilder(URI.create(ServiceType.VOICE.getUrl()))
+                .header("Content-Type", "multipart/form-data; boundary=" + multiPartBody.getBoundary())
+                .POST(body)
+                .build();
+    }
 
-        } catch (IOException | InterruptedException e) {
-            System.out.println("An error occurred while trying to make a Translate request.");
+    /**
+     * Builds the body of a multipart request. The size of every file is read here, so a file that was
+     * deleted or cannot be read is reported like the other I/O errors.
+     * @return the body, or null if a file could not be read.
+     */
+    private HttpRequest.BodyPublisher buildMultiPartBody(MultiPartBody multiPartBody, String errorMessage) {
+        try {
+            return multiPartBody.build();
+        } catch (UncheckedIOException e) {
+            System.out.println(errorMessage);
             e.printStackTrace();
+            return null;
         }
-        return response;
     }
 
     /**
-     *
-     * @param multiPartBody multipart/form-data parameters for the text-to-speech request to Voice RSS API.
-     * @return response from the Voice RSS API.
+     * Sends a blocking request with the retries and circuit breaker of the service.
      */
-    public HttpResponse<String> makeGetVoiceRequestForm(MultiPartBody multiPartBody) {
-        final String VOICE_URL = "https://api.voicerss.org/";
-
-        HttpClient client = HttpClient.newHttpClient();
-        HttpResponse<String> response = null;
-
-        HttpRequest request = HttpRequest.newBuilder()
-                .header("Content-Type", "multipart/form-data; boundary=" + multiPartBody.getBoundary())
-                .uri(URI.create(VOICE_URL))
-                .POST(multiPartBody.build())
-                .build();
-
+    private <T> HttpResponse<T> send(ServiceType serviceType, HttpRequest request,
+                                     HttpResponse.BodyHandler<T> bodyHandler, String errorMessage) {
+        if (request == null) {
+            // Could not be built, already reported.
+            return null;
+        }
+        HttpResponse<T> response = null;
         try {
-            response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            response = ResilientSender.forService(serviceType).send(request, bodyHandler);
 
-        } catch (IOException | InterruptedException e) {
-            System.out.println("An error occurred while trying to make a VoiceRSS request.");
+        } catch (CircuitOpenException e) {
+            System.out.println(errorMessage + " " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println(errorMessage);
             e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println(errorMessage);
         }
         return response;
     }
+
+    private <T> CompletableFuture<HttpResponse<T>> sendAsync(ServiceType serviceType, HttpRequest request,
+                                                             HttpResponse.BodyHandler<T> bodyHandler, String errorMessage) {
+        if (request == null) {
+            // Could not be built, already reported.
+            return CompletableFuture.completedFuture(null);
+        }
+        return ResilientSender.forService(serviceType).sendAsync(request, bodyHandler).handle((response, throwable) -> {
+            if (throwable != null) {
+                System.out.println(errorMessage + " " + throwable.getMessage());
+                return null;
+            }
+            return response;
+        });
+    }
 }
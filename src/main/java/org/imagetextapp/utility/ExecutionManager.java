@@ -0,0 +1,167 @@
+package org.imagetextapp.utility;
+
+import java.lang.reflect.Method;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Decides which threads the service calls run on, and limits how many calls to each service may run at once.
+ *
+ * The execution mode is read from the EXECUTION_MODE key (see PropertiesReader), which can also be given
+ * at runtime with -DEXECUTION_MODE=virtual:
+ *
+ *      - platform (default): calls run on ordinary (pooled) platform threads.
+ *      - virtual: every call runs on its own virtual thread, so blocking network calls are cheap and
+ *        thousands of them can be in flight. Needs a JDK with virtual threads (21+); on older JDKs the
+ *        platform mode is used instead.
+ *
+ * The number of concurrent calls per service is limited by the <SERVICE>_MAX_CONCURRENT keys,
+ * e.g. OCR_MAX_CONCURRENT. Blocking and non-blocking calls share the same limit (see ConcurrencyLimit).
+ */
+public class ExecutionManager {
+
+    private static final ExecutionManager INSTANCE = new ExecutionManager();
+
+    private final boolean virtualThreads;
+    private final ExecutorService executor;
+    private final Map<ServiceType, ConcurrencyLimit> serviceLimits = new EnumMap<>(ServiceType.class);
+
+    private ExecutionManager() {
+        String mode = PropertiesReader.getProperty("EXECUTION_MODE", "platform");
+        ExecutorService virtualExecutor = null;
+
+        if (mode.equalsIgnoreCase("virtual")) {
+            virtualExecutor = newVirtualThreadExecutor("service-");
+            if (virtualExecutor == null) {
+                System.out.println("Virtual threads are not supported by this JVM, using platform threads.");
+            }
+        }
+
+        this.virtualThreads = virtualExecutor != null;
+        this.executor = virtualThreads ? virtualExecutor : Executors.newCachedThreadPool(daemonThreadFactory("service-"));
+
+        // Virtual threads make waiting calls cheap, so far more of them may be in flight.
+        long defaultLimit = virtualThreads ? 1024 : 16;
+        for (ServiceType serviceType : ServiceType.values()) {
+            long limit = PropertiesReader.getLongProperty(serviceType.getPropertyKey("MAX_CONCURRENT"), defaultLimit);
+            serviceLimits.put(serviceType, new ConcurrencyLimit((int) Math.min(Integer.MAX_VALUE, limit)));
+        }
+    }
+
+    public static ExecutionManager getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return true if service calls run on virtual threads.
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * @return executor that runs every task on a new virtual thread, or on a pooled platform thread.
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Runs a blocking call to a service while holding one of the service's concurrency permits.
+     * @param serviceType service that is called.
+     * @param call the blocking call.
+     * @return result of the call.
+     * @throws Exception if the call fails, or if interrupted while waiting for a permit.
+     */
+    public <T> T call(ServiceType serviceType, Callable<T> call) throws Exception {
+        ConcurrencyLimit limit = serviceLimits.get(serviceType);
+        limit.acquire();
+        try {
+            return call.call();
+        } finally {
+            limit.release();
+        }
+    }
+
+    /**
+     * Starts a non-blocking call to a service once one of the service's concurrency permits is free.
+     * The permit is held until the future of the call completes.
+     * @param serviceType service that is called.
+     * @param call starts the call and returns its future.
+     * @return future that completes with the result of the call.
+     */
+    public <T> CompletableFuture<T> callAsync(ServiceType serviceType, Supplier<CompletableFuture<T>> call) {
+        ConcurrencyLimit limit = serviceLimits.get(serviceType);
+        return limit.acquireAsync().thenCompose(permit -> {
+            CompletableFuture<T> future;
+            try {
+                future = call.get();
+            } catch (RuntimeException e) {
+                limit.release();
+                throw e;
+            }
+            return future.whenComplete((result, throwable) -> limit.release());
+        });
+    }
+
+    /**
+     * @param serviceType service that is called.
+     * @return number of calls to the service that may start right now.
+     */
+    public int getAvailablePermits(ServiceType serviceType) {
+        return serviceLimits.get(serviceType).getAvailablePermits();
+    }
+
+    /**
+     * Creates an executor for a group of workers, e.g. a stage of the batch pipeline.
+     * In virtual mode, every task gets its own virtual thread and the caller limits concurrency;
+     * otherwise a fixed pool of platform threads is used.
+     * @param namePrefix prefix for the thread names.
+     * @param platformThreads number of threads in platform mode.
+     * @return new executor, to be shut down by the caller.
+     */
+    public ExecutorService newWorkerExecutor(String namePrefix, int platformThreads) {
+        if (virtualThreads) {
+            ExecutorService virtualExecutor = newVirtualThreadExecutor(namePrefix);
+            if (virtualExecutor != null) {
+                return virtualExecutor;
+            }
+        }
+        return Executors.newFixedThreadPool(platformThreads, daemonThreadFactory(namePrefix));
+    }
+
+    private static ThreadFactory daemonThreadFactory(String namePrefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * The project targets Java 17, so the virtual thread API (Java 21) is looked up reflectively.
+     * @param namePrefix prefix for the thread names.
+     * @return thread-per-task executor with virtual threads, or null if the JVM has no virtual threads.
+     */
+    private static ExecutorService newVirtualThreadExecutor(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 1L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+
+            Method newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newThreadPerTaskExecutor.invoke(null, factory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
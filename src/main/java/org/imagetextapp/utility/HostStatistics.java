@@ -0,0 +1,137 @@
+package org.imagetextapp.utility;
+
+import java.net.http.HttpClient;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-host connection statistics for the shared HttpClient.
+ *
+ * Java's HttpClient does not expose its connection pool, so connection reuse is estimated:
+ * a request counts as reusing a connection if an earlier request to the same host has released
+ * a connection that is still within the keep-alive timeout (or, for HTTP/2, while the single
+ * multiplexed connection is still alive). Otherwise it is counted as a new connection.
+ */
+public class HostStatistics {
+
+    private final String host;
+    private final long keepAliveNanos;
+
+    private long requests = 0;
+    private long newConnections = 0;
+    private long reusedConnections = 0;
+    private long failures = 0;
+    private long totalTimeNanos = 0;
+
+    private int inFlight = 0;
+    private int idleConnections = 0;
+    private long lastReleasedNanos = 0;
+    private boolean http2 = false;
+
+    public HostStatistics(String host, long keepAliveSeconds) {
+        this.host = host;
+        this.keepAliveNanos = TimeUnit.SECONDS.toNanos(keepAliveSeconds);
+    }
+
+    /**
+     * Registers that a request to this host is about to be sent.
+     */
+    synchronized void requestStarted() {
+        long now = System.nanoTime();
+        boolean alive = lastReleasedNanos != 0 && now - lastReleasedNanos < keepAliveNanos;
+        if (!alive) {
+            idleConnections = 0;
+        }
+        requests++;
+
+        if (http2 && (inFlight > 0 || idleConnections > 0)) {
+            reusedConnections++;
+        } else if (idleConnections > 0) {
+            idleConnections--;
+            reusedConnections++;
+        } else {
+            newConnections++;
+        }
+        inFlight++;
+    }
+
+    /**
+     * Registers that a request to this host has finished.
+     * @param version protocol version of the response, or null if the request failed.
+     * @param elapsedNanos time spent on the request.
+     */
+    synchronized void requestFinished(HttpClient.Version version, long elapsedNanos) {
+        inFlight--;
+        totalTimeNanos += elapsedNanos;
+
+        if (version == null) {
+            // A failed exchange usually means the connection was discarded.
+            failures++;
+            return;
+        }
+        if (version == HttpClient.Version.HTTP_2) {
+            http2 = true;
+            idleConnections = 1;
+        } else {
+            idleConnections++;
+        }
+        lastReleasedNanos = System.nanoTime();
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public synchronized long getRequests() {
+        return requests;
+    }
+
+    public synchronized long getNewConnections() {
+        return newConnections;
+    }
+
+    public synchronized long getReusedConnections() {
+        return reusedConnections;
+    }
+
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    public synchronized boolean isHttp2() {
+        return http2;
+    }
+
+    /**
+     * @return share of requests that were sent on an already open connection (0 - 1).
+     */
+    public synchronized double getReuseRatio() {
+        if (requests == 0) {
+            return 0;
+        }
+        return (double) reusedConnections / requests;
+    }
+
+    /**
+     * @return average time per finished request in milliseconds.
+     */
+    public synchronized double getAverageTimeMillis() {
+        long finished = requests - inFlight;
+        if (finished == 0) {
+            return 0;
+        }
+        return totalTimeNanos / 1_000_000.0 / finished;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "HostStatistics{" +
+                "host='" + host + '\'' +
+                ", requests=" + requests +
+                ", newConnections=" + newConnections +
+                ", reusedConnections=" + reusedConnections +
+                ", failures=" + failures +
+                ", http2=" + http2 +
+                ", averageTimeMillis=" + String.format("%.1f", getAverageTimeMillis()) +
+                '}';
+    }
+}
@@ -0,0 +1,192 @@
+package org.imagetextapp.utility;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Owns the single, long-lived HttpClient that is shared by all API handlers, so that
+ * connections (and their TLS sessions) are kept alive and reused between requests.
+ *
+ * The client is configured through the following optional keys (see PropertiesReader):
+ *
+ *      - HTTP_EXECUTOR_THREADS: size of a fixed executor for the client, 0 uses the HttpClient default
+ *        (or virtual threads, if ExecutionManager runs in virtual mode).
+ *      - HTTP_PREFER_HTTP2: whether HTTP/2 should be negotiated when the server supports it.
+ *      - HTTP_CONNECT_TIMEOUT_MS: timeout for establishing a connection.
+ *      - HTTP_REQUEST_TIMEOUT_MS: timeout for a whole request/response exchange.
+ *      - HTTP_KEEPALIVE_TIMEOUT_SECONDS: how long idle connections are kept in the pool per host.
+ */
+public class HttpClientManager {
+
+    private static volatile HttpClientManager instance;
+
+    private final HttpClient client;
+    private final Duration requestTimeout;
+    private final long keepAliveSeconds;
+    private final Map<String, HostStatistics> hostStatistics = new ConcurrentHashMap<>();
+
+    /**
+     * @param executor executor for the client's asynchronous tasks, or null for the HttpClient default.
+     * @param preferHttp2 if HTTP/2 should be preferred over HTTP/1.1.
+     * @param connectTimeout timeout for establishing a connection.
+     * @param requestTimeout timeout for each request.
+     * @param keepAliveSeconds how long idle connections are kept alive per host.
+     */
+    public HttpClientManager(Executor executor, boolean preferHttp2, Duration connectTimeout,
+                             Duration requestTimeout, long keepAliveSeconds) {
+        // The JDK reads its connection pool keep-alive once, when the first client is created.
+        if (System.getProperty("jdk.httpclient.keepalive.timeout") == null) {
+            System.setProperty("jdk.httpclient.keepalive.timeout", String.valueOf(keepAliveSeconds));
+        }
+
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(preferHttp2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL);
+        if (executor != null) {
+            builder.executor(executor);
+        }
+
+        this.client = builder.build();
+        this.requestTimeout = requestTimeout;
+        this.keepAliveSeconds = keepAliveSeconds;
+    }
+
+    /**
+     * @return the shared instance, created from the configured properties on first use.
+     */
+    public static HttpClientManager getInstance() {
+        HttpClientManager current = instance;
+        if (current == null) {
+            synchronized (HttpClientManager.class) {
+                current = instance;
+                if (current == null) {
+                    current = fromProperties();
+                    instance = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Replaces the shared instance, e.g. to run the client on a custom executor.
+     * Requests that are already in flight keep using the previous client.
+     * @param httpClientManager new shared instance.
+     */
+    public static void setInstance(HttpClientManager httpClientManager) {
+        synchronized (HttpClientManager.class) {
+            instance = httpClientManager;
+        }
+    }
+
+    private static HttpClientManager fromProperties() {
+        int threads = (int) PropertiesReader.getLongProperty("HTTP_EXECUTOR_THREADS", 0);
+        boolean preferHttp2 = PropertiesReader.getBooleanProperty("HTTP_PREFER_HTTP2", true);
+        long connectTimeout = PropertiesReader.getLongProperty("HTTP_CONNECT_TIMEOUT_MS", 10_000);
+        long requestTimeout = PropertiesReader.getLongProperty("HTTP_REQUEST_TIMEOUT_MS", 60_000);
+        long keepAlive = PropertiesReader.getLongProperty("HTTP_KEEPALIVE_TIMEOUT_SECONDS", 300);
+
+        Executor executor = null;
+        if (threads > 0) {
+            executor = newDaemonExecutor(threads);
+        } else if (ExecutionManager.getInstance().isVirtualThreads()) {
+            executor = ExecutionManager.getInstance().getExecutor();
+        }
+        return new HttpClientManager(executor, preferHttp2, Duration.ofMillis(connectTimeout),
+                Duration.ofMillis(requestTimeout), keepAlive);
+    }
+
+    private static ExecutorService newDaemonExecutor(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "http-client-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public HttpClient getClient() {
+        return client;
+    }
+
+    public Duration getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * @param uri target of the request.
+     * @return request builder with the configured request timeout.
+     */
+    public HttpRequest.Builder newRequestBuilder(URI uri) {
+        return HttpRequest.newBuilder()
+                .uri(uri)
+                .timeout(requestTimeout);
+    }
+
+    /**
+     * Sends a request on the shared client and records statistics for the target host.
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler)
+            throws IOException, InterruptedException {
+        HostStatistics statistics = statisticsFor(request.uri());
+        long start = System.nanoTime();
+        statistics.requestStarted();
+
+        HttpClient.Version version = null;
+        try {
+            HttpResponse<T> response = client.send(request, bodyHandler);
+            version = response.version();
+            return response;
+        } finally {
+            statistics.requestFinished(version, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Sends a request asynchronously on the shared client and records statistics for the target host.
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                            HttpResponse.BodyHandler<T> bodyHandler) {
+        HostStatistics statistics = statisticsFor(request.uri());
+        long start = System.nanoTime();
+        statistics.requestStarted();
+
+        return client.sendAsync(request, bodyHandler).whenComplete((response, throwable) ->
+                statistics.requestFinished(response != null ? response.version() : null, System.nanoTime() - start));
+    }
+
+    private HostStatistics statisticsFor(URI uri) {
+        return hostStatistics.computeIfAbsent(uri.getHost(), host -> new HostStatistics(host, keepAliveSeconds));
+    }
+
+    /**
+     * @return connection statistics per host, sorted by host name.
+     */
+    public Map<String, HostStatistics> getHostStatistics() {
+        return new TreeMap<>(hostStatistics);
+    }
+
+    /**
+     * @return a human readable summary of the connection statistics for every host.
+     */
+    public String getStatisticsReport() {
+        StringBuilder report = new StringBuilder();
+        for (HostStatistics statistics : getHostStatistics().values()) {
+            report.append(statistics).append('\n');
+        }
+        return report.toString();
+    }
+}
@@ -2,15 +2,26 @@ package org.imagetextapp.utility;
 
 import org.imagetextapp.apis.detectlanguage.DetectLanguageObject;
 import org.imagetextapp.apis.ocr.OCRObject;
-import org.imagetextapp.apis.translate.TranslateHandler;
+import org.imagetextapp.apis.ocr.OCRPage;
 import org.imagetextapp.apis.translate.TranslateObject;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import org.json.JSONException;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Parses JSON responses from APIs and returns them.
+ *
+ * The responses are read with JsonStreamReader, which pulls only the fields that the response objects need
+ * and skips the rest, directly from the response body stream, which avoids holding the whole body in memory.
+ * A missing or malformed response results in an object that reports an error.
  */
 public class JsonParser {
 
@@ -19,95 +30,409 @@ public class JsonParser {
      * @param response JSON response from the OCR API.
      * @return object representation of the response.
      */
-    public OCRObject parseOCRResponse(HttpResponse<String> response) {
-        StringManager stringManager = new StringManager();
+    public OCRObject parseOCRResponse(HttpResponse<InputStream> response) {
+        // No response at all, e.g. while the service is unavailable.
+        if (response == null) {
+            OCRObject jsonToOCR = new OCRObject();
+            jsonToOCR.setErrorOnProcessing(true);
+            jsonToOCR.setErrorMessage("No response from the OCR API.");
+            return jsonToOCR;
+        }
+        return parseOCRResponse(response.body());
+    }
+
+    /**
+     * Parses the JSON response from the OCR API while it is being received.
+     * @param body JSON response body from the OCR API, which is closed afterwards.
+     * @return object representation of the response.
+     */
+    public OCRObject parseOCRResponse(InputStream body) {
+        return parseOCRResponse(new InputStreamReader(body, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses the JSON response from the Detect Language API.
+     * @param response JSON response from the Detect Language API.
+     * @return object representation of the response.
+     */
+    public DetectLanguageObject parseDetectLanguageResponse(HttpResponse<InputStream> response) {
+        if (response == null) {
+            DetectLanguageObject jsonToDetectLanguage = new DetectLanguageObject();
+            jsonToDetectLanguage.setErrorOnProcessing(true);
+            return jsonToDetectLanguage;
+        }
+        return parseDetectLanguageResponse(response.body());
+    }
+
+    /**
+     * Parses the JSON response from the Detect Language API while it is being received.
+     * @param body JSON response body from the Detect Language API, which is closed afterwards.
+     * @return object representation of the response.
+     */
+    public DetectLanguageObject parseDetectLanguageResponse(InputStream body) {
+        return parseDetectLanguageResponse(new InputStreamReader(body, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses the JSON response from the Detect Language API to a request with several texts.
+     * @param response JSON response from the Detect Language API.
+     * @param count number of texts in the request.
+     * @return one object per text, in the order of the request. Texts without a detection report an error.
+     */
+    public List<DetectLanguageObject> parseDetectLanguageResponses(HttpResponse<InputStream> response, int count) {
+        if (response == null) {
+            return parseDetectLanguageResponses((Reader) null, count);
+        }
+        return parseDetectLanguageResponses(response.body(), count);
+    }
+
+    /**
+     * Parses the JSON response from the Detect Language API to a request with several texts while it is being received.
+     * @param body JSON response body from the Detect Language API, which is closed afterwards.
+     * @param count number of texts in the request.
+     * @return one object per text, in the order of the request. Texts without a detection report an error.
+     */
+    public List<DetectLanguageObject> parseDetectLanguageResponses(InputStream body, int count) {
+        return parseDetectLanguageResponses(new InputStreamReader(body, StandardCharsets.UTF_8), count);
+    }
+
+    /**
+     * Parses JSON response from the Google Translate API.
+     * @param response JSON response from the Google Translate API.
+     * @return object representation of the response.
+     */
+    public TranslateObject parseTranslateResponse(HttpResponse<InputStream> response) {
+        if (response == null) {
+            TranslateObject translateObject = new TranslateObject();
+            translateObject.setErrorOnProcessing(true);
+            translateObject.setMessage("No response from the Google Translate API.");
+            return translateObject;
+        }
+        return parseTranslateResponse(response.body());
+    }
+
+    /**
+     * Parses JSON response from the Google Translate API while it is being received.
+     * @param body JSON response body from the Google Translate API, which is closed afterwards.
+     * @return object representation of the response.
+     */
+    public TranslateObject parseTranslateResponse(InputStream body) {
+        return parseTranslateResponse(new InputStreamReader(body, StandardCharsets.UTF_8));
+    }
+
+    private OCRObject parseOCRResponse(Reader body) {
         OCRObject jsonToOCR = new OCRObject();
 
-        String jsonString = response.body();
-        JSONObject parsedResObject = new JSONObject(jsonString);
+        boolean erroredOnProcessing = false;
+        String errorMessage = "";
+        int ocrExitCode = 0;
+        int processingTime = 0;
+
+        try (JsonStreamReader reader = new JsonStreamReader(body)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "IsErroredOnProcessing" -> erroredOnProcessing = reader.nextBoolean();
+                    case "ErrorMessage" -> errorMessage = readFirstString(reader);
+                    case "OCRExitCode" -> ocrExitCode = reader.nextInt();
+                    case "ProcessingTimeInMilliseconds" -> processingTime = reader.nextInt();
+                    case "ParsedResults" -> readParsedResults(reader, jsonToOCR);
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IOException | JSONException e) {
+            System.out.println("An error occurred while reading the OCR response.");
+            e.printStackTrace();
+            erroredOnProcessing = true;
+            errorMessage = "The response could not be read.";
+        }
 
         // If OCR server response indicates that an error occurred.
-        if (parsedResObject.getBoolean("IsErroredOnProcessing")) {
+        if (erroredOnProcessing) {
 
             System.out.println("An error occurred while trying to process the OCR request. Description: ");
-            JSONArray errorArray = parsedResObject.getJSONArray("ErrorMessage");
-            System.out.println(errorArray.getString(0));
+            System.out.println(errorMessage);
 
             jsonToOCR.setErrorOnProcessing(true);
-            jsonToOCR.setErrorMessage(errorArray.getString(0));
+            jsonToOCR.setErrorMessage(errorMessage);
         }
 
         else {
-            JSONArray parsedResArray = parsedResObject.getJSONArray("ParsedResults");
-
-            // Set values from returned "ParsedResults" array from response.
-            jsonToOCR.setTextOrientation(parsedResArray.getJSONObject(0).getInt("TextOrientation"));
-            jsonToOCR.setFileParseExitCode(parsedResArray.getJSONObject(0).getInt("FileParseExitCode"));
-            jsonToOCR.setParsedText(parsedResArray.getJSONObject(0).getString("ParsedText"));
-            jsonToOCR.setParsedTextClean(stringManager.getCleanString(jsonToOCR.getParsedText()));
-            jsonToOCR.setErrorMessage(parsedResArray.getJSONObject(0).getString("ErrorMessage"));
-            jsonToOCR.setErrorDetails(parsedResArray.getJSONObject(0).getString("ErrorDetails"));
-
             // Set values from returned parameters from response body.
-            jsonToOCR.setOcrExitCode(parsedResObject.getInt("OCRExitCode"));
-            jsonToOCR.setErrorOnProcessing(parsedResObject.getBoolean("IsErroredOnProcessing"));
-            jsonToOCR.setProcessingTime(parsedResObject.getInt("ProcessingTimeInMilliseconds"));
+            jsonToOCR.setOcrExitCode(ocrExitCode);
+            jsonToOCR.setErrorOnProcessing(false);
+            jsonToOCR.setProcessingTime(processingTime);
         }
         return jsonToOCR;
     }
 
     /**
-     * Parses the JSON response from the Detect Language API.
-     * @param response JSON response from the Detect Language API.
-     * @return object representation of the response.
+     * Reads every element of the returned "ParsedResults" array as a page, since a PDF file results in one
+     * element per page. The error message of the first page that has one is set on the object as well.
      */
-    public DetectLanguageObject parseDetectLanguageResponse(HttpResponse<String> response) {
+    private void readParsedResults(JsonStreamReader reader, OCRObject jsonToOCR) throws IOException {
+        if (reader.peek() == JsonStreamReader.Token.NULL) {
+            reader.skipValue();
+            return;
+        }
+
+        StringManager stringManager = new StringManager();
+        List<OCRPage> pages = new ArrayList<>();
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            OCRPage page = new OCRPage();
+            page.setPageNumber(pages.size() + 1);
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "TextOrientation" -> page.setTextOrientation(reader.nextInt());
+                    case "FileParseExitCode" -> page.setFileParseExitCode(reader.nextInt());
+                    case "ParsedText" -> page.setParsedText(nextString(reader));
+                    case "ErrorMessage" -> page.setErrorMessage(readFirstString(reader));
+                    case "ErrorDetails" -> page.setErrorDetails(nextString(reader));
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            page.setParsedTextClean(stringManager.getCleanString(page.getParsedText()));
+            pages.add(page);
+        }
+        reader.endArray();
+
+        jsonToOCR.setPages(pages);
+        for (OCRPage page : pages) {
+            if (!page.getErrorMessage().isEmpty()) {
+                jsonToOCR.setErrorMessage(page.getErrorMessage());
+                jsonToOCR.setErrorDetails(page.getErrorDetails());
+                break;
+            }
+        }
+    }
+
+    private DetectLanguageObject parseDetectLanguageResponse(Reader body) {
         DetectLanguageObject jsonToDetectLanguage = new DetectLanguageObject();
+        boolean detected = false;
 
-        String jsonString = response.body();
-        JSONObject parsedResObject = new JSONObject(jsonString);
-        JSONObject dataObject = parsedResObject.getJSONObject("data");
-        JSONArray detectionsArray = dataObject.getJSONArray("detections");
+        try (JsonStreamReader reader = new JsonStreamReader(body)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("data")) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (reader.nextName().equals("detections")) {
+                            detected = readFirstDetection(reader, jsonToDetectLanguage);
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IOException | JSONException e) {
+            e.printStackTrace();
+            detected = false;
+        }
 
         // If Detect Language server response indicates that an error occurred.
-        if (detectionsArray.isEmpty()) {
+        if (!detected) {
             System.out.println("An error occurred while trying to process the Detect Language request.");
             jsonToDetectLanguage.setErrorOnProcessing(true);
         }
 
-        else {
-            // Set values from returned "detections" array from response.
-            jsonToDetectLanguage.setLanguage(detectionsArray.getJSONObject(0).getString("language"));
-            jsonToDetectLanguage.setReliable(detectionsArray.getJSONObject(0).getBoolean("isReliable"));
-            jsonToDetectLanguage.setConfidence(detectionsArray.getJSONObject(0).getFloat("confidence"));
+        return jsonToDetectLanguage;
+    }
+
+    /**
+     * Parses a response to several texts, where "detections" holds one array of detections per text:
+     * {"data":{"detections":[[{...}, ...], [{...}, ...]]}}
+     */
+    private List<DetectLanguageObject> parseDetectLanguageResponses(Reader body, int count) {
+        List<DetectLanguageObject> detectLanguageObjects = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            detectLanguageObjects.add(new DetectLanguageObject());
         }
+        boolean[] detected = new boolean[count];
 
-        return jsonToDetectLanguage;
+        if (body != null) {
+            try (JsonStreamReader reader = new JsonStreamReader(body)) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.nextName().equals("data")) {
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            if (reader.nextName().equals("detections")) {
+                                readDetectionsPerText(reader, detectLanguageObjects, detected);
+                            } else {
+                                reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } catch (IOException | JSONException e) {
+                e.printStackTrace();
+                Arrays.fill(detected, false);
+            }
+        }
+
+        int failed = 0;
+        for (int i = 0; i < count; i++) {
+            if (!detected[i]) {
+                detectLanguageObjects.get(i).setErrorOnProcessing(true);
+                failed++;
+            }
+        }
+        if (failed > 0) {
+            System.out.println("An error occurred while trying to process the Detect Language request for "
+                    + failed + " of " + count + " texts.");
+        }
+
+        return detectLanguageObjects;
+    }
+
+    private void readDetectionsPerText(JsonStreamReader reader, List<DetectLanguageObject> detectLanguageObjects,
+                                       boolean[] detected) throws IOException {
+        reader.beginArray();
+        int index = 0;
+        while (reader.hasNext()) {
+            if (index < detectLanguageObjects.size() && reader.peek() == JsonStreamReader.Token.BEGIN_ARRAY) {
+                detected[index] = readFirstDetection(reader, detectLanguageObjects.get(index));
+            } else if (index == 0 && reader.peek() == JsonStreamReader.Token.BEGIN_OBJECT) {
+                // A request with a single text may be answered in the single-text format.
+                detected[0] = true;
+                readDetection(reader, detectLanguageObjects.get(0));
+                while (reader.hasNext()) {
+                    reader.skipValue();
+                }
+                break;
+            } else {
+                reader.skipValue();
+            }
+            index++;
+        }
+        reader.endArray();
     }
 
     /**
-     * Parses JSON response from the Google Translate API.
-     * @param response JSON response from the Google Translate API.
-     * @return object representation of the response.
+     * Set values from the first element of the returned "detections" array.
+     * @return false if the array is empty.
      */
-    public TranslateObject parseTranslateResponse(HttpResponse<String> response) {
-        TranslateObject translateObject = new TranslateObject();
+    private boolean readFirstDetection(JsonStreamReader reader, DetectLanguageObject jsonToDetectLanguage) throws IOException {
+        boolean detected = false;
+
+        reader.beginArray();
+        if (reader.hasNext()) {
+            detected = true;
+            readDetection(reader, jsonToDetectLanguage);
+        }
+        while (reader.hasNext()) {
+            reader.skipValue();
+        }
+        reader.endArray();
+        return detected;
+    }
+
+    private void readDetection(JsonStreamReader reader, DetectLanguageObject jsonToDetectLanguage) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "language" -> jsonToDetectLanguage.setLanguage(nextString(reader));
+                case "isReliable" -> jsonToDetectLanguage.setReliable(reader.nextBoolean());
+                case "confidence" -> jsonToDetectLanguage.setConfidence((float) reader.nextDouble());
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
 
-        String jsonString = response.body();
-        JSONObject parsedResObject = new JSONObject(jsonString);
-        JSONObject dataObject = parsedResObject.getJSONObject("data");
+    private TranslateObject parseTranslateResponse(Reader body) {
+        TranslateObject translateObject = new TranslateObject();
+        String message = "";
+        String translation = "";
 
+        try (JsonStreamReader reader = new JsonStreamReader(body)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "message" -> message = nextString(reader);
+                    case "data" -> translation = readTranslation(reader);
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IOException | JSONException e) {
+            e.printStackTrace();
+            message = "The response could not be read.";
+        }
 
         // If Translate server response indicates that an error occurred.
-        if (!parsedResObject.getString("message").equals("")) {
+        if (!message.equals("")) {
             System.out.println("The following message was logged during the last Google Translate request: ");
-            System.out.println(parsedResObject.getString("message"));
+            System.out.println(message);
             translateObject.setErrorOnProcessing(true);
-            translateObject.setMessage(parsedResObject.getString("message"));
+            translateObject.setMessage(message);
         }
 
-        translateObject.setText(dataObject.getString("translation").replace("&quot", "\""));
+        translateObject.setText(translation.replace("&quot", "\""));
 
         return translateObject;
     }
+
+    private String readTranslation(JsonStreamReader reader) throws IOException {
+        String translation = "";
+        if (reader.peek() != JsonStreamReader.Token.BEGIN_OBJECT) {
+            reader.skipValue();
+            return translation;
+        }
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("translation")) {
+                translation = nextString(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return translation;
+    }
+
+    /**
+     * Reads an error message, which the OCR API sends either as a string or as an array of strings.
+     * @return the message, or the first message of the array.
+     */
+    private String readFirstString(JsonStreamReader reader) throws IOException {
+        if (reader.peek() != JsonStreamReader.Token.BEGIN_ARRAY) {
+            return nextString(reader);
+        }
+
+        String value = "";
+        reader.beginArray();
+        if (reader.hasNext()) {
+            value = nextString(reader);
+        }
+        while (reader.hasNext()) {
+            reader.skipValue();
+        }
+        reader.endArray();
+        return value;
+    }
+
+    /**
+     * @return the next value as a string, or an empty string if it is null.
+     */
+    private String nextString(JsonStreamReader reader) throws IOException {
+        String value = reader.nextString();
+        return value == null ? "" : value;
+    }
 }
@@ -0,0 +1,474 @@
+package org.imagetextapp.utility;
+
+import org.json.JSONException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Pull-based JSON reader that reads tokens directly from a character stream, without building a tree
+ * of the whole document. Only the values that are asked for are turned into strings; everything else is
+ * skipped character by character, so large responses can be parsed with little allocation.
+ *
+ * Usage follows the structure of the document:
+ * beginObject(), then nextName() and a value method (or skipValue()) while hasNext(), then endObject().
+ * Malformed documents cause a JSONException, like the org.json parser. The separators (',' and ':') are
+ * checked against the scope they appear in, so a missing or misplaced separator is an error as well.
+ */
+public class JsonStreamReader implements Closeable {
+
+    /**
+     * Kinds of tokens that peek() can return.
+     */
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    // Scopes of the stack of open objects and arrays, with the document itself at the bottom. Each scope tells
+    // which separator, if any, comes before the next token.
+    private static final int EMPTY_DOCUMENT = 1;
+    private static final int NONEMPTY_DOCUMENT = 2;
+    private static final int EMPTY_OBJECT = 3;
+    // After a name: ':' comes next.
+    private static final int DANGLING_NAME = 4;
+    // After the ':' of a name: a value comes next.
+    private static final int OBJECT_VALUE = 5;
+    // After a member: ',' or '}' comes next.
+    private static final int NONEMPTY_OBJECT = 6;
+    // After the ',' of an object: a name comes next.
+    private static final int OBJECT_NAME = 7;
+    private static final int EMPTY_ARRAY = 8;
+    // After an element: ',' or ']' comes next.
+    private static final int NONEMPTY_ARRAY = 9;
+    // After the ',' of an array: an element comes next.
+    private static final int ARRAY_ELEMENT = 10;
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int position = 0;
+    private int limit = 0;
+
+    private int[] scopes = new int[16];
+    private int depth = 1;
+
+    // Reused for every string, so reading a value only allocates the resulting String.
+    private final StringBuilder builder = new StringBuilder();
+
+    public JsonStreamReader(Reader reader) {
+        this.reader = reader;
+        this.scopes[0] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Consumes the separator that the current scope expects before the next token, if any.
+     * @return the kind of the next token, without consuming it.
+     */
+    public Token peek() throws IOException {
+        int c = peekChar();
+        int scope = scopes[depth - 1];
+        switch (scope) {
+            case DANGLING_NAME:
+                if (c != ':') {
+                    throw syntaxError("Expected ':'");
+                }
+                c = consumeSeparator(OBJECT_VALUE);
+                break;
+            case NONEMPTY_OBJECT:
+                if (c == ',') {
+                    c = consumeSeparator(OBJECT_NAME);
+                } else if (c != '}') {
+                    throw syntaxError("Expected ',' or '}'");
+                }
+                break;
+            case NONEMPTY_ARRAY:
+                if (c == ',') {
+                    c = consumeSeparator(ARRAY_ELEMENT);
+                } else if (c != ']') {
+                    throw syntaxError("Expected ',' or ']'");
+                }
+                break;
+            case NONEMPTY_DOCUMENT:
+                if (c != -1) {
+                    throw syntaxError("Expected the end of the document");
+                }
+                return Token.END_DOCUMENT;
+            default:
+                break;
+        }
+
+        scope = scopes[depth - 1];
+        switch (c) {
+            case -1:
+                if (scope != EMPTY_DOCUMENT) {
+                    throw syntaxError("Unexpected end of document");
+                }
+                return Token.END_DOCUMENT;
+            case '}':
+                if (scope != EMPTY_OBJECT && scope != NONEMPTY_OBJECT) {
+                    throw syntaxError("Unexpected '}'");
+                }
+                return Token.END_OBJECT;
+            case ']':
+                if (scope != EMPTY_ARRAY && scope != NONEMPTY_ARRAY) {
+                    throw syntaxError("Unexpected ']'");
+                }
+                return Token.END_ARRAY;
+            case ',':
+            case ':':
+                throw syntaxError("Unexpected '" + (char) c + "'");
+            default:
+                break;
+        }
+
+        if (scope == EMPTY_OBJECT || scope == OBJECT_NAME) {
+            if (c != '"') {
+                throw syntaxError("Expected a name");
+            }
+            return Token.NAME;
+        }
+        switch (c) {
+            case '{':
+                return Token.BEGIN_OBJECT;
+            case '[':
+                return Token.BEGIN_ARRAY;
+            case '"':
+                return Token.STRING;
+            case 't':
+            case 'f':
+                return Token.BOOLEAN;
+            case 'n':
+                return Token.NULL;
+            default:
+                return Token.NUMBER;
+        }
+    }
+
+    /**
+     * @return true if the current object or array has more elements.
+     */
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT, "Expected '{'");
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT, "Expected '}'");
+        depth--;
+        valueRead();
+    }
+
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY, "Expected '['");
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY, "Expected ']'");
+        depth--;
+        valueRead();
+    }
+
+    /**
+     * @return the name of the next member of the current object.
+     */
+    public String nextName() throws IOException {
+        if (peek() != Token.NAME) {
+            throw syntaxError("Expected a name");
+        }
+        String name = readString();
+        scopes[depth - 1] = DANGLING_NAME;
+        return name;
+    }
+
+    /**
+     * @return the next value as a string. Numbers and booleans are returned as written, null as null.
+     */
+    public String nextString() throws IOException {
+        String value;
+        switch (peek()) {
+            case STRING:
+                value = readString();
+                break;
+            case NUMBER:
+            case BOOLEAN:
+                value = readLiteral();
+                break;
+            case NULL:
+                readLiteral();
+                value = null;
+                break;
+            default:
+                throw syntaxError("Expected a string");
+        }
+        valueRead();
+        return value;
+    }
+
+    /**
+     * @return the next value as a boolean. The strings "true" and "false" are accepted as well.
+     */
+    public boolean nextBoolean() throws IOException {
+        String value = nextString();
+        if ("true".equalsIgnoreCase(value)) {
+            return true;
+        } else if ("false".equalsIgnoreCase(value)) {
+            return false;
+        }
+        throw syntaxError("Expected a boolean but was " + value);
+    }
+
+    /**
+     * @return the next value as an int. Numbers written as strings (e.g. "42") are accepted as well.
+     */
+    public int nextInt() throws IOException {
+        return (int) nextDouble();
+    }
+
+    /**
+     * @return the next value as a double. Numbers written as strings (e.g. "0.5") are accepted as well.
+     */
+    public double nextDouble() throws IOException {
+        String value = nextString();
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException | NullPointerException e) {
+            throw syntaxError("Expected a number but was " + value);
+        }
+    }
+
+    /**
+     * Skips the next value, including all nested objects and arrays, without creating any strings.
+     */
+    public void skipValue() throws IOException {
+        int skipDepth = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT:
+                    beginObject();
+                    skipDepth++;
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    skipDepth++;
+                    break;
+                case END_OBJECT:
+                    if (skipDepth == 0) {
+                        throw syntaxError("Expected a value");
+                    }
+                    endObject();
+                    skipDepth--;
+                    break;
+                case END_ARRAY:
+                    if (skipDepth == 0) {
+                        throw syntaxError("Expected a value");
+                    }
+                    endArray();
+                    skipDepth--;
+                    break;
+                case NAME:
+                    skipString();
+                    scopes[depth - 1] = DANGLING_NAME;
+                    break;
+                case STRING:
+                    skipString();
+                    valueRead();
+                    break;
+                case END_DOCUMENT:
+                    throw syntaxError("Unexpected end of document");
+                default:
+                    skipLiteral();
+                    valueRead();
+                    break;
+            }
+        } while (skipDepth > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void push(int scope) {
+        if (depth == scopes.length) {
+            scopes = Arrays.copyOf(scopes, depth * 2);
+        }
+        scopes[depth++] = scope;
+    }
+
+    /**
+     * After a value, the current scope expects a separator or its end.
+     */
+    private void valueRead() {
+        int scope = scopes[depth - 1];
+        if (scope == EMPTY_DOCUMENT) {
+            scopes[depth - 1] = NONEMPTY_DOCUMENT;
+        } else if (scope == OBJECT_VALUE) {
+            scopes[depth - 1] = NONEMPTY_OBJECT;
+        } else if (scope == EMPTY_ARRAY || scope == ARRAY_ELEMENT) {
+            scopes[depth - 1] = NONEMPTY_ARRAY;
+        }
+    }
+
+    private void expect(Token expected, String message) throws IOException {
+        if (peek() != expected) {
+            throw syntaxError(message);
+        }
+        position++;
+    }
+
+    /**
+     * Consumes the separator at the current position.
+     * @param scope scope of the token that follows the separator.
+     * @return the character after the separator, as peekChar.
+     */
+    private int consumeSeparator(int scope) throws IOException {
+        position++;
+        scopes[depth - 1] = scope;
+        return peekChar();
+    }
+
+    /**
+     * @return the next character that is not whitespace, without consuming it, or -1 at the end of the stream.
+     */
+    private int peekChar() throws IOException {
+        while (position < limit || fill()) {
+            char c = buffer[position];
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                position++;
+            } else {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    private boolean fill() throws IOException {
+        int read = reader.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            position = 0;
+            limit = 0;
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    private String readString() throws IOException {
+        builder.setLength(0);
+        position++; // Opening quote.
+
+        while (true) {
+            if (position == limit && !fill()) {
+                throw syntaxError("Unterminated string");
+            }
+
+            // Copy the run of plain characters in one go.
+            int start = position;
+            while (position < limit && buffer[position] != '"' && buffer[position] != '\\') {
+                position++;
+            }
+            builder.append(buffer, start, position - start);
+
+            if (position < limit) {
+                char c = buffer[position++];
+                if (c == '"') {
+                    return builder.toString();
+                }
+                builder.append(readEscape());
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        position++; // Opening quote.
+
+        while (true) {
+            if (position == limit && !fill()) {
+                throw syntaxError("Unterminated string");
+            }
+            char c = buffer[position++];
+            if (c == '"') {
+                return;
+            } else if (c == '\\') {
+                readEscape();
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+        char c = readChar();
+        switch (c) {
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(readChar(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Invalid unicode escape");
+                    }
+                    value = value * 16 + digit;
+                }
+                return (char) value;
+            default:
+                // \" \\ \/
+                return c;
+        }
+    }
+
+    private char readChar() throws IOException {
+        if (position == limit && !fill()) {
+            throw syntaxError("Unexpected end of document");
+        }
+        return buffer[position++];
+    }
+
+    /**
+     * Reads a number, true, false or null.
+     */
+    private String readLiteral() throws IOException {
+        builder.setLength(0);
+        while (position < limit || fill()) {
+            char c = buffer[position];
+            if (isLiteralEnd(c)) {
+                break;
+            }
+            builder.append(c);
+            position++;
+        }
+        return builder.toString();
+    }
+
+    private void skipLiteral() throws IOException {
+        while (position < limit || fill()) {
+            if (isLiteralEnd(buffer[position])) {
+                return;
+            }
+            position++;
+        }
+    }
+
+    private boolean isLiteralEnd(char c) {
+        return c == ',' || c == '}' || c == ']' || c == ':' || c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " in JSON document.");
+    }
+}
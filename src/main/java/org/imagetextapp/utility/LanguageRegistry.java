@@ -0,0 +1,266 @@
+package org.imagetextapp.utility;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable registry of the supported languages and their codes in the different APIs:
+ * Detect Language (ISO 639-1, e.g. "de"), OCR.space ("ger"), Google Translate ("de") and Voice RSS ("de-de").
+ *
+ * The registry is read once from languages.txt and offers lookups by every code through hash maps. Languages
+ * and voice locales know their position in the registry, which is also their index in the drop-downs.
+ */
+public class LanguageRegistry {
+
+    private static final LanguageRegistry INSTANCE = load();
+
+    private final List<Language> languages;
+    private final List<VoiceLocale> voiceLocales;
+    private final Map<String, Language> byDetectCode;
+    private final Map<String, Language> byOcrCode;
+    private final Map<String, Language> byTranslateCode;
+    private final Map<String, VoiceLocale> byVoiceCode;
+
+    private LanguageRegistry(List<Language> languages) {
+        this.languages = Collections.unmodifiableList(languages);
+
+        List<VoiceLocale> allVoiceLocales = new ArrayList<>();
+        Map<String, Language> detectCodes = new HashMap<>();
+        Map<String, Language> ocrCodes = new HashMap<>();
+        Map<String, Language> translateCodes = new HashMap<>();
+        Map<String, VoiceLocale> voiceCodes = new HashMap<>();
+
+        for (Language language : languages) {
+            detectCodes.put(language.detectCode, language);
+            ocrCodes.put(language.ocrCode, language);
+            translateCodes.put(language.translateCode, language);
+            for (VoiceLocale voiceLocale : language.voiceLocales) {
+                voiceLocale.index = allVoiceLocales.size();
+                allVoiceLocales.add(voiceLocale);
+                voiceCodes.put(voiceLocale.code, voiceLocale);
+            }
+        }
+
+        this.voiceLocales = Collections.unmodifiableList(allVoiceLocales);
+        this.byDetectCode = Map.copyOf(detectCodes);
+        this.byOcrCode = Map.copyOf(ocrCodes);
+        this.byTranslateCode = Map.copyOf(translateCodes);
+        this.byVoiceCode = Map.copyOf(voiceCodes);
+    }
+
+    public static LanguageRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return all languages, in the order of the drop-downs.
+     */
+    public List<Language> getLanguages() {
+        return languages;
+    }
+
+    /**
+     * @return the Voice RSS locales of all languages, in the order of the drop-down.
+     */
+    public List<VoiceLocale> getVoiceLocales() {
+        return voiceLocales;
+    }
+
+    /**
+     * @param detectCode language code of the Detect Language API, e.g. "de".
+     * @return the language, or null if it is not supported.
+     */
+    public Language fromDetectCode(String detectCode) {
+        return detectCode == null ? null : byDetectCode.get(detectCode);
+    }
+
+    /**
+     * @param ocrCode language code of the OCR.space API, e.g. "ger".
+     * @return the language, or null if it is not supported.
+     */
+    public Language fromOcrCode(String ocrCode) {
+        return ocrCode == null ? null : byOcrCode.get(ocrCode);
+    }
+
+    /**
+     * @param translateCode language code of the Google Translate API, e.g. "de".
+     * @return the language, or null if it is not supported.
+     */
+    public Language fromTranslateCode(String translateCode) {
+        return translateCode == null ? null : byTranslateCode.get(translateCode);
+    }
+
+    /**
+     * @param voiceCode locale of the Voice RSS API, e.g. "de-at".
+     * @return the locale, or null if it is not supported.
+     */
+    public VoiceLocale fromVoiceCode(String voiceCode) {
+        return voiceCode == null ? null : byVoiceCode.get(voiceCode);
+    }
+
+    private static LanguageRegistry load() {
+        List<Language> languages = new ArrayList<>();
+
+        try (InputStream inputStream = LanguageRegistry.class.getResourceAsStream("languages.txt")) {
+            if (inputStream == null) {
+                System.out.println("The list of supported languages is missing.");
+                return new LanguageRegistry(languages);
+            }
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.strip();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    languages.add(parseLanguage(line, languages.size()));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.out.println("The list of supported languages could not be read.");
+            e.printStackTrace();
+        }
+        return new LanguageRegistry(languages);
+    }
+
+    /**
+     * Parses a line "name|detect code|OCR code|translate code|voice locales", where the voice locales are
+     * "code=name" pairs separated by commas, and the default locale starts with "*".
+     */
+    private static Language parseLanguage(String line, int index) {
+        String[] fields = line.split("\\|");
+        if (fields.length != 5) {
+            throw new IllegalArgumentException("Invalid language: " + line);
+        }
+
+        List<VoiceLocale> voiceLocales = new ArrayList<>();
+        VoiceLocale defaultVoiceLocale = null;
+        for (String entry : fields[4].split(",")) {
+            boolean isDefault = entry.startsWith("*");
+            String[] codeAndName = (isDefault ? entry.substring(1) : entry).split("=", 2);
+            VoiceLocale voiceLocale = new VoiceLocale(codeAndName[0], codeAndName[1]);
+            voiceLocales.add(voiceLocale);
+            if (isDefault || defaultVoiceLocale == null) {
+                defaultVoiceLocale = voiceLocale;
+            }
+        }
+
+        Language language = new Language(index, fields[0], fields[1], fields[2], fields[3],
+                Collections.unmodifiableList(voiceLocales), defaultVoiceLocale);
+        for (VoiceLocale voiceLocale : voiceLocales) {
+            voiceLocale.language = language;
+        }
+        return language;
+    }
+
+    /**
+     * A supported language with its code in every API.
+     */
+    public static class Language {
+
+        private final int index;
+        private final String name;
+        private final String detectCode;
+        private final String ocrCode;
+        private final String translateCode;
+        private final List<VoiceLocale> voiceLocales;
+        private final VoiceLocale defaultVoiceLocale;
+
+        private Language(int index, String name, String detectCode, String ocrCode, String translateCode,
+                         List<VoiceLocale> voiceLocales, VoiceLocale defaultVoiceLocale) {
+            this.index = index;
+            this.name = name;
+            this.detectCode = detectCode;
+            this.ocrCode = ocrCode;
+            this.translateCode = translateCode;
+            this.voiceLocales = voiceLocales;
+            this.defaultVoiceLocale = defaultVoiceLocale;
+        }
+
+        /**
+         * @return position in the registry, and in the language drop-downs.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDetectCode() {
+            return detectCode;
+        }
+
+        public String getOcrCode() {
+            return ocrCode;
+        }
+
+        public String getTranslateCode() {
+            return translateCode;
+        }
+
+        public List<VoiceLocale> getVoiceLocales() {
+            return voiceLocales;
+        }
+
+        /**
+         * @return the locale used for the language when no other is chosen, e.g. "en-us" for English.
+         */
+        public VoiceLocale getDefaultVoiceLocale() {
+            return defaultVoiceLocale;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * A Voice RSS locale of a language, e.g. "en-gb" for English (Great Britain).
+     */
+    public static class VoiceLocale {
+
+        private final String code;
+        private final String name;
+        private Language language;
+        private int index;
+
+        private VoiceLocale(String code, String name) {
+            this.code = code;
+            this.name = name;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Language getLanguage() {
+            return language;
+        }
+
+        /**
+         * @return position among the locales of all languages, and in the voice language drop-down.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -21,4 +21,12 @@ public class MimeManager {
         }
         return false;
     }
+
+    /**
+     * @param mime of a file
+     * @return true if the file is a PDF file, which may hold several pages.
+     */
+    public boolean isPdf(String mime) {
+        return "application/pdf".equals(mime);
+    }
 }
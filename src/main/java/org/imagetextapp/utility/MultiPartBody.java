@@ -1,31 +1,51 @@
 package org.imagetextapp.utility;
 
-import org.imagetextapp.apis.translate.TranslateHandler;
-
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 
 /**
  * Builds a valid multipart/form-data POST query which can be handled by Java's HttpClient.
  * From: https://stackoverflow.com/questions/46392160/java-9-httpclient-send-a-multipart-form-data-request @ittupelo
+ *
+ * The headers of every part are encoded once, when the part is added. File parts are read with a FileChannel
+ * while they are published: small files into a single buffer, larger files in slices that are read straight into
+ * direct buffers, so their content is not copied on the heap. The file is not mapped, so it is closed once
+ * it has been sent and can be deleted right away, also on Windows. Unless a part is a stream, the length of the
+ * body is known up front and the request is not sent with chunked transfer encoding.
  */
 public class MultiPartBody {
+
+    // Files below this size are read into one heap buffer, as a direct buffer costs more to allocate.
+    private static final int DIRECT_THRESHOLD = 64 * 1024;
+    private static final int SLICE_SIZE = 256 * 1024;
+    private static final int STREAM_CHUNK_SIZE = 8192;
+    private static final byte[] CRLF = "\r\n".getBytes(StandardCharsets.UTF_8);
+
     private List<PartsSpecification> partsSpecificationList = new ArrayList<>();
     private String boundary = UUID.randomUUID().toString();
+    private final byte[] finalBoundary = ("--" + boundary + "--").getBytes(StandardCharsets.UTF_8);
 
+    /**
+     * @return publisher of the body. Every call returns a new publisher of the same parts.
+     */
     public HttpRequest.BodyPublisher build() {
         if (partsSpecificationList.size() == 0) {
             throw new IllegalStateException("Must have at least one part to build multipart message.");
         }
-        addFinalBoundaryPart();
-        return HttpRequest.BodyPublishers.ofByteArrays(PartsIterator::new);
+        return new PartsPublisher(new ArrayList<>(partsSpecificationList));
     }
 
     public String getBoundary() {
@@ -37,15 +57,28 @@ public class MultiPartBody {
         newPart.type = PartsSpecification.TYPE.STRING;
         newPart.name = name;
         newPart.value = value;
+        newPart.header = (
+                "--" + boundary + "\r\n" +
+                        "Content-Disposition: form-data; name=" + name + "\r\n" +
+                        "Content-Type: text/plain; charset=UTF-8\r\n\r\n" +
+                        value + "\r\n").getBytes(StandardCharsets.UTF_8);
         partsSpecificationList.add(newPart);
         return this;
     }
 
     public MultiPartBody addPart(String name, Path value) {
+        String contentType;
+        try {
+            contentType = Files.probeContentType(value);
+        } catch (IOException e) {
+            contentType = null;
+        }
+
         PartsSpecification newPart = new PartsSpecification();
         newPart.type = PartsSpecification.TYPE.FILE;
         newPart.name = name;
         newPart.path = value;
+        newPart.header = createFileHeader(name, value.getFileName().toString(), contentType);
         partsSpecificationList.add(newPart);
         return this;
     }
@@ -57,21 +90,24 @@ public class MultiPartBody {
         newPart.stream = value;
         newPart.filename = filename;
         newPart.contentType = contentType;
+        newPart.header = createFileHeader(name, filename, contentType);
         partsSpecificationList.add(newPart);
         return this;
     }
 
-    private void addFinalBoundaryPart() {
-        PartsSpecification newPart = new PartsSpecification();
-        newPart.type = PartsSpecification.TYPE.FINAL_BOUNDARY;
-        newPart.value = "--" + boundary + "--";
-        partsSpecificationList.add(newPart);
+    private byte[] createFileHeader(String name, String filename, String contentType) {
+        if (contentType == null) contentType = "application/octet-stream";
+        String partHeader =
+                "--" + boundary + "\r\n" +
+                        "Content-Disposition: form-data; name=" + name + "; filename=" + filename + "\r\n" +
+                        "Content-Type: " + contentType + "\r\n\r\n";
+        return partHeader.getBytes(StandardCharsets.UTF_8);
     }
 
     static class PartsSpecification {
 
         public enum TYPE {
-            STRING, FILE, STREAM, FINAL_BOUNDARY
+            STRING, FILE, STREAM
         }
 
         PartsSpecification.TYPE type;
@@ -81,91 +117,230 @@ public class MultiPartBody {
         Supplier<InputStream> stream;
         String filename;
         String contentType;
+        byte[] header;
 
     }
 
-    class PartsIterator implements Iterator<byte[]> {
+    /**
+     * Publishes the parts of the body to the HttpClient. The length of the files is taken when the body is built.
+     */
+    class PartsPublisher implements HttpRequest.BodyPublisher {
 
-        private Iterator<PartsSpecification> iter;
-        private InputStream currentFileInput;
+        private final List<PartsSpecification> parts;
+        private final long[] fileSizes;
+        private final long contentLength;
 
-        private boolean done;
-        private byte[] next;
+        PartsPublisher(List<PartsSpecification> parts) {
+            this.parts = parts;
+            this.fileSizes = new long[parts.size()];
 
-        PartsIterator() {
-            iter = partsSpecificationList.iterator();
+            long length = finalBoundary.length;
+            for (int i = 0; i < parts.size(); i++) {
+                PartsSpecification part = parts.get(i);
+                length += part.header.length;
+                if (PartsSpecification.TYPE.FILE.equals(part.type)) {
+                    try {
+                        fileSizes[i] = Files.size(part.path);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    length += fileSizes[i] + CRLF.length;
+                } else if (PartsSpecification.TYPE.STREAM.equals(part.type)) {
+                    length = -1;
+                    break;
+                }
+            }
+            this.contentLength = length;
         }
 
         @Override
-        public boolean hasNext() {
-            if (done) return false;
-            if (next != null) return true;
-            try {
-                next = computeNext();
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
-            }
-            if (next == null) {
-                done = true;
-                return false;
+        public long contentLength() {
+            return contentLength;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            PartsSubscription subscription = new PartsSubscription(subscriber, new PartsIterator(parts, fileSizes));
+            subscriber.onSubscribe(subscription);
+        }
+    }
+
+    /**
+     * Hands out buffers as they are requested, from whichever thread requests them.
+     */
+    static class PartsSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private final PartsIterator iterator;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger drains = new AtomicInteger();
+        private volatile boolean cancelled;
+        private boolean finished;
+
+        PartsSubscription(Flow.Subscriber<? super ByteBuffer> subscriber, PartsIterator iterator) {
+            this.subscriber = subscriber;
+            this.iterator = iterator;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancelled = true;
+                drain();
+                subscriber.onError(new IllegalArgumentException("Non-positive request: " + n));
+                return;
             }
-            return true;
+            demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            drain();
         }
 
         @Override
-        public byte[] next() {
-            if (!hasNext()) throw new NoSuchElementException();
-            byte[] res = next;
-            next = null;
-            return res;
-        }
-
-        private byte[] computeNext() throws IOException {
-            if (currentFileInput == null) {
-                if (!iter.hasNext()) return null;
-                PartsSpecification nextPart = iter.next();
-                if (PartsSpecification.TYPE.STRING.equals(nextPart.type)) {
-                    String part =
-                            "--" + boundary + "\r\n" +
-                                    "Content-Disposition: form-data; name=" + nextPart.name + "\r\n" +
-                                    "Content-Type: text/plain; charset=UTF-8\r\n\r\n" +
-                                    nextPart.value + "\r\n";
-                    return part.getBytes(StandardCharsets.UTF_8);
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        /**
+         * Emits buffers while there is demand. Only one thread drains at a time, and only that thread touches
+         * the iterator; a request made during onNext is picked up by the draining thread instead of recursing.
+         */
+        private void drain() {
+            if (drains.getAndIncrement() != 0) return;
+            do {
+                while (!finished && !cancelled && demand.get() > 0) {
+                    ByteBuffer next;
+                    try {
+                        next = iterator.next();
+                    } catch (IOException | UncheckedIOException e) {
+                        finish();
+                        subscriber.onError(e);
+                        break;
+                    }
+                    if (next == null) {
+                        finish();
+                        subscriber.onComplete();
+                        break;
+                    }
+                    demand.decrementAndGet();
+                    subscriber.onNext(next);
                 }
-                if (PartsSpecification.TYPE.FINAL_BOUNDARY.equals(nextPart.type)) {
-                    return nextPart.value.getBytes(StandardCharsets.UTF_8);
+                if (cancelled && !finished) {
+                    finish();
                 }
-                String filename;
-                String contentType;
-                if (PartsSpecification.TYPE.FILE.equals(nextPart.type)) {
-                    Path path = nextPart.path;
-                    filename = path.getFileName().toString();
-                    contentType = Files.probeContentType(path);
-                    if (contentType == null) contentType = "application/octet-stream";
-                    currentFileInput = Files.newInputStream(path);
-                } else {
-                    filename = nextPart.filename;
-                    contentType = nextPart.contentType;
-                    if (contentType == null) contentType = "application/octet-stream";
-                    currentFileInput = nextPart.stream.get();
+            } while (drains.decrementAndGet() != 0);
+        }
+
+        private void finish() {
+            finished = true;
+            iterator.close();
+        }
+    }
+
+    /**
+     * Turns the parts into buffers: the precomputed headers as they are, and the content of file and stream parts.
+     */
+    class PartsIterator {
+
+        private final Iterator<PartsSpecification> iter;
+        private final long[] fileSizes;
+        private int index = -1;
+
+        private FileChannel currentFile;
+        private Path currentFilePath;
+        private long currentFileRemaining;
+        private InputStream currentFileInput;
+        private boolean finalBoundarySent;
+
+        PartsIterator(List<PartsSpecification> parts, long[] fileSizes) {
+            this.iter = parts.iterator();
+            this.fileSizes = fileSizes;
+        }
+
+        /**
+         * @return the next buffer of the body, or null at the end.
+         */
+        ByteBuffer next() throws IOException {
+            if (currentFile != null) {
+                if (currentFileRemaining > 0) {
+                    return readSlice();
                 }
-                String partHeader =
-                        "--" + boundary + "\r\n" +
-                                "Content-Disposition: form-data; name=" + nextPart.name + "; filename=" + filename + "\r\n" +
-                                "Content-Type: " + contentType + "\r\n\r\n";
-                return partHeader.getBytes(StandardCharsets.UTF_8);
-            } else {
-                byte[] buf = new byte[8192];
+                closeFile();
+                return ByteBuffer.wrap(CRLF);
+            }
+
+            if (currentFileInput != null) {
+                byte[] buf = new byte[STREAM_CHUNK_SIZE];
                 int r = currentFileInput.read(buf);
                 if (r > 0) {
-                    byte[] actualBytes = new byte[r];
-                    System.arraycopy(buf, 0, actualBytes, 0, r);
-                    return actualBytes;
-                } else {
+                    return ByteBuffer.wrap(buf, 0, r);
+                }
+                currentFileInput.close();
+                currentFileInput = null;
+                return ByteBuffer.wrap(CRLF);
+            }
+
+            if (!iter.hasNext()) {
+                if (finalBoundarySent) return null;
+                finalBoundarySent = true;
+                return ByteBuffer.wrap(finalBoundary);
+            }
+
+            PartsSpecification nextPart = iter.next();
+            index++;
+            if (PartsSpecification.TYPE.FILE.equals(nextPart.type)) {
+                openFile(nextPart.path, fileSizes[index]);
+            } else if (PartsSpecification.TYPE.STREAM.equals(nextPart.type)) {
+                currentFileInput = nextPart.stream.get();
+            }
+            return ByteBuffer.wrap(nextPart.header);
+        }
+
+        private void openFile(Path path, long size) throws IOException {
+            currentFile = FileChannel.open(path, StandardOpenOption.READ);
+            currentFilePath = path;
+            currentFileRemaining = size;
+            if (currentFile.size() != size) {
+                closeFile();
+                throw new IOException("The size of " + path + " changed after the request was built.");
+            }
+        }
+
+        /**
+         * Reads the next slice of the current file. Every slice gets its own buffer, since the HttpClient may
+         * still hold a published buffer after it has asked for the next one.
+         */
+        private ByteBuffer readSlice() throws IOException {
+            int length = (int) Math.min(SLICE_SIZE, currentFileRemaining);
+            ByteBuffer slice = currentFileRemaining < DIRECT_THRESHOLD
+                    ? ByteBuffer.allocate(length) : ByteBuffer.allocateDirect(length);
+            while (slice.hasRemaining()) {
+                if (currentFile.read(slice) < 0) {
+                    throw new IOException("The size of " + currentFilePath + " changed after the request was built.");
+                }
+            }
+            currentFileRemaining -= length;
+            return slice.flip();
+        }
+
+        private void closeFile() {
+            try {
+                currentFile.close();
+            } catch (IOException ignored) {
+            }
+            currentFile = null;
+            currentFilePath = null;
+        }
+
+        void close() {
+            if (currentFile != null) {
+                closeFile();
+            }
+            if (currentFileInput != null) {
+                try {
                     currentFileInput.close();
-                    currentFileInput = null;
-                    return "\r\n".getBytes(StandardCharsets.UTF_8);
+                } catch (IOException ignored) {
                 }
+                currentFileInput = null;
             }
         }
     }
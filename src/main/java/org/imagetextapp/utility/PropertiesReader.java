@@ -53,7 +53,9 @@ public class PropertiesReader {
         PROPERTIES = new Properties();
         final URL props = ClassLoader.getSystemResource(PROP_FILE);
         try {
-            PROPERTIES.load(props.openStream());
+            if (props != null) {
+                PROPERTIES.load(props.openStream());
+            }
         } catch (IOException ex) {
 
             if (LOGGER.isDebugEnabled()) {
@@ -88,4 +90,58 @@ public class PropertiesReader {
 
         return VOICERSS_APIKEY;
     }
+
+    /**
+     * Reads an optional configuration value. A JVM system property with the same name
+     * takes precedence over the properties file, which allows settings to be switched at runtime.
+     *
+     * @param name String name of the property.
+     * @param defaultValue Value to use if the property is not set.
+     * @return Return property, or the default value.
+     */
+    public static String getProperty(final String name, final String defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            value = PROPERTIES.getProperty(name);
+        }
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return value.trim();
+    }
+
+    /**
+     * Reads an optional numeric configuration value.
+     *
+     * @param name String name of the property.
+     * @param defaultValue Value to use if the property is not set or is not a number.
+     * @return Return property, or the default value.
+     */
+    public static long getLongProperty(final String name, final long defaultValue) {
+        String value = getProperty(name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException ex) {
+            LOGGER.warn("Property " + name + " is not a number: " + value);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Reads an optional boolean configuration value.
+     *
+     * @param name String name of the property.
+     * @param defaultValue Value to use if the property is not set.
+     * @return Return property, or the default value.
+     */
+    public static boolean getBooleanProperty(final String name, final boolean defaultValue) {
+        String value = getProperty(name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value);
+    }
 }
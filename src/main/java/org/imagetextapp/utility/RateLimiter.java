@@ -0,0 +1,172 @@
+package org.imagetextapp.utility;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket that keeps the requests to a service within its quota.
+ *
+ * Tokens are added at a steady rate up to a burst size, and every request takes one. When the bucket is empty a
+ * request reserves the next token that will be added and waits for it. Since reservations are handed out in the
+ * order of arrival, waiting requests are served first come, first served, and the service sees an even flow at
+ * exactly the configured rate instead of bursts followed by 429 responses.
+ *
+ * Configured per service through <SERVICE>_RATE_LIMIT_PER_MINUTE (default 0: no limit) and
+ * <SERVICE>_RATE_LIMIT_BURST (default 1), e.g. OCR_RATE_LIMIT_PER_MINUTE.
+ */
+public class RateLimiter {
+
+    private static final Map<ServiceType, RateLimiter> INSTANCES = new EnumMap<>(ServiceType.class);
+
+    static {
+        for (ServiceType serviceType : ServiceType.values()) {
+            INSTANCES.put(serviceType, new RateLimiter(
+                    PropertiesReader.getLongProperty(serviceType.getPropertyKey("RATE_LIMIT_PER_MINUTE"), 0),
+                    (int) PropertiesReader.getLongProperty(serviceType.getPropertyKey("RATE_LIMIT_BURST"), 1)));
+        }
+    }
+
+    private final boolean unlimited;
+    private final double nanosPerToken;
+    private final int burst;
+
+    // Negative while requests are waiting: each of them has reserved a token that is yet to be added.
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong delayed = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * @param requestsPerMinute sustained rate; 0 or less disables the limit.
+     * @param burst number of requests that may be sent at once after an idle period.
+     */
+    public RateLimiter(long requestsPerMinute, int burst) {
+        this.unlimited = requestsPerMinute <= 0;
+        this.nanosPerToken = unlimited ? 0 : TimeUnit.MINUTES.toNanos(1) / (double) requestsPerMinute;
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+    }
+
+    /**
+     * @param serviceType a service.
+     * @return the shared limiter of the service, configured from its properties.
+     */
+    public static RateLimiter forService(ServiceType serviceType) {
+        return INSTANCES.get(serviceType);
+    }
+
+    /**
+     * Takes a token, waiting until one is available.
+     * @throws InterruptedException if interrupted while waiting. The reserved token is not returned.
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            waiting.incrementAndGet();
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Non-blocking version of acquire.
+     * @return future that completes when the token is available.
+     */
+    public CompletableFuture<Void> acquireAsync() {
+        long waitNanos = reserve();
+        if (waitNanos <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        waiting.incrementAndGet();
+        return CompletableFuture.runAsync(waiting::decrementAndGet,
+                CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Takes the next token, which may lie in the future.
+     * @return nanoseconds until the token is available.
+     */
+    private long reserve() {
+        acquired.incrementAndGet();
+        if (unlimited) {
+            return 0;
+        }
+
+        long waitNanos;
+        synchronized (this) {
+            refill();
+            tokens -= 1;
+            waitNanos = tokens >= 0 ? 0 : (long) Math.ceil(-tokens * nanosPerToken);
+        }
+
+        if (waitNanos > 0) {
+            delayed.incrementAndGet();
+            totalWaitNanos.addAndGet(waitNanos);
+            maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        }
+        return waitNanos;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefillNanos) / nanosPerToken);
+        lastRefillNanos = now;
+    }
+
+    /**
+     * @return tokens that can be taken right now without waiting; negative if requests are queued.
+     */
+    public synchronized double getAvailableTokens() {
+        if (unlimited) {
+            return Double.POSITIVE_INFINITY;
+        }
+        refill();
+        return tokens;
+    }
+
+    /**
+     * @return number of requests that are currently waiting for a token.
+     */
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    public long getAcquired() {
+        return acquired.get();
+    }
+
+    /**
+     * @return average time that a request waited for its token, over all requests.
+     */
+    public double getAverageWaitMillis() {
+        long count = acquired.get();
+        return count == 0 ? 0 : totalWaitNanos.get() / (double) count / 1_000_000;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        if (unlimited) {
+            return "RateLimiter{unlimited, acquired=" + acquired + '}';
+        }
+        return String.format("RateLimiter{requestsPerMinute=%.1f, burst=%d, availableTokens=%.2f, waiting=%d, " +
+                        "acquired=%d, delayed=%d, averageWaitMillis=%.1f, maxWaitMillis=%.1f}",
+                TimeUnit.MINUTES.toNanos(1) / nanosPerToken, burst, getAvailableTokens(), getWaiting(),
+                getAcquired(), delayed.get(), getAverageWaitMillis(), getMaxWaitMillis());
+    }
+}
@@ -0,0 +1,188 @@
+package org.imagetextapp.utility;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the requests of one service with retries (see RetryPolicy) behind a circuit breaker (see CircuitBreaker).
+ *
+ * A request is retried after connection errors and retryable status codes. Every failed attempt counts towards
+ * the circuit breaker of the service, and while it is open requests fail at once with a CircuitOpenException.
+ * If the last attempt still gets a retryable status code, that response is returned to the caller.
+ * Every attempt takes a token from the RateLimiter of the service before it is sent.
+ */
+public class ResilientSender {
+
+    private static final Map<ServiceType, ResilientSender> INSTANCES = new EnumMap<>(ServiceType.class);
+
+    static {
+        for (ServiceType serviceType : ServiceType.values()) {
+            INSTANCES.put(serviceType, new ResilientSender(serviceType,
+                    RetryPolicy.fromProperties(serviceType), CircuitBreaker.fromProperties(serviceType)));
+        }
+    }
+
+    private final ServiceType serviceType;
+    private final RetryPolicy retryPolicy;
+    private final CircuitBreaker circuitBreaker;
+
+    /**
+     * @param serviceType service that the requests are sent to.
+     * @param retryPolicy when to retry.
+     * @param circuitBreaker breaker of the service.
+     */
+    public ResilientSender(ServiceType serviceType, RetryPolicy retryPolicy, CircuitBreaker circuitBreaker) {
+        this.serviceType = serviceType;
+        this.retryPolicy = retryPolicy;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * @param serviceType a service.
+     * @return the shared sender of the service, configured from its properties.
+     */
+    public static ResilientSender forService(ServiceType serviceType) {
+        return INSTANCES.get(serviceType);
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Sends a request and blocks until a response is received or all attempts failed.
+     * Each attempt runs within the concurrency limit of the service (see ExecutionManager).
+     * @return the response of the last attempt.
+     * @throws IOException if the last attempt failed, or the circuit breaker is open.
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler)
+            throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            if (!circuitBreaker.allowRequest()) {
+                throw new CircuitOpenException(serviceType, circuitBreaker.getRemainingOpenMillis());
+            }
+
+            HttpResponse<T> response;
+            try {
+                RateLimiter.forService(serviceType).acquire();
+                response = sendAttempt(request, bodyHandler);
+            } catch (IOException e) {
+                circuitBreaker.recordFailure();
+                if (attempt >= retryPolicy.getMaxAttempts()) {
+                    throw e;
+                }
+                Thread.sleep(retryPolicy.getDelayMillis(attempt, null));
+                continue;
+            } catch (InterruptedException e) {
+                // Not a failure of the service, but a half-open breaker must not wait for this trial forever.
+                circuitBreaker.releaseTrial();
+                throw e;
+            } catch (RuntimeException e) {
+                circuitBreaker.recordFailure();
+                throw e;
+            }
+
+            if (!retryPolicy.isRetryable(response.statusCode())) {
+                circuitBreaker.recordSuccess();
+                return response;
+            }
+            circuitBreaker.recordFailure();
+            if (attempt >= retryPolicy.getMaxAttempts()) {
+                return response;
+            }
+            discard(response);
+            Thread.sleep(retryPolicy.getDelayMillis(attempt, response));
+        }
+    }
+
+    /**
+     * Non-blocking version of send. Retries are scheduled instead of waited for, and each attempt waits for a
+     * concurrency permit of the service without blocking a thread.
+     * @return future that completes with the response of the last attempt, or exceptionally with the
+     * IOException of the last attempt.
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        sendAsync(request, bodyHandler, 1, result);
+        return result;
+    }
+
+    private <T> void sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler, int attempt,
+                               CompletableFuture<HttpResponse<T>> result) {
+        if (!circuitBreaker.allowRequest()) {
+            result.completeExceptionally(new CircuitOpenException(serviceType, circuitBreaker.getRemainingOpenMillis()));
+            return;
+        }
+
+        RateLimiter.forService(serviceType).acquireAsync()
+                .thenCompose(ready -> ExecutionManager.getInstance().callAsync(serviceType,
+                        () -> HttpClientManager.getInstance().sendAsync(request, bodyHandler)))
+                .whenComplete((response, throwable) -> {
+            if (throwable != null) {
+                circuitBreaker.recordFailure();
+                Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                        ? throwable.getCause() : throwable;
+                if (!(cause instanceof IOException) || attempt >= retryPolicy.getMaxAttempts()) {
+                    result.completeExceptionally(cause);
+                } else {
+                    retryAsync(request, bodyHandler, attempt, retryPolicy.getDelayMillis(attempt, null), result);
+                }
+                return;
+            }
+
+            if (!retryPolicy.isRetryable(response.statusCode())) {
+                circuitBreaker.recordSuccess();
+                result.complete(response);
+                return;
+            }
+            circuitBreaker.recordFailure();
+            if (attempt >= retryPolicy.getMaxAttempts()) {
+                result.complete(response);
+            } else {
+                discard(response);
+                retryAsync(request, bodyHandler, attempt, retryPolicy.getDelayMillis(attempt, response), result);
+            }
+        });
+    }
+
+    private <T> void retryAsync(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler, int attempt,
+                                long delayMillis, CompletableFuture<HttpResponse<T>> result) {
+        CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS)
+                .execute(() -> sendAsync(request, bodyHandler, attempt + 1, result));
+    }
+
+    private <T> HttpResponse<T> sendAttempt(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler)
+            throws IOException, InterruptedException {
+        try {
+            return ExecutionManager.getInstance().call(serviceType, () ->
+                    HttpClientManager.getInstance().send(request, bodyHandler));
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Releases the connection of a response that is not handed to the caller.
+     */
+    private void discard(HttpResponse<?> response) {
+        if (response.body() instanceof Closeable) {
+            try {
+                ((Closeable) response.body()).close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
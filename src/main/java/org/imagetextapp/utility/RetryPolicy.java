@@ -0,0 +1,103 @@
+package org.imagetextapp.utility;
+
+import java.net.http.HttpResponse;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides if and when a failed request to a service is tried again.
+ *
+ * Connection errors and the status codes 408, 429, 500, 502, 503 and 504 are retried. The delay before the next
+ * attempt is the Retry-After of the response if the service sent one, and otherwise a random delay up to an
+ * exponentially growing bound ("full jitter"), so many clients that failed at once do not retry at once.
+ *
+ * Configured per service through <SERVICE>_RETRY_MAX_ATTEMPTS (default 3), <SERVICE>_RETRY_BASE_DELAY_MS
+ * (default 500) and <SERVICE>_RETRY_MAX_DELAY_MS (default 30000), e.g. OCR_RETRY_MAX_ATTEMPTS.
+ */
+public class RetryPolicy {
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    /**
+     * @param maxAttempts number of attempts including the first one; 1 disables retries.
+     * @param baseDelayMillis upper bound of the delay before the second attempt, doubled for every further attempt.
+     * @param maxDelayMillis upper bound of any delay, including a Retry-After of the service.
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * @param serviceType service whose keys are read.
+     * @return the policy configured for the service.
+     */
+    public static RetryPolicy fromProperties(ServiceType serviceType) {
+        return new RetryPolicy(
+                (int) PropertiesReader.getLongProperty(serviceType.getPropertyKey("RETRY_MAX_ATTEMPTS"), 3),
+                PropertiesReader.getLongProperty(serviceType.getPropertyKey("RETRY_BASE_DELAY_MS"), 500),
+                PropertiesReader.getLongProperty(serviceType.getPropertyKey("RETRY_MAX_DELAY_MS"), 30_000));
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param statusCode of a response.
+     * @return true if the service may answer differently when the request is sent again.
+     */
+    public boolean isRetryable(int statusCode) {
+        return statusCode == 408 || statusCode == 429 || statusCode == 500
+                || statusCode == 502 || statusCode == 503 || statusCode == 504;
+    }
+
+    /**
+     * @param attempt number of the attempt that failed, starting at 1.
+     * @param response response of the failed attempt, or null if there was none.
+     * @return milliseconds to wait before the next attempt.
+     */
+    public long getDelayMillis(int attempt, HttpResponse<?> response) {
+        if (response != null) {
+            long retryAfter = getRetryAfterMillis(response);
+            if (retryAfter >= 0) {
+                return Math.min(retryAfter, maxDelayMillis);
+            }
+        }
+
+        long bound = baseDelayMillis << Math.min(attempt - 1, 30);
+        if (bound <= 0 || bound > maxDelayMillis) {
+            bound = maxDelayMillis;
+        }
+        return ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    /**
+     * @return the Retry-After of the response in milliseconds, given either in seconds or as an HTTP date,
+     * or -1 if the response has none.
+     */
+    private long getRetryAfterMillis(HttpResponse<?> response) {
+        String retryAfter = response.headers().firstValue("Retry-After").orElse(null);
+        if (retryAfter == null) {
+            return -1;
+        }
+
+        retryAfter = retryAfter.trim();
+        try {
+            return Math.max(0, Long.parseLong(retryAfter) * 1000);
+        } catch (NumberFormatException e) {
+            // Not a number of seconds, so it should be a date.
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, date.toInstant().toEpochMilli() - System.currentTimeMillis());
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
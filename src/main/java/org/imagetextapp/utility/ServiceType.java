@@ -0,0 +1,37 @@
+package org.imagetextapp.utility;
+
+/**
+ * The remote services (APIs) that the application talks to.
+ * Used as key for per-service settings, such as concurrency limits.
+ * The endpoint of every service can be changed with its <SERVICE>_URL key, e.g. to point it to a stub server.
+ */
+public enum ServiceType {
+
+    OCR("OCR", "https://api.ocr.space/parse/image"),
+    DETECT_LANGUAGE("DETECT_LANGUAGE", "https://ws.detectlanguage.com/0.2/detect"),
+    TRANSLATE("TRANSLATE", "https://google-translate20.p.rapidapi.com/translate"),
+    VOICE("VOICE", "https://api.voicerss.org/");
+
+    private final String propertyPrefix;
+    private final String defaultUrl;
+
+    ServiceType(String propertyPrefix, String defaultUrl) {
+        this.propertyPrefix = propertyPrefix;
+        this.defaultUrl = defaultUrl;
+    }
+
+    /**
+     * @return the endpoint of the service, e.g. the value of OCR_URL or the public OCR API.
+     */
+    public String getUrl() {
+        return PropertiesReader.getProperty(getPropertyKey("URL"), defaultUrl);
+    }
+
+    /**
+     * @param setting name of the setting, e.g. "MAX_CONCURRENT".
+     * @return property key for the setting of this service, e.g. "OCR_MAX_CONCURRENT".
+     */
+    public String getPropertyKey(String setting) {
+        return propertyPrefix + "_" + setting;
+    }
+}
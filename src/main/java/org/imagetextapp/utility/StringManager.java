@@ -2,6 +2,8 @@ package org.imagetextapp.utility;
 
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.StringJoiner;
 
 /**
  * Performs various operations on strings.
@@ -45,6 +47,19 @@ public class StringManager {
         return url + "?q=" + query;
     }
 
+    /**
+     *
+     * @param queries url encoded texts.
+     * @return string in required "application/x-www-form-urlencoded" format, with one q[] value per text.
+     */
+    public String getDetectLanguageBatchForm(List<String> queries) {
+        StringJoiner form = new StringJoiner("&");
+        for (String query : queries) {
+            form.add("q%5B%5D=" + query);
+        }
+        return form.toString();
+    }
+
     /**
      *
      * @param toTranslate string.
@@ -0,0 +1,112 @@
+package org.imagetextapp.apis.ocr;
+
+import net.sourceforge.tess4j.TessAPI;
+import net.sourceforge.tess4j.Tesseract;
+import net.sourceforge.tess4j.TesseractException;
+import org.imagetextapp.utility.PropertiesReader;
+import org.imagetextapp.utility.StringManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * OcrEngine that runs Tesseract in-process (through Tess4J), so text is generated on this computer without
+ * any network calls or request limits. Named "tesseract"; select it with OCR_ENGINE=tesseract.
+ *
+ * Needs the native Tesseract library (e.g. the tesseract-ocr package) and the .traineddata file of every
+ * language in TESSERACT_DATA_PATH (default TESSDATA_PREFIX, or "tessdata"). Tesseract cannot identify the
+ * language itself, so the selected language is always used, or English if its data is missing.
+ *
+ * Only built with "mvn -P tesseract package", which adds Tess4J and registers the engine with ServiceLoader.
+ */
+public class TesseractOcrEngine implements OcrEngine {
+
+    // OCR.space codes that differ from the ISO 639-2/T codes that Tesseract uses.
+    private static final Map<String, String> TESSERACT_CODES = Map.of(
+            "cze", "ces",
+            "dut", "nld",
+            "fre", "fra",
+            "ger", "deu",
+            "chs", "chi_sim",
+            "cht", "chi_tra");
+
+    private final Path dataPath;
+    private volatile Boolean available;
+
+    public TesseractOcrEngine() {
+        String environment = System.getenv("TESSDATA_PREFIX");
+        this.dataPath = Path.of(PropertiesReader.getProperty("TESSERACT_DATA_PATH",
+                environment != null ? environment : "tessdata"));
+    }
+
+    @Override
+    public String getName() {
+        return "tesseract";
+    }
+
+    /**
+     * @return true if the native library can be loaded and there is data for at least English.
+     */
+    @Override
+    public boolean isAvailable() {
+        if (available == null) {
+            try {
+                // Loads the native library.
+                available = hasData("eng") && TessAPI.INSTANCE.TessVersion() != null;
+            } catch (LinkageError e) {
+                System.out.println("The Tesseract library is not available: " + firstLine(e.getMessage()));
+                available = false;
+            }
+        }
+        return available;
+    }
+
+    @Override
+    public OCRObject uploadLocalImage(Path localFile, String language, boolean identifyLanguage) {
+        long start = System.nanoTime();
+        OCRObject ocrObject = new OCRObject();
+        OCRPage page = new OCRPage();
+
+        try {
+            // A Tesseract instance is not thread-safe, so every image gets its own.
+            Tesseract tesseract = new Tesseract();
+            tesseract.setDatapath(dataPath.toString());
+            tesseract.setLanguage(toTesseractLanguage(language));
+
+            // OCR.space separates lines with "\r\n", which the rest of the application expects.
+            String text = tesseract.doOCR(localFile.toFile()).replace("\r\n", "\n").replace("\n", "\r\n");
+            page.setParsedText(text);
+            page.setParsedTextClean(new StringManager().getCleanString(text));
+            ocrObject.setPages(List.of(page));
+            ocrObject.setOcrExitCode(1);
+        } catch (TesseractException | LinkageError | RuntimeException e) {
+            page.setFileParseExitCode(-10);
+            page.setErrorMessage("Tesseract could not read " + localFile.getFileName() + ": " + firstLine(e.getMessage()));
+            ocrObject.setPages(List.of(page));
+            ocrObject.setErrorOnProcessing(true);
+            ocrObject.setErrorMessage(page.getErrorMessage());
+            ocrObject.setOcrExitCode(3);
+        }
+
+        ocrObject.setProcessingTime((int) ((System.nanoTime() - start) / 1_000_000));
+        return ocrObject;
+    }
+
+    /**
+     * @return Tesseract code of the language, or "eng" if there is no data for it.
+     */
+    private String toTesseractLanguage(String ocrCode) {
+        String code = ocrCode == null ? "eng" : TESSERACT_CODES.getOrDefault(ocrCode, ocrCode);
+        return hasData(code) ? code : "eng";
+    }
+
+    private String firstLine(String message) {
+        return message == null ? "" : message.lines().findFirst().orElse("").strip();
+    }
+
+    private boolean hasData(String tesseractCode) {
+        return Files.isRegularFile(dataPath.resolve(tesseractCode + ".traineddata"));
+    }
+}
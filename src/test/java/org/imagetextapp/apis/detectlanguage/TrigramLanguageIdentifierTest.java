@@ -0,0 +1,70 @@
+package org.imagetextapp.apis.detectlanguage;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the local language identification, with sentences that are not part of the sample texts.
+ */
+public class TrigramLanguageIdentifierTest {
+
+    private final TrigramLanguageIdentifier languageIdentifier = new TrigramLanguageIdentifier(null, 5);
+
+    private void assertLanguage(String expected, String text) {
+        DetectLanguageObject detectLanguageObject = languageIdentifier.identifyLanguage(text);
+        assertFalse(detectLanguageObject.isErrorOnProcessing());
+        assertEquals(expected, detectLanguageObject.getLanguage(false));
+    }
+
+    @Test
+    public void identifiesSupportedLanguages() {
+        assertLanguage("en", "The quick brown fox jumps over the lazy dog while the farmer watches from his window.");
+        assertLanguage("de", "Der schnelle braune Fuchs springt über den faulen Hund, während der Bauer aus dem Fenster schaut.");
+        assertLanguage("fr", "Le renard brun rapide saute par-dessus le chien paresseux pendant que le fermier regarde par la fenêtre.");
+        assertLanguage("es", "El rápido zorro marrón salta sobre el perro perezoso mientras el granjero mira por la ventana.");
+        assertLanguage("sv", "Den snabba bruna räven hoppar över den lata hunden medan bonden tittar ut genom fönstret.");
+        assertLanguage("fi", "Nopea ruskea kettu hyppää laiskan koiran yli, kun maanviljelijä katsoo ikkunasta.");
+        assertLanguage("pl", "Szybki brązowy lis przeskakuje nad leniwym psem, a rolnik patrzy przez okno.");
+        assertLanguage("tr", "Hızlı kahverengi tilki tembel köpeğin üzerinden atlarken çiftçi pencereden bakıyor.");
+    }
+
+    @Test
+    public void longerTextsAreMoreReliable() {
+        DetectLanguageObject shortText = languageIdentifier.identifyLanguage("Hello");
+        DetectLanguageObject longText = languageIdentifier.identifyLanguage(
+                "Invoice number 4711. The payment is due within thirty days of receipt of this invoice.");
+
+        assertFalse(shortText.isReliable());
+        assertTrue(longText.isReliable());
+        assertTrue(longText.getConfidence() > shortText.getConfidence());
+    }
+
+    @Test
+    public void textWithoutLettersIsAnError() {
+        assertTrue(languageIdentifier.identifyLanguage("4711 - 12.50 = ?").isErrorOnProcessing());
+    }
+
+    @Test
+    public void unreliableResultsUseTheFallback() {
+        AtomicInteger fallbackCalls = new AtomicInteger();
+        DetectLanguageObject remote = new DetectLanguageObject();
+        remote.setLanguage("en");
+        remote.setReliable(true);
+        TrigramLanguageIdentifier withFallback = new TrigramLanguageIdentifier(text -> {
+            fallbackCalls.incrementAndGet();
+            return CompletableFuture.completedFuture(remote);
+        }, 5);
+
+        withFallback.identifyLanguage("Den snabba bruna räven hoppar över den lata hunden medan bonden tittar ut genom fönstret.");
+        assertEquals(0, fallbackCalls.get());
+
+        assertEquals("en", withFallback.identifyLanguage("Hello").getLanguage(false));
+        assertEquals(1, fallbackCalls.get());
+    }
+}
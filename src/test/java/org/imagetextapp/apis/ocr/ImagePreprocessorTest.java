@@ -0,0 +1,70 @@
+package org.imagetextapp.apis.ocr;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the shrinking of images before they are uploaded.
+ */
+public class ImagePreprocessorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void transparentBackgroundBecomesWhite() {
+        BufferedImage image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.BLACK);
+        graphics.fillRect(40, 40, 20, 20);
+        graphics.dispose();
+
+        BufferedImage gray = ImagePreprocessor.toGrayscale(image);
+
+        assertEquals(BufferedImage.TYPE_BYTE_GRAY, gray.getType());
+        assertEquals(255, gray.getRaster().getSample(0, 0, 0));
+        assertEquals(0, gray.getRaster().getSample(50, 50, 0));
+    }
+
+    @Test
+    public void qualityIsNotLoweredBelowTheMinimum() {
+        float quality = 0.85f;
+        for (int i = 0; i < 10; i++) {
+            quality = ImagePreprocessor.lowerQuality(quality);
+            assertTrue("Quality " + quality, quality >= 0.5f);
+        }
+        assertEquals(0.5f, quality, 0f);
+    }
+
+    @Test
+    public void resolutionIsNotLoweredBelowTheMinimum() throws Exception {
+        // Noise does not compress, so no image of a readable size fits in 100 bytes.
+        BufferedImage image = new BufferedImage(1200, 900, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(1);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        Path file = folder.newFile("noise.png").toPath();
+        ImageIO.write(image, "png", file.toFile());
+
+        PreprocessResult result = new ImagePreprocessor(1000, 100).preprocess(file);
+
+        assertTrue(result.isProcessed());
+        BufferedImage processed = ImageIO.read(result.getFile().toFile());
+        assertTrue(Math.max(processed.getWidth(), processed.getHeight()) >= ImagePreprocessor.MIN_DIMENSION);
+        result.deleteProcessedFile();
+    }
+}
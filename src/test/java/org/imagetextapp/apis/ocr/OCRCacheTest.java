@@ -0,0 +1,48 @@
+package org.imagetextapp.apis.ocr;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of the on-disk tier of the OCR cache.
+ */
+public class OCRCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void pagesSurviveARestart() throws Exception {
+        String directory = folder.getRoot().toString();
+        OCRCache cache = new OCRCache(1024 * 1024, directory);
+        String key = cache.createKey("pdf".getBytes(StandardCharsets.UTF_8), "eng", "2", false);
+
+        OCRObject ocrObject = new OCRObject();
+        ocrObject.setPages(List.of(page(1, "First page\r\n"), page(2, "Second page\r\n")));
+        ocrObject.setProcessingTime(42);
+        cache.put(key, ocrObject);
+
+        // A new cache with the same directory only has the entry on disk, as after restarting the application.
+        OCRObject stored = new OCRCache(1024 * 1024, directory).get(key);
+
+        assertEquals(2, stored.getPageCount());
+        assertEquals(2, stored.getPages().get(1).getPageNumber());
+        assertEquals("Second page\r\n", stored.getPages().get(1).getParsedText());
+        assertEquals(ocrObject.getParsedText(), stored.getParsedText());
+        assertEquals(42, stored.getProcessingTime());
+    }
+
+    private OCRPage page(int pageNumber, String text) {
+        OCRPage page = new OCRPage();
+        page.setPageNumber(pageNumber);
+        page.setParsedText(text);
+        page.setParsedTextClean(text.strip());
+        return page;
+    }
+}
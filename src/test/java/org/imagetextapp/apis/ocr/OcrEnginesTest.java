@@ -0,0 +1,82 @@
+package org.imagetextapp.apis.ocr;
+
+import org.imagetextapp.batch.OcrEngineComparison;
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests of the selection of OCR engines and of the error rate used to compare them.
+ */
+public class OcrEnginesTest {
+
+    @After
+    public void clearEngine() {
+        System.clearProperty("OCR_ENGINE");
+    }
+
+    @Test
+    public void selectedEngineIsUsedWhenItCanRun() {
+        FakeEngine local = new FakeEngine("local", true);
+        System.setProperty("OCR_ENGINE", "local");
+
+        OcrEngines engines = new OcrEngines(List.of(local));
+
+        assertEquals(List.of(OcrEngines.DEFAULT_ENGINE, "local"), engines.getNames());
+        assertSame(local, engines.getDefault());
+    }
+
+    @Test
+    public void ocrSpaceIsUsedWhenTheSelectedEngineCannotRun() {
+        System.setProperty("OCR_ENGINE", "local");
+
+        OcrEngines engines = new OcrEngines(List.of(new FakeEngine("local", false)));
+
+        assertEquals(OcrEngines.DEFAULT_ENGINE, engines.getDefault().getName());
+    }
+
+    @Test
+    public void ocrSpaceCannotBeReplaced() {
+        OcrEngines engines = new OcrEngines(List.of(new FakeEngine(OcrEngines.DEFAULT_ENGINE, true)));
+
+        assertEquals(1, engines.getAll().size());
+        assertEquals(OCRHandler.class, engines.getDefault().getClass());
+    }
+
+    @Test
+    public void errorRateIgnoresWhitespaceLayout() {
+        assertEquals(0.0, OcrEngineComparison.characterErrorRate("Hello world", "Hello\r\n  world\r\n"), 0.0001);
+        assertEquals(0.2, OcrEngineComparison.characterErrorRate("abcde", "abXde"), 0.0001);
+        assertEquals(1.0, OcrEngineComparison.characterErrorRate("abc", ""), 0.0001);
+    }
+
+    private static class FakeEngine implements OcrEngine {
+        private final String name;
+        private final boolean available;
+
+        private FakeEngine(String name, boolean available) {
+            this.name = name;
+            this.available = available;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return available;
+        }
+
+        @Override
+        public OCRObject uploadLocalImage(Path localFile, String language, boolean identifyLanguage) {
+            return new OCRObject();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.imagetextapp.apis.ocr;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of the cutting of images into bands and the stitching of their texts.
+ */
+public class TiledOCRHandlerTest {
+
+    @Test
+    public void bandsWithoutBlankRowsOverlapAndCoverTheImage() {
+        List<int[]> bounds = new TiledOCRHandler(1000, 100).getTileBounds(new boolean[2500]);
+
+        assertEquals(3, bounds.size());
+        assertArrayEquals(new int[]{0, 1000}, bounds.get(0));
+        assertArrayEquals(new int[]{900, 1900}, bounds.get(1));
+        assertArrayEquals(new int[]{1800, 2500}, bounds.get(2));
+    }
+
+    @Test
+    public void bandsEndInTheLargestGapBetweenLines() {
+        // Lines of 30 rows with gaps of 10 rows, and a paragraph break of 40 rows after row 700.
+        boolean[] blankRows = new boolean[1600];
+        for (int y = 30; y < blankRows.length; y += 40) {
+            for (int gap = y; gap < Math.min(y + 10, blankRows.length); gap++) {
+                blankRows[gap] = true;
+            }
+        }
+        for (int y = 700; y < 740; y++) {
+            blankRows[y] = true;
+        }
+
+        List<int[]> bounds = new TiledOCRHandler(1000, 100).getTileBounds(blankRows);
+
+        assertEquals(2, bounds.size());
+        assertArrayEquals(new int[]{0, 700}, bounds.get(0));
+        assertArrayEquals(new int[]{740, 1590}, bounds.get(1));
+    }
+
+    @Test
+    public void blankMarginsDoNotMoveTheBands() {
+        boolean[] page = new boolean[1600];
+        for (int y = 700; y < 740; y++) {
+            page[y] = true;
+        }
+        // The same page with 300 blank rows above it and 50 below.
+        boolean[] withMargins = new boolean[1950];
+        for (int y = 0; y < withMargins.length; y++) {
+            withMargins[y] = y < 300 || y >= 1900 || page[y - 300];
+        }
+
+        TiledOCRHandler handler = new TiledOCRHandler(1000, 100);
+        List<int[]> bounds = handler.getTileBounds(page);
+        List<int[]> shifted = handler.getTileBounds(withMargins);
+
+        assertEquals(bounds.size(), shifted.size());
+        for (int i = 0; i < bounds.size(); i++) {
+            assertArrayEquals(new int[]{bounds.get(i)[0] + 300, bounds.get(i)[1] + 300}, shifted.get(i));
+        }
+    }
+
+    @Test
+    public void linesReadTwiceAreStitchedOnce() {
+        String first = "Title of the page\r\nFirst line of text\r\nSecond line of text\r\n";
+        String second = "Second line of text\r\nThird line of text\r\n";
+
+        String text = new TiledOCRHandler(1000, 100).stitch(List.of(first, second));
+
+        assertEquals("Title of the page\r\nFirst line of text\r\nSecond line of text\r\nThird line of text\r\n", text);
+    }
+
+    @Test
+    public void linesCutByTheEdgeOfABandAreLeftOut() {
+        String first = "First line of text\nSecond line of text\n.,;'";
+        String second = "~~\nSecond line of text\nThird line of text\n";
+
+        String text = new TiledOCRHandler(1000, 100).stitch(List.of(first, second));
+
+        assertEquals("First line of text\nSecond line of text\nThird line of text\n", text);
+    }
+
+    @Test
+    public void bandsWithoutOverlappingTextAreJoined() {
+        String text = new TiledOCRHandler(1000, 0).stitch(List.of("One\n", "-\n", "-\nTwo\n"));
+
+        assertEquals("One\n-\n-\nTwo\n", text);
+    }
+}
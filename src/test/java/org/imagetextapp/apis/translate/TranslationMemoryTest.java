@@ -0,0 +1,76 @@
+package org.imagetextapp.apis.translate;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the chunking of long texts and the reassembly of their translations.
+ */
+public class TranslationMemoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TranslationMemory.Lookup lookup(String text) {
+        return new TranslationMemory(1000, TimeUnit.HOURS.toMillis(1), null).lookup(text, "sv", "en");
+    }
+
+    @Test
+    public void chunksStayWithinLimitAndPreferParagraphBreaks() {
+        String text = "One one one. Two two two.\nThree three three.\n\nFour four four. Five five five.";
+
+        List<List<String>> chunks = lookup(text).getMissingChunks(50);
+
+        assertEquals(List.of(List.of("One one one.", "Two two two.", "Three three three."),
+                List.of("Four four four.", "Five five five.")), chunks);
+        for (List<String> chunk : chunks) {
+            assertTrue(String.join("\n", chunk).length() <= 50);
+        }
+    }
+
+    @Test
+    public void repeatedSentencesAreSentOnce() {
+        List<List<String>> chunks = lookup("Hello there.\nHello there.\nGoodbye.").getMissingChunks(10);
+
+        assertEquals(List.of(List.of("Hello there."), List.of("Goodbye.")), chunks);
+    }
+
+    @Test
+    public void chunkTranslationsKeepLayout() {
+        TranslationMemory.Lookup lookup = lookup("  First line. Second.\n\nThird line.\n");
+        List<List<String>> chunks = lookup.getMissingChunks(16);
+        assertEquals(3, chunks.size());
+
+        // Translations arrive out of order.
+        assertTrue(lookup.addTranslations(chunks.get(2), "Tredje raden."));
+        assertTrue(lookup.addTranslations(chunks.get(0), "Första raden."));
+        assertTrue(lookup.addTranslations(chunks.get(1), "Andra."));
+
+        assertTrue(lookup.isComplete());
+        assertEquals("  Första raden. Andra.\n\nTredje raden.\n", lookup.assemble());
+    }
+
+    @Test
+    public void compactedFileKeepsTheLatestSentences() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("memory.jsonl");
+        TranslationMemory memory = new TranslationMemory(2, TimeUnit.HOURS.toMillis(1), file.toString());
+        for (int i = 1; i <= 5; i++) {
+            memory.lookup("Sentence " + i + ".", "sv", "en").addTranslation("Sentence " + i + ".", "Mening " + i + ".");
+        }
+
+        // Compacted after the fifth line, which was more than twice the two entries.
+        assertEquals(2, Files.readAllLines(file).size());
+        TranslationMemory reloaded = new TranslationMemory(2, TimeUnit.HOURS.toMillis(1), file.toString());
+        assertTrue(reloaded.lookup("Sentence 4. Sentence 5.", "sv", "en").isComplete());
+        assertEquals("Mening 5.", reloaded.lookup("Sentence 5.", "sv", "en").assemble());
+    }
+}
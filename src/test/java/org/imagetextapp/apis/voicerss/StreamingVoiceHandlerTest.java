@@ -0,0 +1,36 @@
+package org.imagetextapp.apis.voicerss;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the splitting of long texts into chunks that are read out one after another.
+ */
+public class StreamingVoiceHandlerTest {
+
+    @Test
+    public void splitsAtSentencesWithShortFirstChunk() {
+        String text = "First sentence here. Second one follows.\r\nThird sentence is on a new line. Fourth.";
+
+        List<String> chunks = new StreamingVoiceHandler(80, 3).split(text);
+
+        assertEquals(List.of("First sentence here.", "Second one follows. Third sentence is on a new line. Fourth."), chunks);
+    }
+
+    @Test
+    public void splitsLongSentencesBetweenWords() {
+        String text = "word ".repeat(100).trim() + ".";
+
+        List<String> chunks = new StreamingVoiceHandler(40, 3).split(text);
+
+        assertEquals(text, String.join(" ", chunks));
+        for (String chunk : chunks) {
+            assertTrue(chunk, chunk.length() <= 40);
+        }
+        assertTrue(chunks.get(0).length() <= 10);
+    }
+}
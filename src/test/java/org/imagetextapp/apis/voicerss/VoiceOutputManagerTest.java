@@ -0,0 +1,58 @@
+package org.imagetextapp.apis.voicerss;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the handing out and cleaning up of voice files.
+ */
+public class VoiceOutputManagerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void fileIsDeletedAfterLastRelease() throws Exception {
+        VoiceOutputManager manager = new VoiceOutputManager(folder.getRoot().toPath(), 60_000);
+        VoiceOutput first = manager.create();
+        VoiceOutput second = manager.create();
+        assertNotEquals(first.getFile(), second.getFile());
+
+        Files.writeString(first.getFile(), "voice");
+        first.retain();
+        first.release();
+        assertTrue(Files.exists(first.getFile()));
+
+        first.release();
+        assertFalse(Files.exists(first.getFile()));
+        assertEquals(1, manager.getOpenOutputs());
+    }
+
+    @Test
+    public void onlyOldFilesThatAreNotInUseAreCleanedUp() throws Exception {
+        VoiceOutputManager manager = new VoiceOutputManager(folder.getRoot().toPath(), 60_000);
+        FileTime old = FileTime.fromMillis(System.currentTimeMillis() - 120_000);
+
+        Path leftBehind = folder.newFile("voice-left-behind.wav").toPath();
+        Files.setLastModifiedTime(leftBehind, old);
+        Path recent = folder.newFile("voice-recent.wav").toPath();
+        VoiceOutput inUse = manager.create();
+        Files.writeString(inUse.getFile(), "voice");
+        Files.setLastModifiedTime(inUse.getFile(), old);
+
+        assertEquals(1, manager.cleanUp());
+        assertFalse(Files.exists(leftBehind));
+        assertTrue(Files.exists(recent));
+        assertTrue(Files.exists(inUse.getFile()));
+    }
+}
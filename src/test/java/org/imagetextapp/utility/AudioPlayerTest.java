@@ -0,0 +1,66 @@
+package org.imagetextapp.utility;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of how the audio of a .wav file is found among its chunks.
+ */
+public class AudioPlayerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void audioIsFoundBetweenOtherChunks() throws Exception {
+        ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+        chunks.writeBytes(chunk("fmt ", new byte[16]));
+        // Odd size, followed by a pad byte.
+        chunks.writeBytes(chunk("LIST", new byte[5]));
+        int dataOffset = 12 + chunks.size() + 8;
+        chunks.writeBytes(chunk("data", new byte[]{1, 2, 3, 4}));
+        chunks.writeBytes(chunk("LIST", "INFOISFT".getBytes(StandardCharsets.US_ASCII)));
+
+        assertEquals(dataOffset, findDataChunk(wav(chunks.toByteArray())));
+    }
+
+    @Test
+    public void fileWithoutAudioHasNoDataChunk() throws Exception {
+        assertEquals(-1, findDataChunk(wav(chunk("fmt ", new byte[16]))));
+    }
+
+    private long findDataChunk(Path file) throws Exception {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return AudioPlayer.findDataChunk(channel);
+        }
+    }
+
+    private Path wav(byte[] chunks) throws Exception {
+        ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        header.put("RIFF".getBytes(StandardCharsets.US_ASCII)).putInt(4 + chunks.length)
+                .put("WAVE".getBytes(StandardCharsets.US_ASCII));
+
+        Path file = folder.newFile().toPath();
+        Files.write(file, header.array());
+        Files.write(file, chunks, StandardOpenOption.APPEND);
+        return file;
+    }
+
+    private byte[] chunk(String id, byte[] content) {
+        ByteBuffer chunk = ByteBuffer.allocate(8 + content.length + (content.length & 1)).order(ByteOrder.LITTLE_ENDIAN);
+        chunk.put(id.getBytes(StandardCharsets.US_ASCII)).putInt(content.length).put(content);
+        return chunk.array();
+    }
+}
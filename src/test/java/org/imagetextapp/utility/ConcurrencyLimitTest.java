@@ -0,0 +1,99 @@
+package org.imagetextapp.utility;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the permits shared by blocking and non-blocking calls.
+ */
+public class ConcurrencyLimitTest {
+
+    @Test
+    public void asyncCallersWaitForAPermit() {
+        ConcurrencyLimit limit = new ConcurrencyLimit(2);
+
+        List<CompletableFuture<Void>> permits = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            permits.add(limit.acquireAsync());
+        }
+
+        assertTrue(permits.get(0).isDone());
+        assertTrue(permits.get(1).isDone());
+        assertFalse(permits.get(2).isDone());
+        assertEquals(2, limit.getWaiting());
+
+        limit.release();
+        assertTrue(permits.get(2).isDone());
+        assertFalse(permits.get(3).isDone());
+    }
+
+    @Test
+    public void cancelledWaiterIsSkipped() {
+        ConcurrencyLimit limit = new ConcurrencyLimit(1);
+        limit.acquireAsync();
+        CompletableFuture<Void> cancelled = limit.acquireAsync();
+        CompletableFuture<Void> next = limit.acquireAsync();
+
+        cancelled.cancel(false);
+        limit.release();
+
+        assertTrue(next.isDone());
+        assertEquals(0, limit.getAvailablePermits());
+    }
+
+    @Test
+    public void blockingCallerGetsPermitReleasedByAsyncCall() throws Exception {
+        ConcurrencyLimit limit = new ConcurrencyLimit(1);
+        limit.acquireAsync();
+
+        Thread caller = new Thread(() -> {
+            try {
+                limit.acquire();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        caller.start();
+        while (limit.getWaiting() == 0) {
+            Thread.sleep(10);
+        }
+        limit.release();
+        caller.join(5_000);
+
+        assertFalse(caller.isAlive());
+        assertEquals(0, limit.getAvailablePermits());
+    }
+
+    @Test
+    public void interruptedCallerDoesNotKeepAPermit() throws Exception {
+        ConcurrencyLimit limit = new ConcurrencyLimit(1);
+        limit.acquireAsync();
+
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread caller = new Thread(() -> {
+            try {
+                limit.acquire();
+            } catch (InterruptedException e) {
+                thrown.set(e);
+            }
+        });
+        caller.start();
+        while (limit.getWaiting() == 0) {
+            Thread.sleep(10);
+        }
+        caller.interrupt();
+        caller.join(5_000);
+        limit.release();
+
+        assertTrue(thrown.get() instanceof InterruptedException);
+        assertEquals(1, limit.getAvailablePermits());
+        assertTrue(limit.acquireAsync().isDone());
+    }
+}
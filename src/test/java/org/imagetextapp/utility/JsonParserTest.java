@@ -0,0 +1,139 @@
+package org.imagetextapp.utility;
+
+import org.imagetextapp.apis.detectlanguage.DetectLanguageObject;
+import org.imagetextapp.apis.ocr.OCRObject;
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the parsing of responses with several texts or pages.
+ */
+public class JsonParserTest {
+
+    private InputStream body(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void mapsDetectionsPerText() {
+        String json = "{\"data\":{\"detections\":["
+                + "[{\"language\":\"en\",\"isReliable\":true,\"confidence\":11.94},{\"language\":\"sco\",\"isReliable\":false,\"confidence\":2.31}],"
+                + "[],"
+                + "[{\"language\":\"sv\",\"isReliable\":false,\"confidence\":4.5}]]}}";
+
+        List<DetectLanguageObject> detections = new JsonParser().parseDetectLanguageResponses(body(json), 3);
+
+        assertEquals(3, detections.size());
+        assertEquals("en", detections.get(0).getLanguage(false));
+        assertEquals("High.", detections.get(0).getReliable());
+        assertTrue(detections.get(1).isErrorOnProcessing());
+        assertEquals("sv", detections.get(2).getLanguage(false));
+        assertEquals(4.5f, detections.get(2).getConfidence(), 0.001f);
+    }
+
+    @Test
+    public void acceptsSingleTextFormat() {
+        String json = "{\"data\":{\"detections\":[{\"language\":\"de\",\"isReliable\":true,\"confidence\":9.1}]}}";
+
+        List<DetectLanguageObject> detections = new JsonParser().parseDetectLanguageResponses(body(json), 1);
+
+        assertFalse(detections.get(0).isErrorOnProcessing());
+        assertEquals("de", detections.get(0).getLanguage(false));
+    }
+
+    @Test
+    public void missingDetectionsAreErrors() {
+        String json = "{\"error\":{\"code\":1,\"message\":\"Invalid API key\"}}";
+
+        List<DetectLanguageObject> detections = new JsonParser().parseDetectLanguageResponses(body(json), 2);
+
+        assertTrue(detections.get(0).isErrorOnProcessing());
+        assertTrue(detections.get(1).isErrorOnProcessing());
+    }
+
+    @Test
+    public void keepsEveryPageOfOcrResponse() {
+        String json = "{\"ParsedResults\":["
+                + "{\"TextOrientation\":\"0\",\"FileParseExitCode\":1,\"ParsedText\":\"First page\\r\\n\"},"
+                + "{\"TextOrientation\":\"90\",\"FileParseExitCode\":1,\"ParsedText\":\"Second page\"}],"
+                + "\"OCRExitCode\":1,\"IsErroredOnProcessing\":false,\"ProcessingTimeInMilliseconds\":\"420\"}";
+
+        OCRObject ocrObject = new JsonParser().parseOCRResponse(body(json));
+
+        assertEquals(2, ocrObject.getPageCount());
+        assertEquals(2, ocrObject.getPages().get(1).getPageNumber());
+        assertEquals(90, ocrObject.getPages().get(1).getTextOrientation());
+        assertEquals("First page\r\nSecond page", ocrObject.getParsedText());
+        assertEquals("First page Second page", ocrObject.getParsedTextClean());
+    }
+
+    @Test
+    public void cleanTextOfPagesMatchesCleanTextOfWholeText() {
+        String json = "{\"ParsedResults\":["
+                + "{\"ParsedText\":\"One\\r\\ntwo\\r\"},{\"ParsedText\":\"three\"},{\"ParsedText\":\"\\nfour\\r\\n\"},"
+                + "{\"ParsedText\":\"five\"}],\"OCRExitCode\":1,\"IsErroredOnProcessing\":false}";
+
+        OCRObject ocrObject = new JsonParser().parseOCRResponse(body(json));
+
+        assertEquals(new StringManager().getCleanString(ocrObject.getParsedText()), ocrObject.getParsedTextClean());
+        assertEquals("One two three  four five", ocrObject.getParsedTextClean());
+    }
+
+    @Test
+    public void missingSeparatorsAreErrors() {
+        assertMalformed("{\"a\" \"b\"}");
+        assertMalformed("[1 2]");
+        assertMalformed("{\"a\":1 \"b\":2}");
+    }
+
+    @Test
+    public void misplacedSeparatorsAreErrors() {
+        assertMalformed("{,\"a\"::1}");
+        assertMalformed("{\"a\"::1}");
+        assertMalformed("[,1]");
+        assertMalformed("[1,]");
+        assertMalformed("{\"a\":1,}");
+        assertMalformed("{\"a\",1}");
+        assertMalformed("[1:2]");
+    }
+
+    @Test
+    public void skipsWellFormedDocument() throws IOException {
+        skipDocument(" { \"a\" : [ 1 , { \"b\" : null } , [ ] ] , \"c\" : \"d\" , \"e\" : { } } ");
+    }
+
+    @Test
+    public void malformedOcrResponseIsError() {
+        String json = "{\"ParsedResults\":[{\"ParsedText\":\"Text\"}] \"OCRExitCode\":1}";
+
+        assertTrue(new JsonParser().parseOCRResponse(body(json)).isErrorOnProcessing());
+    }
+
+    private void assertMalformed(String json) {
+        try {
+            skipDocument(json);
+            fail("Expected " + json + " to be rejected.");
+        } catch (JSONException | IOException expected) {
+            // Rejected.
+        }
+    }
+
+    private void skipDocument(String json) throws IOException {
+        try (JsonStreamReader reader = new JsonStreamReader(new StringReader(json))) {
+            reader.skipValue();
+            assertEquals(JsonStreamReader.Token.END_DOCUMENT, reader.peek());
+        }
+    }
+}
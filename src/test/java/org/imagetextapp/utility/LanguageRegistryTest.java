@@ -0,0 +1,56 @@
+package org.imagetextapp.utility;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests of the lookups between the language codes of the different APIs.
+ */
+public class LanguageRegistryTest {
+
+    private final LanguageRegistry languageRegistry = LanguageRegistry.getInstance();
+
+    @Test
+    public void containsAllSupportedLanguages() {
+        assertEquals(16, languageRegistry.getLanguages().size());
+        assertEquals(28, languageRegistry.getVoiceLocales().size());
+    }
+
+    @Test
+    public void mapsBetweenCodes() {
+        LanguageRegistry.Language german = languageRegistry.fromDetectCode("de");
+
+        assertEquals("German", german.getName());
+        assertEquals("ger", german.getOcrCode());
+        assertEquals("de", german.getTranslateCode());
+        assertEquals("de-de", german.getDefaultVoiceLocale().getCode());
+        assertSame(german, languageRegistry.fromOcrCode("ger"));
+        assertSame(german, languageRegistry.fromTranslateCode("de"));
+        assertSame(german, languageRegistry.fromVoiceCode("de-ch").getLanguage());
+        assertNull(languageRegistry.fromDetectCode("xx"));
+    }
+
+    @Test
+    public void indexesMatchTheOrderOfTheLists() {
+        for (int i = 0; i < languageRegistry.getLanguages().size(); i++) {
+            assertEquals(i, languageRegistry.getLanguages().get(i).getIndex());
+        }
+        LanguageRegistry.VoiceLocale americanEnglish = languageRegistry.fromVoiceCode("en-us");
+        assertSame(americanEnglish, languageRegistry.getVoiceLocales().get(americanEnglish.getIndex()));
+        assertEquals(10, americanEnglish.getIndex());
+    }
+
+    @Test
+    public void mapperKeepsItsResults() {
+        LanguageCodeMapper languageCodeMapper = new LanguageCodeMapper();
+
+        assertEquals("Slovenian", languageCodeMapper.getFullDetectedLanguage("sl"));
+        assertEquals("pt-br", languageCodeMapper.getDetectLanguageToVoiceCode("pt"));
+        assertEquals("nl", languageCodeMapper.getDetectLanguageToTranslateCode("nl"));
+        assertEquals("Unsupported language.", languageCodeMapper.getFullDetectedLanguage("ja"));
+        assertEquals("Unsupported Code Conversion.", languageCodeMapper.getDetectLanguageToVoiceCode("ja"));
+    }
+}
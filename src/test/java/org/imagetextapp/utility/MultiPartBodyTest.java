@@ -0,0 +1,136 @@
+package org.imagetextapp.utility;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the bytes published for the parts of a multipart body.
+ */
+public class MultiPartBodyTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void publishedBytesMatchContentLength() throws Exception {
+        // Larger than a slice, so the file is read in several buffers.
+        Path largeFile = file("large.bin", 600 * 1024 + 7);
+        Path smallFile = file("small.bin", 1000);
+        MultiPartBody multiPartBody = new MultiPartBody()
+                .addPart("language", "eng")
+                .addPart("file", largeFile)
+                .addPart("small", smallFile);
+
+        HttpRequest.BodyPublisher publisher = multiPartBody.build();
+        byte[] body = publish(publisher);
+
+        assertEquals(publisher.contentLength(), body.length);
+        assertContains(body, Files.readAllBytes(largeFile));
+        assertContains(body, Files.readAllBytes(smallFile));
+        assertTrue(new String(body, StandardCharsets.UTF_8).endsWith("--" + multiPartBody.getBoundary() + "--"));
+    }
+
+    @Test
+    public void streamPartIsPublishedWithUnknownLength() throws Exception {
+        byte[] content = new byte[20_000];
+        new Random(2).nextBytes(content);
+        Path file = file("file.bin", 100 * 1024);
+        MultiPartBody multiPartBody = new MultiPartBody()
+                .addPart("file", file)
+                .addPart("audio", () -> new ByteArrayInputStream(content), "audio.wav", "audio/wav")
+                .addPart("language", "eng");
+
+        HttpRequest.BodyPublisher publisher = multiPartBody.build();
+        byte[] body = publish(publisher);
+
+        assertEquals(-1, publisher.contentLength());
+        // The same parts without the stream, plus the stream content and its part header and line break.
+        long withoutStream = new MultiPartBody().addPart("file", file).addPart("language", "eng").build().contentLength();
+        String streamHeader = "--" + multiPartBody.getBoundary() + "\r\nContent-Disposition: form-data; name=audio; "
+                + "filename=audio.wav\r\nContent-Type: audio/wav\r\n\r\n";
+        assertEquals(withoutStream + streamHeader.length() + content.length + 2, body.length);
+        assertContains(body, content);
+        assertContains(body, Files.readAllBytes(file));
+    }
+
+    @Test
+    public void publishingTwiceGivesTheSameBytes() throws Exception {
+        HttpRequest.BodyPublisher publisher = new MultiPartBody().addPart("file", file("file.bin", 300 * 1024)).build();
+
+        assertArrayEquals(publish(publisher), publish(publisher));
+    }
+
+    private Path file(String name, int size) throws Exception {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        Path file = folder.getRoot().toPath().resolve(name);
+        Files.write(file, content);
+        return file;
+    }
+
+    /**
+     * Subscribes like the HttpClient, one buffer at a time.
+     */
+    private byte[] publish(HttpRequest.BodyPublisher publisher) throws Exception {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        CompletableFuture<byte[]> done = new CompletableFuture<>();
+        publisher.subscribe(new Flow.Subscriber<ByteBuffer>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                byte[] bytes = new byte[item.remaining()];
+                item.get(bytes);
+                body.writeBytes(bytes);
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(body.toByteArray());
+            }
+        });
+        return done.get(10, TimeUnit.SECONDS);
+    }
+
+    private void assertContains(byte[] body, byte[] content) {
+        for (int start = 0; start + content.length <= body.length; start++) {
+            int i = 0;
+            while (i < content.length && body[start + i] == content[i]) {
+                i++;
+            }
+            if (i == content.length) {
+                return;
+            }
+        }
+        throw new AssertionError("The body does not contain the " + content.length + " bytes of the part.");
+    }
+}
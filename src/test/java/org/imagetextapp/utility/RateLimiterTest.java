@@ -0,0 +1,75 @@
+package org.imagetextapp.utility;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the token bucket.
+ */
+public class RateLimiterTest {
+
+    @Test
+    public void burstIsNotDelayed() throws Exception {
+        RateLimiter rateLimiter = new RateLimiter(60, 3);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            rateLimiter.acquire();
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue("Waited " + elapsedMillis + " ms", elapsedMillis < 500);
+        assertEquals(0, rateLimiter.getMaxWaitMillis(), 0);
+    }
+
+    @Test
+    public void requestsBeyondTheBurstWaitForTheRate() throws Exception {
+        // One token every 50 ms.
+        RateLimiter rateLimiter = new RateLimiter(1200, 1);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            rateLimiter.acquire();
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue("Waited only " + elapsedMillis + " ms", elapsedMillis >= 190);
+        assertEquals(5, rateLimiter.getAcquired());
+        assertTrue(rateLimiter.getMaxWaitMillis() >= 45);
+    }
+
+    @Test
+    public void waitingRequestsAreServedInOrder() {
+        RateLimiter rateLimiter = new RateLimiter(1200, 1);
+        ConcurrentLinkedQueue<Integer> order = new ConcurrentLinkedQueue<>();
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            int index = i;
+            futures.add(rateLimiter.acquireAsync().thenRun(() -> order.add(index)));
+        }
+        assertTrue(rateLimiter.getAvailableTokens() < 0);
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        assertEquals(List.of(0, 1, 2, 3, 4), new ArrayList<>(order));
+    }
+
+    @Test
+    public void unlimitedNeverWaits() throws Exception {
+        RateLimiter rateLimiter = new RateLimiter(0, 1);
+
+        for (int i = 0; i < 1000; i++) {
+            rateLimiter.acquire();
+        }
+
+        assertEquals(1000, rateLimiter.getAcquired());
+        assertEquals(0, rateLimiter.getAverageWaitMillis(), 0);
+    }
+}
@@ -0,0 +1,228 @@
+package org.imagetextapp.utility;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the retries and the circuit breaker against a local stub server.
+ */
+public class ResilientSenderTest {
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    // Status codes that the stub answers with, one per request; 200 once the queue is empty.
+    private final ConcurrentLinkedQueue<Integer> statusCodes = new ConcurrentLinkedQueue<>();
+    private volatile String retryAfter;
+    // Holds the next request until it is counted down, if set.
+    private volatile CountDownLatch stall;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            CountDownLatch latch = stall;
+            stall = null;
+            if (latch != null) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            Integer statusCode = statusCodes.poll();
+            int status = statusCode != null ? statusCode : 200;
+            if (status == 429 && retryAfter != null) {
+                exchange.getResponseHeaders().add("Retry-After", retryAfter);
+            }
+
+            byte[] body = ("{\"status\":" + status + "}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private HttpRequest request() {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/"))
+                .POST(HttpRequest.BodyPublishers.ofString("text=hello"))
+                .build();
+    }
+
+    @Test
+    public void retriesServerErrorsUntilSuccess() throws Exception {
+        statusCodes.add(503);
+        statusCodes.add(502);
+        ResilientSender sender = new ResilientSender(ServiceType.OCR, new RetryPolicy(3, 1, 10), new CircuitBreaker(5, 60_000));
+
+        HttpResponse<String> response = sender.send(request(), HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        assertEquals(3, requests.get());
+        assertEquals(CircuitBreaker.State.CLOSED, sender.getCircuitBreaker().getState());
+    }
+
+    @Test
+    public void returnsLastResponseWhenAttemptsAreUsedUp() throws Exception {
+        statusCodes.add(500);
+        statusCodes.add(500);
+        statusCodes.add(500);
+        ResilientSender sender = new ResilientSender(ServiceType.OCR, new RetryPolicy(2, 1, 10), new CircuitBreaker(5, 60_000));
+
+        HttpResponse<InputStream> response = sender.send(request(), HttpResponse.BodyHandlers.ofInputStream());
+        response.body().close();
+
+        assertEquals(500, response.statusCode());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void doesNotRetryClientErrors() throws Exception {
+        statusCodes.add(403);
+        ResilientSender sender = new ResilientSender(ServiceType.OCR, new RetryPolicy(3, 1, 10), new CircuitBreaker(5, 60_000));
+
+        assertEquals(403, sender.send(request(), HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void honoursRetryAfter() throws Exception {
+        statusCodes.add(429);
+        retryAfter = "1";
+        ResilientSender sender = new ResilientSender(ServiceType.TRANSLATE, new RetryPolicy(2, 1, 5_000), new CircuitBreaker(5, 60_000));
+
+        long start = System.nanoTime();
+        HttpResponse<String> response = sender.send(request(), HttpResponse.BodyHandlers.ofString());
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(200, response.statusCode());
+        assertTrue("Waited only " + elapsedMillis + " ms", elapsedMillis >= 900);
+    }
+
+    @Test
+    public void retriesConnectionErrors() throws Exception {
+        HttpRequest request = request();
+        server.stop(0);
+        ResilientSender sender = new ResilientSender(ServiceType.VOICE, new RetryPolicy(3, 1, 10), new CircuitBreaker(5, 60_000));
+
+        try {
+            sender.send(request, HttpResponse.BodyHandlers.ofString());
+            fail("Expected the connection to be refused.");
+        } catch (IOException expected) {
+            // All three attempts failed.
+        }
+        startServer();
+    }
+
+    @Test
+    public void openCircuitFailsFast() throws Exception {
+        statusCodes.add(503);
+        statusCodes.add(503);
+        ResilientSender sender = new ResilientSender(ServiceType.DETECT_LANGUAGE, new RetryPolicy(1, 1, 10), new CircuitBreaker(2, 60_000));
+
+        sender.send(request(), HttpResponse.BodyHandlers.ofString());
+        sender.send(request(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(CircuitBreaker.State.OPEN, sender.getCircuitBreaker().getState());
+
+        try {
+            sender.send(request(), HttpResponse.BodyHandlers.ofString());
+            fail("Expected the open circuit to reject the request.");
+        } catch (CircuitOpenException expected) {
+            assertEquals(2, requests.get());
+        }
+    }
+
+    @Test
+    public void circuitClosesAfterSuccessfulTrial() throws Exception {
+        statusCodes.add(503);
+        ResilientSender sender = new ResilientSender(ServiceType.OCR, new RetryPolicy(1, 1, 10), new CircuitBreaker(1, 50));
+
+        sender.send(request(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(CircuitBreaker.State.OPEN, sender.getCircuitBreaker().getState());
+
+        Thread.sleep(100);
+        assertEquals(200, sender.send(request(), HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertEquals(CircuitBreaker.State.CLOSED, sender.getCircuitBreaker().getState());
+    }
+
+    @Test
+    public void interruptedTrialDoesNotKeepTheCircuitOpen() throws Exception {
+        statusCodes.add(503);
+        ResilientSender sender = new ResilientSender(ServiceType.OCR, new RetryPolicy(1, 1, 10), new CircuitBreaker(1, 50));
+
+        sender.send(request(), HttpResponse.BodyHandlers.ofString());
+        Thread.sleep(100);
+
+        // The trial request hangs until its caller is interrupted.
+        CountDownLatch latch = new CountDownLatch(1);
+        stall = latch;
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread caller = new Thread(() -> {
+            try {
+                sender.send(request(), HttpResponse.BodyHandlers.ofString());
+            } catch (Exception e) {
+                thrown.set(e);
+            }
+        });
+        caller.start();
+        while (requests.get() < 2) {
+            Thread.sleep(10);
+        }
+        caller.interrupt();
+        caller.join(5_000);
+        latch.countDown();
+
+        assertTrue(String.valueOf(thrown.get()), thrown.get() instanceof InterruptedException);
+        assertEquals(200, sender.send(request(), HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertEquals(CircuitBreaker.State.CLOSED, sender.getCircuitBreaker().getState());
+    }
+
+    @Test
+    public void retriesAsynchronously() throws Exception {
+        statusCodes.add(503);
+        statusCodes.add(429);
+        retryAfter = "0";
+        ResilientSender sender = new ResilientSender(ServiceType.OCR, new RetryPolicy(3, 1, 10), new CircuitBreaker(5, 60_000));
+
+        HttpResponse<String> response = sender.sendAsync(request(), HttpResponse.BodyHandlers.ofString()).get();
+
+        assertEquals(200, response.statusCode());
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    public void missingResponseIsParsedAsError() {
+        JsonParser jsonParser = new JsonParser();
+
+        assertTrue(jsonParser.parseOCRResponse((HttpResponse<InputStream>) null).isErrorOnProcessing());
+        assertTrue(jsonParser.parseDetectLanguageResponse((HttpResponse<InputStream>) null).isErrorOnProcessing());
+        assertTrue(jsonParser.parseTranslateResponse((HttpResponse<InputStream>) null).isErrorOnProcessing());
+    }
+}